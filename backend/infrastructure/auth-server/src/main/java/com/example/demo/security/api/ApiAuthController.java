@@ -2,8 +2,11 @@ package com.example.demo.security.api;
 
 import com.example.demo.security.blacklist.TokenBlacklistService;
 import com.example.demo.security.device.DeviceInfo;
+import com.example.demo.security.hashing.PasswordVerificationExecutor;
+import com.example.demo.security.hashing.PasswordVerificationExecutor.LoginOverloadedException;
 import com.example.demo.security.jti.JtiTrackingService;
 import com.example.demo.security.jwt.JwtService;
+import com.example.demo.security.jwt.VerifiedToken;
 import com.example.demo.security.ratelimit.RateLimitService;
 import com.example.demo.security.ratelimit.RateLimitService.RateLimitResult;
 import com.example.demo.security.token.RefreshTokenService;
@@ -55,6 +58,7 @@ public class ApiAuthController {
     private final JtiTrackingService jtiTrackingService;
     private final RateLimitService rateLimitService;
     private final UserService userService;
+    private final PasswordVerificationExecutor passwordVerificationExecutor;
 
     @Value("${security.refresh-token.expiration-days:7}")
     private int refreshTokenExpirationDays;
@@ -77,7 +81,8 @@ public class ApiAuthController {
                              TokenBlacklistService tokenBlacklistService,
                              JtiTrackingService jtiTrackingService,
                              RateLimitService rateLimitService,
-                             UserService userService) {
+                             UserService userService,
+                             PasswordVerificationExecutor passwordVerificationExecutor) {
         this.authenticationManager = authenticationManager;
         this.jwtService = jwtService;
         this.refreshTokenService = refreshTokenService;
@@ -85,6 +90,7 @@ public class ApiAuthController {
         this.jtiTrackingService = jtiTrackingService;
         this.rateLimitService = rateLimitService;
         this.userService = userService;
+        this.passwordVerificationExecutor = passwordVerificationExecutor;
     }
 
     /**
@@ -166,10 +172,10 @@ public class ApiAuthController {
         }
 
         try {
-            // Authenticate
-            authenticationManager.authenticate(
+            // Authenticate (BCrypt runs on the bounded hashing pool, not the request thread)
+            passwordVerificationExecutor.verify(() -> authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(request.username(), request.password())
-            );
+            ));
 
             // Get user
             User user = userService.findUserByUsername(request.username())
@@ -184,16 +190,15 @@ public class ApiAuthController {
 
             // Generate tokens
             DeviceInfo deviceInfo = DeviceInfo.fromRequest(httpRequest, request.deviceId());
-            String accessToken = jwtService.generateAccessToken(user, deviceInfo.getFingerprint());
+            VerifiedToken accessToken = jwtService.issueAccessToken(user, deviceInfo.getFingerprint());
             String refreshToken = refreshTokenService.createRefreshToken(user, deviceInfo);
 
             // Register JTI for tracking
-            String jti = jwtService.extractJti(accessToken);
             long ttl = accessTokenExpirationMinutes * 60L;
-            jtiTrackingService.registerJti(jti, user.getId(), deviceInfo.getFingerprint(), clientIp, ttl);
+            jtiTrackingService.registerJti(accessToken.jti(), user.getId(), deviceInfo.getFingerprint(), clientIp, ttl);
 
             // Set cookies
-            setTokenCookies(httpResponse, accessToken, refreshToken, deviceInfo);
+            setTokenCookies(httpResponse, accessToken.token(), refreshToken, deviceInfo);
 
             log.info("User {} logged in successfully from {}", user.getUsername(), deviceInfo.getDeviceName());
 
@@ -225,6 +230,15 @@ public class ApiAuthController {
         } catch (LockedException e) {
             return ResponseEntity.status(HttpStatus.LOCKED)
                     .body(Map.of("error", "Account is locked"));
+
+        } catch (LoginOverloadedException e) {
+            log.warn("Login shed for user {}: password verification pool saturated", request.username());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.of(
+                        "error", "Login temporarily unavailable, please retry",
+                        "retryAfter", e.getRetryAfterSeconds()
+                    ));
         }
     }
 
@@ -279,15 +293,14 @@ public class ApiAuthController {
         RefreshTokenRotationResult rotationResult = result.get();
         User user = rotationResult.user();
         String newRefreshToken = rotationResult.newToken();
-        String newAccessToken = jwtService.generateAccessToken(user, deviceInfo.getFingerprint());
+        VerifiedToken newAccessToken = jwtService.issueAccessToken(user, deviceInfo.getFingerprint());
 
         // Register new JTI for tracking
-        String jti = jwtService.extractJti(newAccessToken);
         long ttl = accessTokenExpirationMinutes * 60L;
-        jtiTrackingService.registerJti(jti, user.getId(), deviceInfo.getFingerprint(), clientIp, ttl);
+        jtiTrackingService.registerJti(newAccessToken.jti(), user.getId(), deviceInfo.getFingerprint(), clientIp, ttl);
 
         // Update cookies
-        setTokenCookies(httpResponse, newAccessToken, newRefreshToken, deviceInfo);
+        setTokenCookies(httpResponse, newAccessToken.token(), newRefreshToken, deviceInfo);
 
         log.debug("Tokens refreshed for user: {}", user.getUsername());
 
@@ -335,8 +348,11 @@ public class ApiAuthController {
         // Blacklist current access token if present
         String accessToken = extractAccessToken(httpRequest);
         if (accessToken != null) {
-            String jti = jwtService.extractJti(accessToken);
-            long remainingTtl = jwtService.getExpirationSeconds(accessToken);
+            // Reuse the filter's verified token instead of parsing it again
+            Optional<VerifiedToken> verified = VerifiedToken.fromRequest(httpRequest, accessToken)
+                    .or(() -> jwtService.verify(accessToken));
+            String jti = verified.map(VerifiedToken::jti).orElse(null);
+            long remainingTtl = verified.map(VerifiedToken::remainingSeconds).orElse(0L);
             if (jti != null && remainingTtl > 0) {
                 tokenBlacklistService.blacklistToken(jti, remainingTtl);
                 jtiTrackingService.blacklistJti(jti, remainingTtl);
@@ -1,5 +1,6 @@
 package com.example.demo.security.blacklist;
 
+import com.example.demo.security.revocation.RevocationPublisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -22,8 +23,10 @@ public class TokenBlacklistService {
 
     private static final Logger log = LoggerFactory.getLogger(TokenBlacklistService.class);
     private static final String BLACKLIST_PREFIX = "token:blacklist:";
+    private static final String TOKEN_VERSION_PREFIX = "user:token-version:";
 
     private final StringRedisTemplate redisTemplate;
+    private final RevocationPublisher revocationPublisher;
 
     @Value("${security.jwt.access-token-expiration-minutes:3}")
     private int accessTokenExpirationMinutes;
@@ -31,11 +34,9 @@ public class TokenBlacklistService {
     @Value("${security.blacklist.enabled:true}")
     private boolean blacklistEnabled;
 
-    @Value("${security.fail-closed:false}")
-    private boolean failClosed;
-
-    public TokenBlacklistService(StringRedisTemplate redisTemplate) {
+    public TokenBlacklistService(StringRedisTemplate redisTemplate, RevocationPublisher revocationPublisher) {
         this.redisTemplate = redisTemplate;
+        this.revocationPublisher = revocationPublisher;
     }
 
     /**
@@ -56,33 +57,13 @@ public class TokenBlacklistService {
             Duration ttl = Duration.ofSeconds(Math.max(remainingTtlSeconds + 60, 60));
             redisTemplate.opsForValue().set(key, "1", ttl);
             log.debug("Blacklisted token JTI: {}", jti);
+            revocationPublisher.publishRevokedJti(jti, remainingTtlSeconds);
         } catch (Exception e) {
             log.error("Failed to blacklist token: {}", e.getMessage());
             // Don't throw - blacklist is optional enhancement
         }
     }
 
-    /**
-     * Check if a token's JTI is blacklisted.
-     * 
-     * @param jti The JWT ID to check
-     * @return true if blacklisted
-     */
-    public boolean isBlacklisted(String jti) {
-        if (!blacklistEnabled || jti == null) {
-            return false;
-        }
-
-        try {
-            String key = BLACKLIST_PREFIX + jti;
-            return Boolean.TRUE.equals(redisTemplate.hasKey(key));
-        } catch (Exception e) {
-            log.error("Failed to check blacklist: {}", e.getMessage());
-            // Configurable: fail closed for high-security deployments
-            return failClosed;
-        }
-    }
-
     /**
      * Blacklist all tokens for a user by storing their token version.
      * Any token with a version less than this is considered invalid.
@@ -96,10 +77,11 @@ public class TokenBlacklistService {
         }
 
         try {
-            String key = "user:token-version:" + userId;
+            String key = TOKEN_VERSION_PREFIX + userId;
             // Store indefinitely - this is the authoritative version
             redisTemplate.opsForValue().set(key, tokenVersion.toString());
             log.info("Updated token version for user {} to {}", userId, tokenVersion);
+            revocationPublisher.publishTokenVersion(userId, tokenVersion);
         } catch (Exception e) {
             log.error("Failed to update user token version: {}", e.getMessage());
         }
@@ -117,7 +99,7 @@ public class TokenBlacklistService {
         }
 
         try {
-            String key = "user:token-version:" + userId;
+            String key = TOKEN_VERSION_PREFIX + userId;
             String value = redisTemplate.opsForValue().get(key);
             return value != null ? Long.parseLong(value) : 0L;
         } catch (Exception e) {
@@ -129,4 +111,12 @@ public class TokenBlacklistService {
     public boolean isEnabled() {
         return blacklistEnabled;
     }
+
+    public static String blacklistKey(String jti) {
+        return BLACKLIST_PREFIX + jti;
+    }
+
+    public static String tokenVersionKey(Long userId) {
+        return TOKEN_VERSION_PREFIX + userId;
+    }
 }
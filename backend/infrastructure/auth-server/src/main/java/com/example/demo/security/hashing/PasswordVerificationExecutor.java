@@ -0,0 +1,162 @@
+package com.example.demo.security.hashing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs password verification (BCrypt) on a small dedicated pool.
+ *
+ * BCrypt at cost 12 is pure CPU. Running it on Tomcat threads lets a login
+ * burst saturate every core and starve /me and refresh traffic. Here at most
+ * {@code threads} hashes run at once (default: cores - 1) and at most
+ * {@code queue-capacity} wait. Beyond that, or when a queued login has waited
+ * longer than {@code max-wait-ms}, callers get {@link LoginOverloadedException}
+ * right away and can answer 503 with Retry-After.
+ */
+@Service
+public class PasswordVerificationExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordVerificationExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final long maxWaitNanos;
+    private final Timer waitTimer;
+    private final Timer hashTimer;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedWaitExceeded;
+
+    public PasswordVerificationExecutor(MeterRegistry meterRegistry,
+                                        @Value("${security.password-hashing.threads:0}") int configuredThreads,
+                                        @Value("${security.password-hashing.queue-capacity:50}") int queueCapacity,
+                                        @Value("${security.password-hashing.max-wait-ms:5000}") long maxWaitMs) {
+        this.threads = configuredThreads > 0
+                ? configuredThreads
+                : Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.password.hashing.queue.size", executor, e -> e.getQueue().size())
+                .description("Logins waiting for a password hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes currently running")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("auth.password.hashing.wait")
+                .description("Time a login waited for a password hashing thread")
+                .register(meterRegistry);
+        this.hashTimer = Timer.builder("auth.password.hashing.duration")
+                .description("Time spent verifying a password")
+                .register(meterRegistry);
+        this.rejectedQueueFull = Counter.builder("auth.password.hashing.rejected")
+                .tag("reason", "queue-full")
+                .register(meterRegistry);
+        this.rejectedWaitExceeded = Counter.builder("auth.password.hashing.rejected")
+                .tag("reason", "wait-exceeded")
+                .register(meterRegistry);
+
+        log.info("Password verification pool: {} threads, queue capacity {}, max wait {}ms",
+                threads, queueCapacity, maxWaitMs);
+    }
+
+    /**
+     * Run a password verification on the hashing pool and wait for its result.
+     * Runtime exceptions thrown by the task (e.g. BadCredentialsException) are
+     * rethrown unchanged.
+     *
+     * @throws LoginOverloadedException if the pool is saturated
+     */
+    public <T> T verify(Callable<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long waited = System.nanoTime() - submittedAt;
+                waitTimer.record(waited, TimeUnit.NANOSECONDS);
+                if (waited > maxWaitNanos) {
+                    // The client has most likely given up; don't spend a hash on it
+                    rejectedWaitExceeded.increment();
+                    throw new LoginOverloadedException(retryAfterSeconds());
+                }
+                return hashTimer.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedQueueFull.increment();
+            throw new LoginOverloadedException(retryAfterSeconds());
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new LoginOverloadedException(retryAfterSeconds());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Password verification failed", cause);
+        }
+    }
+
+    /**
+     * Estimated seconds until the current backlog has drained.
+     */
+    private long retryAfterSeconds() {
+        double meanHashMs = hashTimer.count() > 0 ? hashTimer.mean(TimeUnit.MILLISECONDS) : 250;
+        long backlog = executor.getQueue().size() + executor.getActiveCount();
+        long seconds = (long) Math.ceil(backlog * meanHashMs / threads / 1000);
+        return Math.min(Math.max(seconds, 1), 30);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Thrown when a login cannot be verified now because the hashing pool is saturated.
+     */
+    public static class LoginOverloadedException extends RuntimeException {
+
+        private final long retryAfterSeconds;
+
+        public LoginOverloadedException(long retryAfterSeconds) {
+            super("Password verification pool saturated");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
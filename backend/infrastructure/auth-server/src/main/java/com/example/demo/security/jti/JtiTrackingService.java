@@ -1,12 +1,16 @@
 package com.example.demo.security.jti;
 
+import com.example.demo.security.revocation.RevocationPublisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -27,10 +31,39 @@ public class JtiTrackingService {
     private static final String JTI_KEY_PREFIX = "jti:";
     private static final String USER_JTIS_PREFIX = "user:jtis:";
     private static final String DEVICE_JTIS_PREFIX = "device:jtis:";
-    private static final String JTI_IP_PREFIX = "jti:ip:";
     private static final String BLACKLIST_PREFIX = "jti:blacklist:";
+    private static final long ACTIVE_SET_TTL_SECONDS = Duration.ofDays(1).toSeconds();
+
+    // KEYS: jti, user set, device set; ARGV: jti, ip ('' = unknown, not stored), ttl, now, max per device, set ttl
+    private static final RedisScript<Long> REGISTER_SCRIPT = new DefaultRedisScript<>("""
+            if ARGV[2] ~= '' then
+                redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3])
+            end
+            redis.call('ZADD', KEYS[2], ARGV[4], ARGV[1])
+            redis.call('EXPIRE', KEYS[2], ARGV[6])
+            redis.call('ZADD', KEYS[3], ARGV[4], ARGV[1])
+            local count = redis.call('ZCARD', KEYS[3])
+            local max = tonumber(ARGV[5])
+            if count > max then
+                redis.call('ZREMRANGEBYRANK', KEYS[3], 0, count - max - 1)
+            end
+            redis.call('EXPIRE', KEYS[3], ARGV[6])
+            return count
+            """, Long.class);
+
+    // KEYS: user set; ARGV: blacklist prefix, blacklist ttl.
+    // Returns the revoked JTIs joined by ',' (JTIs are UUIDs, so never contain one).
+    private static final RedisScript<String> REVOKE_ALL_SCRIPT = new DefaultRedisScript<>("""
+            local jtis = redis.call('ZRANGE', KEYS[1], 0, -1)
+            for _, jti in ipairs(jtis) do
+                redis.call('SET', ARGV[1] .. jti, '1', 'EX', ARGV[2])
+            end
+            redis.call('DEL', KEYS[1])
+            return table.concat(jtis, ',')
+            """, String.class);
 
     private final StringRedisTemplate redisTemplate;
+    private final RevocationPublisher revocationPublisher;
 
     @Value("${security.jwt.access-token-expiration-minutes:3}")
     private int accessTokenExpirationMinutes;
@@ -41,19 +74,19 @@ public class JtiTrackingService {
     @Value("${security.jti.tracking-enabled:true}")
     private boolean trackingEnabled;
 
-    @Value("${security.fail-closed:false}")
-    private boolean failClosed;
-
     @Value("${security.jti.reject-suspicious:false}")
     private boolean rejectSuspicious;
 
-    public JtiTrackingService(StringRedisTemplate redisTemplate) {
+    public JtiTrackingService(StringRedisTemplate redisTemplate, RevocationPublisher revocationPublisher) {
         this.redisTemplate = redisTemplate;
+        this.revocationPublisher = revocationPublisher;
     }
 
     /**
      * Register a new JTI for a user/device.
      * Tracks the JTI with its associated IP for replay detection.
+     * Runs as one script, so concurrent refreshes on the same device trim
+     * the device set consistently.
      * 
      * @param jti JWT ID
      * @param userId User ID
@@ -68,34 +101,20 @@ public class JtiTrackingService {
         }
 
         try {
-            Duration ttl = Duration.ofSeconds(ttlSeconds + 60); // Add buffer for clock skew
-            
-            // 1. Store JTI with its IP
-            String jtiKey = JTI_KEY_PREFIX + jti;
-            redisTemplate.opsForValue().set(jtiKey, ipAddress, ttl);
-            
-            // 2. Store JTI -> IP mapping for replay detection
-            String jtiIpKey = JTI_IP_PREFIX + jti;
-            redisTemplate.opsForValue().set(jtiIpKey, ipAddress, ttl);
-            
-            // 3. Add to user's active JTIs (sorted set with timestamp as score)
-            String userJtisKey = USER_JTIS_PREFIX + userId;
-            long now = System.currentTimeMillis();
-            redisTemplate.opsForZSet().add(userJtisKey, jti, now);
-            redisTemplate.expire(userJtisKey, Duration.ofDays(1));
-            
-            // 4. Add to device's active JTIs (keep only last N)
-            String deviceJtisKey = DEVICE_JTIS_PREFIX + deviceFingerprint;
-            redisTemplate.opsForZSet().add(deviceJtisKey, jti, now);
-            
-            // Trim to keep only last N JTIs per device
-            long count = redisTemplate.opsForZSet().zCard(deviceJtisKey);
-            if (count > maxJtisPerDevice) {
-                // Remove oldest entries
-                redisTemplate.opsForZSet().removeRange(deviceJtisKey, 0, count - maxJtisPerDevice - 1);
-            }
-            redisTemplate.expire(deviceJtisKey, Duration.ofDays(1));
-            
+            long ttl = ttlSeconds + 60; // Add buffer for clock skew
+
+            // 1. JTI -> issuing IP, for replay detection (skipped when the IP is unknown)
+            // 2. User's active JTIs (sorted set with timestamp as score)
+            // 3. Device's active JTIs, trimmed to the last N
+            redisTemplate.execute(REGISTER_SCRIPT,
+                    List.of(JTI_KEY_PREFIX + jti, USER_JTIS_PREFIX + userId, DEVICE_JTIS_PREFIX + deviceFingerprint),
+                    jti,
+                    ipAddress != null ? ipAddress : "",
+                    String.valueOf(ttl),
+                    String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(maxJtisPerDevice),
+                    String.valueOf(ACTIVE_SET_TTL_SECONDS));
+
             log.debug("Registered JTI {} for user {} on device {}", jti, userId, deviceFingerprint);
             
         } catch (Exception e) {
@@ -104,65 +123,32 @@ public class JtiTrackingService {
     }
 
     /**
-     * Validate a JTI on request.
-     * Checks:
-     * 1. JTI is not blacklisted
-     * 2. JTI exists (was issued by us)
-     * 3. IP matches or is from same prefix (replay detection)
-     * 
-     * @param jti JWT ID
-     * @param currentIp Current request IP
-     * @return ValidationResult with status and reason
+     * Compare the IP a JTI was issued to with the current request IP.
+     *
+     * @param storedIp IP recorded at issue time, or null if the JTI is not tracked
      */
-    public JtiValidationResult validateJti(String jti, String currentIp) {
-        if (!trackingEnabled) {
-            return JtiValidationResult.valid();
-        }
-
-        if (jti == null) {
-            return JtiValidationResult.invalid("Missing JTI");
+    public JtiValidationResult checkIssuedIp(String jti, String storedIp, String currentIp) {
+        if (storedIp == null) {
+            // JTI not found - could be expired or never issued
+            // For short-lived tokens, this is acceptable if signature is valid
+            log.debug("JTI not found in tracking: {}", jti);
+            return JtiValidationResult.valid(); // Rely on JWT signature validation
         }
 
-        try {
-            // 1. Check blacklist
-            String blacklistKey = BLACKLIST_PREFIX + jti;
-            if (Boolean.TRUE.equals(redisTemplate.hasKey(blacklistKey))) {
-                log.warn("SECURITY: Blacklisted JTI used: {}", jti);
-                return JtiValidationResult.invalid("Token has been revoked");
-            }
-
-            // 2. Check if JTI exists (was issued by us)
-            String jtiKey = JTI_KEY_PREFIX + jti;
-            String storedIp = redisTemplate.opsForValue().get(jtiKey);
-            
-            if (storedIp == null) {
-                // JTI not found - could be expired or never issued
-                // For short-lived tokens, this is acceptable if signature is valid
-                log.debug("JTI not found in tracking: {}", jti);
-                return JtiValidationResult.valid(); // Rely on JWT signature validation
+        if (!isSameIpPrefix(storedIp, currentIp)) {
+            log.warn("SECURITY ALERT: JTI {} used from different IP! Original: {}, Current: {}", 
+                    jti, storedIp, currentIp);
+            if (rejectSuspicious) {
+                log.error("SECURITY: Rejecting suspicious JTI usage (jti={})", jti);
+                blacklistJti(jti, accessTokenExpirationMinutes * 60L);
+                return JtiValidationResult.invalid("Suspicious token usage detected");
             }
-
-            // 3. Check for IP mismatch (potential replay attack)
-            if (!isSameIpPrefix(storedIp, currentIp)) {
-                log.warn("SECURITY ALERT: JTI {} used from different IP! Original: {}, Current: {}", 
-                        jti, storedIp, currentIp);
-                if (rejectSuspicious) {
-                    log.error("SECURITY: Rejecting suspicious JTI usage (jti={})", jti);
-                    blacklistJti(jti, accessTokenExpirationMinutes * 60L);
-                    return JtiValidationResult.invalid("Suspicious token usage detected");
-                }
-                // Don't immediately reject - could be legitimate IP change
-                // But flag for monitoring
-                return JtiValidationResult.suspicious("IP address changed during session");
-            }
-
-            return JtiValidationResult.valid();
-
-        } catch (Exception e) {
-            log.error("Failed to validate JTI: {}", e.getMessage());
-            // Configurable: fail closed for high-security deployments
-            return failClosed ? JtiValidationResult.invalid("Security backend unavailable") : JtiValidationResult.valid();
+            // Don't immediately reject - could be legitimate IP change
+            // But flag for monitoring
+            return JtiValidationResult.suspicious("IP address changed during session");
         }
+
+        return JtiValidationResult.valid();
     }
 
     /**
@@ -178,6 +164,7 @@ public class JtiTrackingService {
             Duration ttl = Duration.ofSeconds(Math.max(remainingTtlSeconds + 60, 60));
             redisTemplate.opsForValue().set(blacklistKey, "1", ttl);
             log.info("Blacklisted JTI: {}", jti);
+            revocationPublisher.publishRevokedJti(jti, remainingTtlSeconds);
         } catch (Exception e) {
             log.error("Failed to blacklist JTI: {}", e.getMessage());
         }
@@ -185,6 +172,8 @@ public class JtiTrackingService {
 
     /**
      * Blacklist all JTIs for a user (logout all).
+     * The whole set is read, blacklisted and cleared by one script, so a JTI
+     * registered concurrently is either revoked or left in the set.
      */
     public void blacklistAllUserJtis(Long userId) {
         if (!trackingEnabled) {
@@ -192,14 +181,15 @@ public class JtiTrackingService {
         }
 
         try {
-            String userJtisKey = USER_JTIS_PREFIX + userId;
-            Set<String> jtis = redisTemplate.opsForZSet().range(userJtisKey, 0, -1);
-            
-            if (jtis != null && !jtis.isEmpty()) {
-                for (String jti : jtis) {
-                    blacklistJti(jti, accessTokenExpirationMinutes * 60L);
-                }
-                redisTemplate.delete(userJtisKey);
+            long remainingTtl = accessTokenExpirationMinutes * 60L;
+            String revoked = redisTemplate.execute(REVOKE_ALL_SCRIPT,
+                    List.of(USER_JTIS_PREFIX + userId),
+                    BLACKLIST_PREFIX,
+                    String.valueOf(Math.max(remainingTtl + 60, 60)));
+
+            if (revoked != null && !revoked.isEmpty()) {
+                List<String> jtis = List.of(revoked.split(","));
+                revocationPublisher.publishRevokedJtis(jtis, remainingTtl);
                 log.info("Blacklisted {} JTIs for user {}", jtis.size(), userId);
             }
         } catch (Exception e) {
@@ -261,6 +251,14 @@ public class JtiTrackingService {
         return trackingEnabled;
     }
 
+    public static String jtiKey(String jti) {
+        return JTI_KEY_PREFIX + jti;
+    }
+
+    public static String blacklistKey(String jti) {
+        return BLACKLIST_PREFIX + jti;
+    }
+
     /**
      * Result of JTI validation.
      */
@@ -6,9 +6,10 @@ import com.example.demo.security.jti.JtiTrackingService;
 import com.example.demo.security.jti.JtiTrackingService.JtiValidationResult;
 import com.example.demo.security.token.RefreshTokenService;
 import com.example.demo.security.token.RefreshTokenService.RefreshTokenRotationResult;
+import com.example.demo.security.validation.TokenStateValidator;
 import com.example.demo.user.User;
-import com.example.demo.user.UserRepository;
-import io.jsonwebtoken.Claims;
+import com.example.demo.user.UserSecurityCache;
+import com.example.demo.user.UserSecuritySnapshot;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -17,12 +18,10 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -41,6 +40,11 @@ import java.util.Optional;
  * 1. Token signature and expiration
  * 2. JTI blacklist check (Redis)
  * 3. Token version validation against user's current version
+ *
+ * The token is parsed and verified once per request; the resulting
+ * {@link VerifiedToken} is stored as a request attribute for later steps.
+ * User state comes from {@link UserSecurityCache}, so an authenticated
+ * request normally does not touch the database.
  */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -52,11 +56,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private static final String DEVICE_ID_COOKIE = "device_id";
 
     private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;
-    private final UserRepository userRepository;
+    private final UserSecurityCache userSecurityCache;
     private final TokenBlacklistService tokenBlacklistService;
     private final JtiTrackingService jtiTrackingService;
     private final RefreshTokenService refreshTokenService;
+    private final TokenStateValidator tokenStateValidator;
 
     @Value("${security.jwt.device-binding-required:true}")
     private boolean deviceBindingRequired;
@@ -74,17 +78,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private boolean secureCookies;
 
     public JwtAuthenticationFilter(JwtService jwtService,
-                                   @Lazy UserDetailsService userDetailsService,
-                                   UserRepository userRepository,
+                                   UserSecurityCache userSecurityCache,
                                    TokenBlacklistService tokenBlacklistService,
                                    JtiTrackingService jtiTrackingService,
-                                   RefreshTokenService refreshTokenService) {
+                                   RefreshTokenService refreshTokenService,
+                                   TokenStateValidator tokenStateValidator) {
         this.jwtService = jwtService;
-        this.userDetailsService = userDetailsService;
-        this.userRepository = userRepository;
+        this.userSecurityCache = userSecurityCache;
         this.tokenBlacklistService = tokenBlacklistService;
         this.jtiTrackingService = jtiTrackingService;
         this.refreshTokenService = refreshTokenService;
+        this.tokenStateValidator = tokenStateValidator;
     }
 
     @Override
@@ -109,8 +113,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 return;
             }
 
-            // Validate token and handle expiration
-            if (jwtService.getExpirationSeconds(token) <= 0) {
+            // Verify once; invalid and expired tokens both fall through to refresh
+            Optional<VerifiedToken> verified = jwtService.verify(token);
+            if (verified.isEmpty() || verified.get().remainingSeconds() <= 0) {
                 log.debug("Access token invalid/expired; attempting transparent refresh");
                 if (!tryTransparentRefresh(request, response)) {
                     log.debug("Transparent refresh failed for expired token");
@@ -121,7 +126,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 return;
             }
 
-            authenticateWithToken(token, request);
+            authenticateWithToken(verified.get(), request);
         } catch (Exception e) {
             log.debug("JWT authentication failed: {}", e.getMessage());
             // Don't throw - let the request continue without authentication
@@ -154,17 +159,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         RefreshTokenRotationResult rotationResult = result.get();
         User user = rotationResult.user();
-        String newAccessToken = jwtService.generateAccessToken(user, deviceInfo.getFingerprint());
+        VerifiedToken newAccessToken = jwtService.issueAccessToken(user, deviceInfo.getFingerprint());
         String newRefreshToken = rotationResult.newToken();
 
         // Register new JTI for tracking
-        String jti = jwtService.extractJti(newAccessToken);
         String clientIp = extractClientIp(request);
         long ttl = accessTokenExpirationMinutes * 60L;
-        jtiTrackingService.registerJti(jti, user.getId(), deviceInfo.getFingerprint(), clientIp, ttl);
+        jtiTrackingService.registerJti(newAccessToken.jti(), user.getId(), deviceInfo.getFingerprint(), clientIp, ttl);
 
         // Set new cookies
-        setTokenCookies(response, newAccessToken, newRefreshToken, deviceInfo);
+        setTokenCookies(response, newAccessToken.token(), newRefreshToken, deviceInfo);
         log.debug("Set new access_token and refresh_token cookies");
 
         // Retry authentication with new token
@@ -240,31 +244,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     }
 
     /**
-     * Authenticate the request using the JWT token.
+     * Authenticate the request using the verified JWT token.
      */
-    private void authenticateWithToken(String token, HttpServletRequest request) {
+    private void authenticateWithToken(VerifiedToken token, HttpServletRequest request) {
+        request.setAttribute(VerifiedToken.REQUEST_ATTRIBUTE, token);
         try {
-            // Parse token and extract claims
-            Claims claims = jwtService.parseToken(token);
-            String username = claims.getSubject();
-            String jti = claims.getId();
-            Long tokenVersion = claims.get("ver", Long.class);
-            String tokenDeviceFingerprint = claims.get("dfp", String.class);
+            String username = token.subject();
+            String jti = token.jti();
+            Long tokenVersion = token.tokenVersion();
+            String tokenDeviceFingerprint = token.deviceFingerprint();
 
             if (username == null) {
                 log.debug("Token has no subject");
                 return;
             }
 
-            // Check JTI blacklist (legacy)
-            if (tokenBlacklistService.isBlacklisted(jti)) {
-                log.debug("Token JTI is blacklisted: {}", jti);
-                return;
-            }
-
-            // Validate JTI with tracking service (checks blacklist + IP consistency)
+            // Both blacklists, the user's token version and JTI/IP consistency in one Redis round trip
             String clientIp = extractClientIp(request);
-            JtiValidationResult jtiResult = jtiTrackingService.validateJti(jti, clientIp);
+            JtiValidationResult jtiResult = tokenStateValidator.validate(jti, token.userId(), tokenVersion, clientIp);
             if (!jtiResult.isValid()) {
                 log.warn("JTI validation failed: {}", jtiResult.reason());
                 return;
@@ -272,7 +269,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             if (jtiResult.isSuspicious()) {
                 log.warn("Suspicious JTI usage detected: {}", jtiResult.reason());
                 if (rejectSuspiciousJti) {
-                    long remainingTtl = jwtService.getExpirationSeconds(token);
+                    long remainingTtl = token.remainingSeconds();
                     if (remainingTtl > 0) {
                         tokenBlacklistService.blacklistToken(jti, remainingTtl);
                         jtiTrackingService.blacklistJti(jti, remainingTtl);
@@ -291,7 +288,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 }
                 if (!tokenDeviceFingerprint.equals(deviceInfo.getFingerprint())) {
                     log.error("SECURITY ALERT: Access token device fingerprint mismatch for user {} (jti={})", username, jti);
-                    long remainingTtl = jwtService.getExpirationSeconds(token);
+                    long remainingTtl = token.remainingSeconds();
                     if (remainingTtl > 0) {
                         tokenBlacklistService.blacklistToken(jti, remainingTtl);
                         jtiTrackingService.blacklistJti(jti, remainingTtl);
@@ -300,35 +297,34 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 }
             }
 
-            // Load user and validate token version
-            Optional<User> userOpt = userRepository.findByUsername(username);
+            // Load user security snapshot (in-process, then Redis, then DB) and validate token version
+            Optional<UserSecuritySnapshot> userOpt = userSecurityCache.get(username);
             if (userOpt.isEmpty()) {
                 log.debug("User not found: {}", username);
                 return;
             }
 
-            User user = userOpt.get();
+            UserSecuritySnapshot user = userOpt.get();
 
             // Validate token version against user's current version
-            if (tokenVersion == null || !tokenVersion.equals(user.getTokenVersion())) {
+            if (tokenVersion == null || !tokenVersion.equals(user.tokenVersion())) {
                 log.debug("Token version mismatch for user {}: token={}, current={}", 
-                        username, tokenVersion, user.getTokenVersion());
+                        username, tokenVersion, user.tokenVersion());
                 return;
             }
 
             // Check if account is locked or disabled
-            if (!user.isEnabled()) {
+            if (!user.enabled()) {
                 log.debug("User account is disabled: {}", username);
                 return;
             }
 
-            if (user.isAccountLocked() && !user.isLockExpired()) {
+            if (user.isLocked()) {
                 log.debug("User account is locked: {}", username);
                 return;
             }
 
-            // Load UserDetails and create authentication
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            UserDetails userDetails = user.toUserDetails();
             
             UsernamePasswordAuthenticationToken authentication = 
                     new UsernamePasswordAuthenticationToken(
@@ -1,6 +1,8 @@
 package com.example.demo.security.jwt;
 
 import com.example.demo.user.User;
+import com.example.demo.user.UserSecurityCache;
+import com.example.demo.user.UserSecuritySnapshot;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -13,6 +15,8 @@ import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -22,6 +26,7 @@ import java.util.UUID;
  * - Short-lived access tokens (3 minutes default)
  * - JTI (JWT ID) for token uniqueness and blacklisting
  * - VER claim for token version validation
+ * - SVC claim with granted service codes (forwarded by the gateway identity envelope)
  * - Secure key derivation
  */
 @Service
@@ -38,8 +43,17 @@ public class JwtService {
     @Value("${security.jwt.issuer:secure-app}")
     private String issuer;
 
+    private final UserSecurityCache userSecurityCache;
+
     private SecretKey signingKey;
 
+    // Immutable and thread-safe; built once so verification does not rebuild it per call
+    private JwtParser parser;
+
+    public JwtService(UserSecurityCache userSecurityCache) {
+        this.userSecurityCache = userSecurityCache;
+    }
+
     @PostConstruct
     public void init() {
         // Derive a secure key from the secret
@@ -48,6 +62,10 @@ public class JwtService {
             throw new IllegalStateException("JWT secret must be at least 32 characters for HS256");
         }
         this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .requireIssuer(issuer)
+                .build();
         log.info("JWT Service initialized with {} minute access token expiration", accessTokenExpirationMinutes);
     }
 
@@ -62,13 +80,18 @@ public class JwtService {
     }
 
     public String generateAccessToken(User user, String deviceFingerprint) {
+        return issueAccessToken(user, deviceFingerprint).token();
+    }
+
+    /**
+     * Generate an access token and return it with its claims, so callers
+     * (JTI registration, re-authentication) never parse a token we just signed.
+     */
+    public VerifiedToken issueAccessToken(User user, String deviceFingerprint) {
         Instant now = Instant.now();
         Instant expiration = now.plusSeconds(accessTokenExpirationMinutes * 60L);
 
-        JwtBuilder builder = Jwts.builder()
-                .header()
-                    .type("JWT")
-                    .and()
+        ClaimsBuilder claims = Jwts.claims()
                 .subject(user.getUsername())
                 .issuer(issuer)
                 .issuedAt(Date.from(now))
@@ -76,16 +99,38 @@ public class JwtService {
                 // JTI - unique token ID for blacklisting
                 .id(UUID.randomUUID().toString())
                 // VER - token version for global invalidation
-                .claim("ver", user.getTokenVersion())
+                .add("ver", user.getTokenVersion())
                 // User ID for quick lookup
-                .claim("uid", user.getId())
-                .signWith(signingKey, Jwts.SIG.HS256);
+                .add("uid", user.getId())
+                // SVC - granted service codes, so downstream checks need no auth-server call
+                .add("svc", grantedServiceCodes(user));
 
         if (deviceFingerprint != null && !deviceFingerprint.isBlank()) {
-            builder.claim("dfp", deviceFingerprint);
+            claims.add("dfp", deviceFingerprint);
         }
 
-        return builder.compact();
+        Claims built = claims.build();
+        String token = Jwts.builder()
+                .header()
+                    .type("JWT")
+                    .and()
+                .claims(built)
+                .signWith(signingKey, Jwts.SIG.HS256)
+                .compact();
+        return new VerifiedToken(token, built);
+    }
+
+    /**
+     * From the user security cache, which is invalidated on every service
+     * assignment change, so a refresh costs no database query.
+     */
+    private List<String> grantedServiceCodes(User user) {
+        if (user.getId() == null) {
+            return List.of();
+        }
+        return userSecurityCache.get(user.getUsername())
+                .map(UserSecuritySnapshot::serviceCodes)
+                .orElse(List.of());
     }
 
     /**
@@ -96,12 +141,25 @@ public class JwtService {
      * @throws JwtException if token is invalid
      */
     public Claims parseToken(String token) {
-        return Jwts.parser()
-                .verifyWith(signingKey)
-                .requireIssuer(issuer)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    /**
+     * Verify a token once and return it with its claims.
+     *
+     * @param token The JWT token string
+     * @return The verified token, or empty if it is malformed, forged or expired
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        try {
+            return Optional.of(new VerifiedToken(token, parseToken(token)));
+        } catch (ExpiredJwtException e) {
+            log.debug("Token expired: {}", e.getMessage());
+            return Optional.empty();
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Invalid token: {}", e.getMessage());
+            return Optional.empty();
+        }
     }
 
     /**
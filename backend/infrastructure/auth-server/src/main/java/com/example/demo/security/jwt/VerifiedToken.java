@@ -0,0 +1,59 @@
+package com.example.demo.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * An access token whose signature and issuer have been verified, together
+ * with its claims.
+ *
+ * Created once per request by {@link JwtAuthenticationFilter} (or once per
+ * issued token by {@link JwtService#issueAccessToken}) and stored as a request
+ * attribute, so later steps read claims instead of parsing the token again.
+ */
+public record VerifiedToken(String token, Claims claims) {
+
+    public static final String REQUEST_ATTRIBUTE = VerifiedToken.class.getName();
+
+    /**
+     * The verified token of the current request, if it matches the given raw token.
+     */
+    public static Optional<VerifiedToken> fromRequest(HttpServletRequest request, String token) {
+        Object attribute = request.getAttribute(REQUEST_ATTRIBUTE);
+        if (attribute instanceof VerifiedToken verified && verified.token().equals(token)) {
+            return Optional.of(verified);
+        }
+        return Optional.empty();
+    }
+
+    public String subject() {
+        return claims.getSubject();
+    }
+
+    public String jti() {
+        return claims.getId();
+    }
+
+    public Long userId() {
+        return claims.get("uid", Long.class);
+    }
+
+    public Long tokenVersion() {
+        return claims.get("ver", Long.class);
+    }
+
+    public String deviceFingerprint() {
+        return claims.get("dfp", String.class);
+    }
+
+    /**
+     * Remaining time until expiration in seconds (0 or negative once expired).
+     */
+    public long remainingSeconds() {
+        Date expiration = claims.getExpiration();
+        return expiration != null ? (expiration.getTime() - System.currentTimeMillis()) / 1000 : 0;
+    }
+}
@@ -2,35 +2,44 @@ package com.example.demo.security.ratelimit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Rate Limiting Service using Redis sliding window algorithm.
+ * Rate Limiting Service backed by a pluggable {@link RateLimiter}
+ * (by default an atomic Redis sliding window counter).
  * 
  * Protects endpoints from abuse:
  * - /login: 5/min (brute force protection)
  * - /refresh: 10/min (token abuse)
  * - /logout: 5/min (DoS protection)
  * - /me: 60/min (API abuse)
+ *
+ * When Redis denies a key, the denial and its Retry-After are remembered
+ * locally. Until then the key cannot be admitted anywhere in the cluster, so
+ * repeated requests (e.g. a credential-stuffing burst) are rejected without
+ * touching Redis.
  */
 @Service
 public class RateLimitService {
 
     private static final Logger log = LoggerFactory.getLogger(RateLimitService.class);
-    private static final String RATE_LIMIT_PREFIX = "ratelimit:";
 
-    private final StringRedisTemplate redisTemplate;
+    private final RateLimiter rateLimiter;
+    private final Map<String, Long> deniedUntil = new ConcurrentHashMap<>();
 
-    public RateLimitService(StringRedisTemplate redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    @Value("${security.rate-limit.local-deny-cache-size:10000}")
+    private int localDenyCacheSize;
+
+    public RateLimitService(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
     }
 
     /**
      * Check if request is allowed under rate limit.
-     * Uses sliding window counter algorithm.
      * 
      * @param key Unique identifier (e.g., IP, user ID, endpoint)
      * @param limit Maximum requests allowed
@@ -38,30 +47,22 @@ public class RateLimitService {
      * @return RateLimitResult with allowed status and remaining requests
      */
     public RateLimitResult checkRateLimit(String key, int limit, int windowSeconds) {
-        try {
-            String redisKey = RATE_LIMIT_PREFIX + key;
-            long now = System.currentTimeMillis();
-            long windowStart = now - (windowSeconds * 1000L);
-
-            // Remove old entries outside the window
-            redisTemplate.opsForZSet().removeRangeByScore(redisKey, 0, windowStart);
-
-            // Count current requests in window
-            Long count = redisTemplate.opsForZSet().zCard(redisKey);
-            if (count == null) count = 0L;
-
-            if (count >= limit) {
-                // Rate limit exceeded
-                log.warn("Rate limit exceeded for key: {} ({}/{})", key, count, limit);
-                return new RateLimitResult(false, 0, calculateRetryAfter(redisKey, windowStart));
+        long now = System.currentTimeMillis();
+        Long blockedUntil = deniedUntil.get(key);
+        if (blockedUntil != null) {
+            if (blockedUntil > now) {
+                return new RateLimitResult(false, 0, Math.max((blockedUntil - now + 999) / 1000, 1));
             }
+            deniedUntil.remove(key, blockedUntil);
+        }
 
-            // Add current request
-            redisTemplate.opsForZSet().add(redisKey, String.valueOf(now), now);
-            redisTemplate.expire(redisKey, Duration.ofSeconds(windowSeconds + 10));
-
-            int remaining = (int) (limit - count - 1);
-            return new RateLimitResult(true, remaining, 0);
+        try {
+            RateLimitResult result = rateLimiter.tryAcquire(key, limit, windowSeconds);
+            if (!result.isAllowed()) {
+                log.warn("Rate limit exceeded for key: {} (limit {}/{}s)", key, limit, windowSeconds);
+                rememberDenial(key, now + result.retryAfterSeconds() * 1000L);
+            }
+            return result;
 
         } catch (Exception e) {
             log.error("Rate limit check failed: {}", e.getMessage());
@@ -111,24 +112,17 @@ public class RateLimitService {
     }
 
     /**
-     * Calculate seconds until rate limit resets.
+     * Remember a denial locally, dropping expired entries once the cache is full.
      */
-    private long calculateRetryAfter(String redisKey, long windowStart) {
-        try {
-            // Get oldest entry in current window
-            var oldest = redisTemplate.opsForZSet().rangeWithScores(redisKey, 0, 0);
-            if (oldest != null && !oldest.isEmpty()) {
-                var entry = oldest.iterator().next();
-                if (entry.getScore() != null) {
-                    long oldestTime = entry.getScore().longValue();
-                    long retryAfter = (oldestTime - windowStart) / 1000;
-                    return Math.max(retryAfter, 1);
-                }
+    private void rememberDenial(String key, long until) {
+        if (deniedUntil.size() >= localDenyCacheSize) {
+            long now = System.currentTimeMillis();
+            deniedUntil.values().removeIf(expiry -> expiry <= now);
+            if (deniedUntil.size() >= localDenyCacheSize) {
+                return;
             }
-        } catch (Exception e) {
-            log.debug("Failed to calculate retry after: {}", e.getMessage());
         }
-        return 60; // Default to 60 seconds
+        deniedUntil.merge(key, until, Math::max);
     }
 
     /**
@@ -0,0 +1,24 @@
+package com.example.demo.security.ratelimit;
+
+import com.example.demo.security.ratelimit.RateLimitService.RateLimitResult;
+
+/**
+ * Algorithm behind {@link RateLimitService}.
+ *
+ * Implementations decide a single request against shared state and must be
+ * atomic across auth-server instances. Failures are thrown, not swallowed;
+ * the service decides whether to fail open.
+ */
+public interface RateLimiter {
+
+    /**
+     * Try to admit one request.
+     *
+     * @param key Unique identifier (e.g., IP, user ID, endpoint)
+     * @param limit Maximum requests allowed
+     * @param windowSeconds Time window in seconds
+     * @return RateLimitResult; when denied, retryAfterSeconds is the earliest
+     *         time a request for this key can be admitted again
+     */
+    RateLimitResult tryAcquire(String key, int limit, int windowSeconds);
+}
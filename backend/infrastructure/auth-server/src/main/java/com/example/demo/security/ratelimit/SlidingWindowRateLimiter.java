@@ -0,0 +1,86 @@
+package com.example.demo.security.ratelimit;
+
+import com.example.demo.security.ratelimit.RateLimitService.RateLimitResult;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Sliding window counter in Redis.
+ *
+ * Each key is one small hash holding the current fixed window's index and
+ * count plus the previous window's count. The request rate is estimated as
+ * {@code previous * (unelapsed fraction of the current window) + current},
+ * which tracks a true sliding window closely with O(1) memory per key.
+ *
+ * The whole check-and-increment runs as one Lua script using Redis' clock,
+ * so concurrent requests on any instance cannot over-admit. Denied requests
+ * do not write anything.
+ */
+@Component
+public class SlidingWindowRateLimiter implements RateLimiter {
+
+    private static final String KEY_PREFIX = "ratelimit:sw:";
+
+    // KEYS: state hash; ARGV: limit, windowMs.
+    // Returns the remaining requests (>= 0) if allowed, or -retryAfterMs (< 0) if denied.
+    private static final RedisScript<Long> SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>("""
+            local limit = tonumber(ARGV[1])
+            local windowMs = tonumber(ARGV[2])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local window = math.floor(now / windowMs)
+
+            local state = redis.call('HMGET', KEYS[1], 'w', 'c', 'p')
+            local w = tonumber(state[1]) or window
+            local current = tonumber(state[2]) or 0
+            local previous = tonumber(state[3]) or 0
+            if w ~= window then
+                if w == window - 1 then previous = current else previous = 0 end
+                current = 0
+            end
+
+            local elapsed = now - window * windowMs
+            local estimate = previous * (windowMs - elapsed) / windowMs + current
+            if estimate >= limit then
+                local retryMs
+                if current < limit then
+                    retryMs = windowMs * (1 - (limit - current) / previous) - elapsed
+                else
+                    retryMs = windowMs - elapsed + windowMs * (1 - limit / current)
+                end
+                return -math.max(math.ceil(retryMs), 1)
+            end
+
+            current = current + 1
+            redis.call('HSET', KEYS[1], 'w', window, 'c', current, 'p', previous)
+            redis.call('PEXPIRE', KEYS[1], windowMs * 2)
+            return math.max(math.floor(limit - estimate - 1), 0)
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public SlidingWindowRateLimiter(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key, int limit, int windowSeconds) {
+        Long result = redisTemplate.execute(SLIDING_WINDOW_SCRIPT,
+                List.of(KEY_PREFIX + key),
+                String.valueOf(limit),
+                String.valueOf(windowSeconds * 1000L));
+        if (result == null) {
+            throw new IllegalStateException("Unexpected rate limit script result: null");
+        }
+
+        if (result >= 0) {
+            return new RateLimitResult(true, result.intValue(), 0);
+        }
+        long retryAfterMs = -result;
+        return new RateLimitResult(false, 0, Math.max((retryAfterMs + 999) / 1000, 1));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.demo.security.revocation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes access token revocations so the gateway can reject revoked
+ * tokens at the edge without a Redis lookup per request.
+ *
+ * Every revocation is written to a replay sorted set (scored by the time
+ * after which it no longer matters) and announced on a pub/sub channel.
+ * Gateways apply channel messages immediately and periodically reload the
+ * sorted sets to recover anything they missed.
+ *
+ * Message format on {@code auth:revocations}:
+ * - {@code jti:<jti>:<expiresAtEpochSeconds>}
+ * - {@code ver:<userId>:<minTokenVersion>:<expiresAtEpochSeconds>}
+ */
+@Service
+public class RevocationPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(RevocationPublisher.class);
+
+    public static final String CHANNEL = "auth:revocations";
+    public static final String REVOKED_JTIS_KEY = "revocations:jti";
+    public static final String USER_VERSION_FLOORS_KEY = "revocations:user-version";
+
+    // KEYS: replay set; ARGV: expiresAt, now, channel, jti...
+    private static final RedisScript<Long> PUBLISH_BATCH_SCRIPT = new DefaultRedisScript<>("""
+            for i = 4, #ARGV do
+                redis.call('ZADD', KEYS[1], ARGV[1], ARGV[i])
+                redis.call('PUBLISH', ARGV[3], 'jti:' .. ARGV[i] .. ':' .. ARGV[1])
+            end
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[2])
+            return #ARGV - 3
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${security.jwt.access-token-expiration-minutes:3}")
+    private int accessTokenExpirationMinutes;
+
+    @Value("${security.revocation.publish-enabled:true}")
+    private boolean publishEnabled;
+
+    public RevocationPublisher(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Announce a single revoked access token.
+     *
+     * @param jti The JWT ID
+     * @param remainingTtlSeconds Remaining time until the token expires
+     */
+    public void publishRevokedJti(String jti, long remainingTtlSeconds) {
+        if (!publishEnabled || jti == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis() / 1000;
+        long expiresAt = now + Math.max(remainingTtlSeconds, 0) + 60;
+        try {
+            redisTemplate.opsForZSet().add(REVOKED_JTIS_KEY, jti, expiresAt);
+            redisTemplate.opsForZSet().removeRangeByScore(REVOKED_JTIS_KEY, Double.NEGATIVE_INFINITY, now);
+            redisTemplate.convertAndSend(CHANNEL, "jti:" + jti + ":" + expiresAt);
+        } catch (Exception e) {
+            log.error("Failed to publish JTI revocation: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Announce several revoked access tokens in one round trip.
+     *
+     * @param jtis The JWT IDs
+     * @param remainingTtlSeconds Longest remaining time until any of them expires
+     */
+    public void publishRevokedJtis(Collection<String> jtis, long remainingTtlSeconds) {
+        if (!publishEnabled || jtis == null || jtis.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis() / 1000;
+        long expiresAt = now + Math.max(remainingTtlSeconds, 0) + 60;
+        List<String> args = new ArrayList<>(jtis.size() + 3);
+        args.add(String.valueOf(expiresAt));
+        args.add(String.valueOf(now));
+        args.add(CHANNEL);
+        args.addAll(jtis);
+        try {
+            redisTemplate.execute(PUBLISH_BATCH_SCRIPT, List.of(REVOKED_JTIS_KEY), args.toArray());
+        } catch (Exception e) {
+            log.error("Failed to publish JTI revocations: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Announce that every access token of a user below the given version is
+     * revoked (logout-all, refresh token reuse). The floor only needs to live
+     * as long as the longest access token issued before it.
+     *
+     * @param userId User ID
+     * @param minTokenVersion Lowest token version that is still valid
+     */
+    public void publishTokenVersion(Long userId, Long minTokenVersion) {
+        if (!publishEnabled || userId == null || minTokenVersion == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis() / 1000;
+        long expiresAt = now + accessTokenExpirationMinutes * 60L + 60;
+        try {
+            redisTemplate.opsForZSet().add(USER_VERSION_FLOORS_KEY, userId + ":" + minTokenVersion, expiresAt);
+            redisTemplate.opsForZSet().removeRangeByScore(USER_VERSION_FLOORS_KEY, Double.NEGATIVE_INFINITY, now);
+            redisTemplate.convertAndSend(CHANNEL, "ver:" + userId + ":" + minTokenVersion + ":" + expiresAt);
+            log.debug("Published token version {} for user {}", minTokenVersion, userId);
+        } catch (Exception e) {
+            log.error("Failed to publish token version: {}", e.getMessage());
+        }
+    }
+}
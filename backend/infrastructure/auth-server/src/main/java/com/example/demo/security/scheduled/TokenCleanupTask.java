@@ -1,6 +1,6 @@
 package com.example.demo.security.scheduled;
 
-import com.example.demo.security.token.RefreshTokenService;
+import com.example.demo.security.token.RefreshTokenRetention;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -8,17 +8,18 @@ import org.springframework.stereotype.Component;
 
 /**
  * Scheduled task for cleaning up expired refresh tokens.
- * Runs every hour to remove expired tokens from the database.
+ * Runs every hour; expired partitions are dropped, or expired rows deleted
+ * in chunks where the table is not partitioned.
  */
 @Component
 public class TokenCleanupTask {
 
     private static final Logger log = LoggerFactory.getLogger(TokenCleanupTask.class);
 
-    private final RefreshTokenService refreshTokenService;
+    private final RefreshTokenRetention refreshTokenRetention;
 
-    public TokenCleanupTask(RefreshTokenService refreshTokenService) {
-        this.refreshTokenService = refreshTokenService;
+    public TokenCleanupTask(RefreshTokenRetention refreshTokenRetention) {
+        this.refreshTokenRetention = refreshTokenRetention;
     }
 
     /**
@@ -27,9 +28,9 @@ public class TokenCleanupTask {
     @Scheduled(fixedRate = 3600000) // Every hour
     public void cleanupExpiredTokens() {
         log.debug("Running scheduled token cleanup");
-        int deleted = refreshTokenService.cleanupExpiredTokens();
-        if (deleted > 0) {
-            log.info("Scheduled cleanup removed {} expired tokens", deleted);
+        long reclaimed = refreshTokenRetention.reclaimExpired();
+        if (reclaimed > 0) {
+            log.info("Scheduled cleanup removed {} expired tokens", reclaimed);
         }
     }
 }
@@ -0,0 +1,91 @@
+package com.example.demo.security.token;
+
+import com.example.demo.user.UserRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Refresh token store backed only by the {@code refresh_tokens} table.
+ * Enable with {@code security.refresh-token.store=jpa} (e.g. without Redis).
+ *
+ * Successors are not recorded, so only requests racing inside one instance
+ * share a rotation; a later replay of a rotated token counts as reuse.
+ */
+@Component
+@ConditionalOnProperty(name = "security.refresh-token.store", havingValue = "jpa")
+public class JpaRefreshTokenStore implements RefreshTokenStore {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+
+    public JpaRefreshTokenStore(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    @Transactional
+    public void create(RefreshTokenRecord token) {
+        refreshTokenRepository.save(token.applyTo(new RefreshToken(), userRepository.getReferenceById(token.userId())));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<RefreshTokenRecord> find(String tokenHash) {
+        return refreshTokenRepository.findByTokenHash(tokenHash).map(RefreshTokenRecord::fromEntity);
+    }
+
+    @Override
+    @Transactional
+    public RotationStatus rotate(RefreshTokenRecord current, RefreshTokenRecord next,
+                                 String successorEnvelope, Duration grace) {
+        // Conditional update: only one concurrent rotation can flip used=false -> true
+        if (refreshTokenRepository.markUsedIfUsable(current.tokenHash(), Instant.now()) == 0) {
+            return refreshTokenRepository.findByTokenHash(current.tokenHash())
+                    .map(token -> token.isRevoked() ? RotationStatus.REVOKED : RotationStatus.ALREADY_USED)
+                    .orElse(RotationStatus.NOT_FOUND);
+        }
+        create(next);
+        return RotationStatus.ROTATED;
+    }
+
+    @Override
+    public Optional<String> findSuccessor(String tokenHash) {
+        return Optional.empty();
+    }
+
+    @Override
+    @Transactional
+    public void revoke(String tokenHash) {
+        refreshTokenRepository.revokeByTokenHash(tokenHash);
+    }
+
+    @Override
+    @Transactional
+    public void revokeFamily(String tokenFamily) {
+        refreshTokenRepository.revokeTokenFamily(tokenFamily);
+    }
+
+    @Override
+    @Transactional
+    public void revokeAllForUser(Long userId) {
+        refreshTokenRepository.revokeAllUserTokens(userRepository.getReferenceById(userId));
+    }
+
+    @Override
+    @Transactional
+    public void revokeDevice(Long userId, String deviceFingerprint) {
+        refreshTokenRepository.revokeDeviceTokens(userRepository.getReferenceById(userId), deviceFingerprint);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countActiveDevices(Long userId) {
+        return refreshTokenRepository.countActiveDevices(userRepository.getReferenceById(userId), Instant.now());
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.demo.security.token;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Refresh token store with Redis as the primary copy.
+ *
+ * Each token is a hash under {@code refresh:token:<sha256>} that expires
+ * with the token. Two index sets, {@code refresh:family:<family>} and
+ * {@code refresh:user:<userId>}, serve family, user and device revocation.
+ * Rotation (including reuse detection) and revocation are single Lua
+ * scripts, so concurrent refreshes cannot both succeed. A rotation also
+ * leaves the encrypted successor under {@code refresh:successor:<sha256>}
+ * for the reuse-grace window, so losers of the race (on any instance) can
+ * be given the winner's token.
+ *
+ * Every change is also queued to {@link RefreshTokenWriteBehind}, which
+ * writes it to {@code refresh_tokens} in batches for audit and durability.
+ * Postgres is read only when Redis does not know a token (read-through),
+ * and to rebuild Redis after it lost its data: a marker key disappears
+ * with the data, and the next recovery check reloads all usable tokens.
+ *
+ * Scripts touch keys derived from their arguments, so this assumes a single
+ * Redis node (no cluster).
+ */
+@Component
+@ConditionalOnProperty(name = "security.refresh-token.store", havingValue = "redis", matchIfMissing = true)
+public class RedisRefreshTokenStore implements RefreshTokenStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisRefreshTokenStore.class);
+
+    static final String TOKEN_PREFIX = "refresh:token:";
+    private static final String FAMILY_PREFIX = "refresh:family:";
+    private static final String USER_PREFIX = "refresh:user:";
+    private static final String SUCCESSOR_PREFIX = "refresh:successor:";
+    private static final String READY_MARKER_KEY = "refresh:store:ready";
+    private static final String REBUILD_LOCK_KEY = "refresh:store:rebuild-lock";
+
+    // KEYS: token, family set, user set; ARGV: expiresAtMs, nowMs, onlyIfAbsent, tokenHash, field/value...
+    private static final RedisScript<Long> CREATE_SCRIPT = new DefaultRedisScript<>("""
+            local ttl = tonumber(ARGV[1]) - tonumber(ARGV[2])
+            if ttl <= 0 then
+                return 0
+            end
+            if ARGV[3] == '1' and redis.call('EXISTS', KEYS[1]) == 1 then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], unpack(ARGV, 5))
+            redis.call('PEXPIRE', KEYS[1], ttl)
+            for i = 2, 3 do
+                redis.call('SADD', KEYS[i], ARGV[4])
+                if redis.call('PTTL', KEYS[i]) < ttl then
+                    redis.call('PEXPIRE', KEYS[i], ttl)
+                end
+            end
+            return 1
+            """, Long.class);
+
+    // KEYS: current, next, family set, user set, successor;
+    // ARGV: nowMs, nextExpiresAtMs, nextHash, successorEnvelope, graceMs, field/value...
+    private static final RedisScript<String> ROTATE_SCRIPT = new DefaultRedisScript<>("""
+            local state = redis.call('HMGET', KEYS[1], 'used', 'revoked')
+            if not state[1] then
+                return 'NOT_FOUND'
+            end
+            if state[2] == '1' then
+                return 'REVOKED'
+            end
+            if state[1] == '1' then
+                return 'ALREADY_USED'
+            end
+            redis.call('HSET', KEYS[1], 'used', '1', 'lastUsedAt', ARGV[1])
+            if tonumber(ARGV[5]) > 0 then
+                redis.call('SET', KEYS[5], ARGV[4], 'PX', ARGV[5])
+            end
+            local ttl = tonumber(ARGV[2]) - tonumber(ARGV[1])
+            redis.call('HSET', KEYS[2], unpack(ARGV, 6))
+            redis.call('PEXPIRE', KEYS[2], ttl)
+            for i = 3, 4 do
+                redis.call('SADD', KEYS[i], ARGV[3])
+                if redis.call('PTTL', KEYS[i]) < ttl then
+                    redis.call('PEXPIRE', KEYS[i], ttl)
+                end
+            end
+            return 'ROTATED'
+            """, String.class);
+
+    // KEYS: token
+    private static final RedisScript<Long> REVOKE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                redis.call('HSET', KEYS[1], 'revoked', '1')
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    // KEYS: index set; ARGV: token key prefix, device fingerprint ('' = all). Prunes expired members.
+    private static final RedisScript<Long> REVOKE_INDEXED_SCRIPT = new DefaultRedisScript<>("""
+            local revoked = 0
+            for _, hash in ipairs(redis.call('SMEMBERS', KEYS[1])) do
+                local key = ARGV[1] .. hash
+                if redis.call('EXISTS', key) == 0 then
+                    redis.call('SREM', KEYS[1], hash)
+                elseif ARGV[2] == '' or redis.call('HGET', key, 'deviceFingerprint') == ARGV[2] then
+                    redis.call('HSET', key, 'revoked', '1')
+                    revoked = revoked + 1
+                end
+            end
+            return revoked
+            """, Long.class);
+
+    // KEYS: user set; ARGV: token key prefix, nowMs
+    private static final RedisScript<Long> COUNT_DEVICES_SCRIPT = new DefaultRedisScript<>("""
+            local devices = {}
+            local count = 0
+            for _, hash in ipairs(redis.call('SMEMBERS', KEYS[1])) do
+                local state = redis.call('HMGET', ARGV[1] .. hash, 'deviceFingerprint', 'used', 'revoked', 'expiresAt')
+                if state[1] and state[2] == '0' and state[3] == '0' and tonumber(state[4]) > tonumber(ARGV[2])
+                        and not devices[state[1]] then
+                    devices[state[1]] = true
+                    count = count + 1
+                end
+            end
+            return count
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenWriteBehind writeBehind;
+
+    @Value("${security.refresh-token.recovery.page-size:1000}")
+    private int recoveryPageSize;
+
+    public RedisRefreshTokenStore(StringRedisTemplate redisTemplate,
+                                  RefreshTokenRepository refreshTokenRepository,
+                                  RefreshTokenWriteBehind writeBehind) {
+        this.redisTemplate = redisTemplate;
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.writeBehind = writeBehind;
+    }
+
+    @Override
+    public void create(RefreshTokenRecord token) {
+        put(token, false);
+        writeBehind.upsert(token);
+    }
+
+    @Override
+    public Optional<RefreshTokenRecord> find(String tokenHash) {
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(TOKEN_PREFIX + tokenHash);
+        if (!fields.isEmpty()) {
+            return Optional.of(fromFields(tokenHash, fields));
+        }
+
+        // Not in Redis: lost on a restart before recovery ran, or unknown
+        Optional<RefreshTokenRecord> stored = refreshTokenRepository.findByTokenHash(tokenHash)
+                .map(RefreshTokenRecord::fromEntity);
+        stored.ifPresent(token -> put(token, true));
+        return stored;
+    }
+
+    @Override
+    public RotationStatus rotate(RefreshTokenRecord current, RefreshTokenRecord next,
+                                 String successorEnvelope, Duration grace) {
+        long now = System.currentTimeMillis();
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(now));
+        args.add(String.valueOf(next.expiresAt().toEpochMilli()));
+        args.add(next.tokenHash());
+        args.add(successorEnvelope != null ? successorEnvelope : "");
+        args.add(String.valueOf(successorEnvelope != null ? Math.max(grace.toMillis(), 0) : 0));
+        args.addAll(toFields(next));
+
+        String status = redisTemplate.execute(ROTATE_SCRIPT,
+                List.of(TOKEN_PREFIX + current.tokenHash(), TOKEN_PREFIX + next.tokenHash(),
+                        FAMILY_PREFIX + next.tokenFamily(), USER_PREFIX + next.userId(),
+                        SUCCESSOR_PREFIX + current.tokenHash()),
+                args.toArray());
+        RotationStatus result = status != null ? RotationStatus.valueOf(status) : RotationStatus.NOT_FOUND;
+
+        if (result == RotationStatus.ROTATED) {
+            writeBehind.upsert(current.markUsed(Instant.ofEpochMilli(now)));
+            writeBehind.upsert(next);
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<String> findSuccessor(String tokenHash) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(SUCCESSOR_PREFIX + tokenHash));
+    }
+
+    @Override
+    public void revoke(String tokenHash) {
+        redisTemplate.execute(REVOKE_SCRIPT, List.of(TOKEN_PREFIX + tokenHash));
+        writeBehind.revoke(tokenHash);
+    }
+
+    @Override
+    public void revokeFamily(String tokenFamily) {
+        redisTemplate.execute(REVOKE_INDEXED_SCRIPT, List.of(FAMILY_PREFIX + tokenFamily), TOKEN_PREFIX, "");
+        writeBehind.revokeFamily(tokenFamily);
+    }
+
+    @Override
+    public void revokeAllForUser(Long userId) {
+        redisTemplate.execute(REVOKE_INDEXED_SCRIPT, List.of(USER_PREFIX + userId), TOKEN_PREFIX, "");
+        writeBehind.revokeAllForUser(userId);
+    }
+
+    @Override
+    public void revokeDevice(Long userId, String deviceFingerprint) {
+        redisTemplate.execute(REVOKE_INDEXED_SCRIPT, List.of(USER_PREFIX + userId), TOKEN_PREFIX, deviceFingerprint);
+        writeBehind.revokeDevice(userId, deviceFingerprint);
+    }
+
+    @Override
+    public long countActiveDevices(Long userId) {
+        Long count = redisTemplate.execute(COUNT_DEVICES_SCRIPT, List.of(USER_PREFIX + userId),
+                TOKEN_PREFIX, String.valueOf(System.currentTimeMillis()));
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Rebuild Redis from Postgres if it lost its data (restart without
+     * persistence, failover, flush). Cheap when nothing is missing: one EXISTS.
+     */
+    @Scheduled(initialDelayString = "${security.refresh-token.recovery.initial-delay-ms:5000}",
+               fixedDelayString = "${security.refresh-token.recovery.check-interval-ms:30000}")
+    public void recoverIfNeeded() {
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(READY_MARKER_KEY))) {
+                return;
+            }
+            Boolean locked = redisTemplate.opsForValue().setIfAbsent(REBUILD_LOCK_KEY, "1", Duration.ofMinutes(10));
+            if (!Boolean.TRUE.equals(locked)) {
+                return; // another instance is rebuilding
+            }
+            try {
+                rebuild();
+                redisTemplate.opsForValue().set(READY_MARKER_KEY, Instant.now().toString());
+            } finally {
+                redisTemplate.delete(REBUILD_LOCK_KEY);
+            }
+        } catch (Exception e) {
+            log.error("Refresh token store recovery failed: {}", e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        log.warn("Refresh token store marker missing; rebuilding Redis from refresh_tokens");
+        // Pending changes first, so the database is not older than what Redis had
+        writeBehind.flush();
+
+        long afterId = 0;
+        int loaded = 0;
+        Instant now = Instant.now();
+        while (true) {
+            List<RefreshToken> page = refreshTokenRepository.findActiveAfter(afterId, now,
+                    PageRequest.of(0, recoveryPageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            for (RefreshToken token : page) {
+                // Never overwrite state written since the restart
+                put(RefreshTokenRecord.fromEntity(token), true);
+            }
+            loaded += page.size();
+            afterId = page.get(page.size() - 1).getId();
+        }
+        log.warn("Refresh token store rebuilt: {} active tokens loaded", loaded);
+    }
+
+    private void put(RefreshTokenRecord token, boolean onlyIfAbsent) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(token.expiresAt().toEpochMilli()));
+        args.add(String.valueOf(System.currentTimeMillis()));
+        args.add(onlyIfAbsent ? "1" : "0");
+        args.add(token.tokenHash());
+        args.addAll(toFields(token));
+        redisTemplate.execute(CREATE_SCRIPT,
+                List.of(TOKEN_PREFIX + token.tokenHash(), FAMILY_PREFIX + token.tokenFamily(),
+                        USER_PREFIX + token.userId()),
+                args.toArray());
+    }
+
+    private static List<String> toFields(RefreshTokenRecord token) {
+        return List.of(
+                "tokenFamily", token.tokenFamily(),
+                "userId", String.valueOf(token.userId()),
+                "deviceFingerprint", token.deviceFingerprint(),
+                "deviceName", nullToEmpty(token.deviceName()),
+                "ipAddress", nullToEmpty(token.ipAddress()),
+                "ipPrefix", token.ipPrefix(),
+                "userAgentHash", token.userAgentHash(),
+                "deviceId", nullToEmpty(token.deviceId()),
+                "createdAt", String.valueOf(token.createdAt().toEpochMilli()),
+                "expiresAt", String.valueOf(token.expiresAt().toEpochMilli()),
+                "lastUsedAt", token.lastUsedAt() != null ? String.valueOf(token.lastUsedAt().toEpochMilli()) : "",
+                "used", token.used() ? "1" : "0",
+                "revoked", token.revoked() ? "1" : "0",
+                "userTokenVersion", String.valueOf(token.userTokenVersion()));
+    }
+
+    private static RefreshTokenRecord fromFields(String tokenHash, Map<Object, Object> fields) {
+        return new RefreshTokenRecord(
+                tokenHash,
+                field(fields, "tokenFamily"),
+                Long.valueOf(field(fields, "userId")),
+                field(fields, "deviceFingerprint"),
+                field(fields, "deviceName"),
+                field(fields, "ipAddress"),
+                field(fields, "ipPrefix"),
+                field(fields, "userAgentHash"),
+                field(fields, "deviceId"),
+                instant(field(fields, "createdAt")),
+                instant(field(fields, "expiresAt")),
+                instant(field(fields, "lastUsedAt")),
+                "1".equals(field(fields, "used")),
+                "1".equals(field(fields, "revoked")),
+                Long.valueOf(field(fields, "userTokenVersion")));
+    }
+
+    private static String field(Map<Object, Object> fields, String name) {
+        Object value = fields.get(name);
+        return value == null || value.toString().isEmpty() ? null : value.toString();
+    }
+
+    private static Instant instant(String epochMillis) {
+        return epochMillis != null ? Instant.ofEpochMilli(Long.parseLong(epochMillis)) : null;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
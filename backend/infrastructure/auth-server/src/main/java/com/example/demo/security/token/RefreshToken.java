@@ -12,21 +12,31 @@ import java.time.Instant;
  * - Automatic expiration
  */
 @Entity
-@Table(name = "refresh_tokens", indexes = {
+@Table(name = "refresh_tokens", uniqueConstraints = {
+    @UniqueConstraint(name = RefreshToken.HASH_EXPIRY_KEY, columnNames = {"tokenHash", "expiresAt"})
+}, indexes = {
     @Index(name = "idx_refresh_token_hash", columnList = "tokenHash"),
     @Index(name = "idx_refresh_token_user", columnList = "user_id"),
-    @Index(name = "idx_refresh_token_family", columnList = "tokenFamily")
+    @Index(name = "idx_refresh_token_family", columnList = "tokenFamily"),
+    @Index(name = "idx_refresh_token_expires", columnList = "expiresAt")
 })
 public class RefreshToken {
 
+    /**
+     * Unique key on (token_hash, expires_at). A partitioned table can only
+     * enforce uniqueness together with the partition key.
+     */
+    public static final String HASH_EXPIRY_KEY = "uk_refresh_token_hash_expires";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     /**
-     * SHA-256 hash of the actual token - never store plain text
+     * SHA-256 hash of the actual token - never store plain text.
+     * Unique together with expiresAt (see {@link #HASH_EXPIRY_KEY}).
      */
-    @Column(nullable = false, unique = true, length = 64)
+    @Column(nullable = false, length = 64)
     private String tokenHash;
 
     /**
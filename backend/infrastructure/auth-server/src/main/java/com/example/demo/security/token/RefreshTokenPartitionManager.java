@@ -0,0 +1,269 @@
+package com.example.demo.security.token;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps {@code refresh_tokens} range-partitioned by {@code expires_at}, one
+ * partition per UTC day, on PostgreSQL 11 and later.
+ *
+ * Every rotation inserts a row, so the table grows by millions of rows a
+ * week. With daily partitions an expired day is reclaimed by detaching and
+ * dropping its partition: no row-by-row delete, no table or index bloat,
+ * and no long lock on the live partitions.
+ *
+ * Off by default: converting the table is a schema migration, so an
+ * operator opts in with {@code security.refresh-token.partitioning.enabled=true}.
+ * Hibernate ({@code ddl-auto=update}) creates the table as a plain table.
+ * On the first startup with the flag on, an unpartitioned table is converted
+ * once, under an advisory lock: it is renamed to
+ * {@code refresh_tokens_unpartitioned} (its indexes get the same suffix),
+ * recreated partitioned with the same columns, and its unexpired rows are
+ * copied over. The legacy table is kept, not dropped; once the new table is
+ * verified the operator drops it by hand, or renames it back to undo the
+ * conversion.
+ *
+ * A partitioned table can only enforce uniqueness on keys that contain the
+ * partition key, so {@code token_hash} is unique together with
+ * {@code expires_at}; its own index still serves lookups by hash.
+ * Partitions are created {@code expiration-days + precreate-days} ahead. A
+ * default partition catches anything outside them (e.g. a late write-behind
+ * of an expired token); it is purged in chunks.
+ *
+ * Elsewhere, or with partitioning disabled, nothing is changed and
+ * {@link RefreshTokenRetention} deletes expired rows in chunks instead.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class RefreshTokenPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenPartitionManager.class);
+
+    private static final String TABLE = "refresh_tokens";
+    private static final String LEGACY_TABLE = TABLE + "_unpartitioned";
+    private static final String LEGACY_SUFFIX = "_unpartitioned";
+    private static final String DEFAULT_PARTITION = "refresh_tokens_default";
+    private static final String ID_SEQUENCE = "refresh_tokens_partitioned_id_seq";
+    private static final Pattern PARTITION_NAME = Pattern.compile("refresh_tokens_p(\\d{8})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final long MIGRATION_LOCK_ID = 0x7265667265736801L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${security.refresh-token.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${security.refresh-token.partitioning.precreate-days:2}")
+    private int precreateDays;
+
+    @Value("${security.refresh-token.expiration-days:7}")
+    private int expirationDays;
+
+    private volatile boolean partitioned;
+
+    public RefreshTokenPartitionManager(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("refresh_tokens partitioning disabled, expired tokens are deleted in chunks");
+            return;
+        }
+        if (!supportsPartitioning()) {
+            log.info("Database does not support declarative partitioning, expired refresh tokens are deleted in chunks");
+            return;
+        }
+        try {
+            partitioned = Boolean.TRUE.equals(transactionTemplate.execute(status -> migrateIfNeeded()));
+            if (partitioned) {
+                ensurePartitions(Instant.now());
+            }
+        } catch (DataAccessException e) {
+            log.error("Could not partition refresh_tokens, falling back to chunked deletes: {}", e.getMessage());
+            partitioned = false;
+        }
+    }
+
+    /**
+     * Whether {@code refresh_tokens} is partitioned and managed here.
+     */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * Create the daily partitions from today up to the longest possible
+     * token lifetime plus {@code precreate-days}.
+     */
+    public void ensurePartitions(Instant now) {
+        LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        createPartitions(today, today.plusDays(expirationDays + precreateDays));
+    }
+
+    /**
+     * Detach and drop every daily partition whose range has fully expired.
+     *
+     * @return Number of rows reclaimed
+     */
+    public long dropExpiredPartitions(Instant now) {
+        LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        long reclaimed = 0;
+        for (String partition : listPartitions()) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches() || !LocalDate.parse(matcher.group(1), PARTITION_SUFFIX).isBefore(today)) {
+                continue;
+            }
+            try {
+                Long rows = transactionTemplate.execute(status -> {
+                    // Detaching locks the parent; give up rather than queue behind a long query
+                    jdbcTemplate.execute("SET LOCAL lock_timeout = '5s'");
+                    Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM " + partition, Long.class);
+                    jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition);
+                    jdbcTemplate.execute("DROP TABLE " + partition);
+                    return count;
+                });
+                reclaimed += rows != null ? rows : 0;
+                log.info("Dropped expired refresh token partition {} ({} rows)", partition, rows);
+            } catch (DataAccessException e) {
+                log.warn("Could not drop refresh token partition {}, will retry: {}", partition, e.getMessage());
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Delete expired rows that landed in the default partition, in chunks.
+     *
+     * @return Number of rows deleted
+     */
+    public long purgeDefaultPartition(Instant now, int chunkSize) {
+        long deleted = 0;
+        int chunk;
+        do {
+            chunk = jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE ctid = ANY(ARRAY("
+                    + "SELECT ctid FROM " + DEFAULT_PARTITION + " WHERE expires_at < ? LIMIT ?))",
+                    Timestamp.from(now), chunkSize);
+            deleted += chunk;
+        } while (chunk >= chunkSize);
+        return deleted;
+    }
+
+    private boolean supportsPartitioning() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // Default partitions, partitioned indexes and foreign keys need 11+
+            return "PostgreSQL".equals(metaData.getDatabaseProductName())
+                    && metaData.getDatabaseMajorVersion() >= 11;
+        }));
+    }
+
+    private boolean migrateIfNeeded() {
+        jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, MIGRATION_LOCK_ID);
+        List<String> kind = jdbcTemplate.queryForList(
+                "SELECT c.relkind::text FROM pg_class c WHERE c.oid = to_regclass(?)", String.class, TABLE);
+        if (kind.isEmpty()) {
+            log.warn("Table {} does not exist, not partitioning it", TABLE);
+            return false;
+        }
+        if ("p".equals(kind.get(0))) {
+            return true;
+        }
+
+        log.info("Converting {} to a table partitioned by expires_at", TABLE);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_TABLE);
+        // Index names are schema-wide: move the legacy ones out of the way of the new table's
+        for (String index : jdbcTemplate.queryForList("SELECT indexname::text FROM pg_indexes"
+                + " WHERE schemaname = current_schema() AND tablename = ?", String.class, LEGACY_TABLE)) {
+            jdbcTemplate.execute("ALTER INDEX " + index + " RENAME TO " + legacyName(index));
+        }
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_TABLE + ")"
+                + " PARTITION BY RANGE (expires_at)");
+        jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+
+        Timestamp now = Timestamp.from(Instant.now());
+        Timestamp lastExpiry = jdbcTemplate.queryForObject(
+                "SELECT max(expires_at) FROM " + LEGACY_TABLE + " WHERE expires_at >= ?", Timestamp.class, now);
+        LocalDate today = LocalDate.ofInstant(now.toInstant(), ZoneOffset.UTC);
+        LocalDate horizon = today.plusDays(expirationDays + precreateDays);
+        if (lastExpiry != null && LocalDate.ofInstant(lastExpiry.toInstant(), ZoneOffset.UTC).isAfter(horizon)) {
+            horizon = LocalDate.ofInstant(lastExpiry.toInstant(), ZoneOffset.UTC);
+        }
+        createPartitions(today, horizon);
+
+        int copied = jdbcTemplate.update("INSERT INTO " + TABLE + " SELECT * FROM " + LEGACY_TABLE
+                + " WHERE expires_at >= ?", now);
+
+        // Identity columns are not allowed on partitioned tables: use a plain sequence
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + ID_SEQUENCE);
+        jdbcTemplate.execute("ALTER SEQUENCE " + ID_SEQUENCE + " OWNED BY " + TABLE + ".id");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ALTER COLUMN id SET DEFAULT nextval('" + ID_SEQUENCE + "')");
+        // Continue after the legacy ids so rows stay distinguishable in both tables
+        jdbcTemplate.queryForObject("SELECT setval('" + ID_SEQUENCE + "', COALESCE(max(id), 0) + 1, false) FROM "
+                + LEGACY_TABLE, Long.class);
+
+        // Unique keys must contain the partition key
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, expires_at)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + RefreshToken.HASH_EXPIRY_KEY
+                + " UNIQUE (token_hash, expires_at)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT fk_refresh_tokens_user"
+                + " FOREIGN KEY (user_id) REFERENCES users (id)");
+        jdbcTemplate.execute("CREATE INDEX idx_refresh_token_hash ON " + TABLE + " (token_hash)");
+        jdbcTemplate.execute("CREATE INDEX idx_refresh_token_user ON " + TABLE + " (user_id)");
+        jdbcTemplate.execute("CREATE INDEX idx_refresh_token_family ON " + TABLE + " (token_family)");
+        jdbcTemplate.execute("CREATE INDEX idx_refresh_token_expires ON " + TABLE + " (expires_at)");
+
+        log.info("Partitioned {}: copied {} unexpired tokens, the original table is kept as {}",
+                TABLE, copied, LEGACY_TABLE);
+        return true;
+    }
+
+    private static String legacyName(String index) {
+        // Identifiers are truncated at 63 bytes
+        String base = index.length() + LEGACY_SUFFIX.length() > 63
+                ? index.substring(0, 63 - LEGACY_SUFFIX.length())
+                : index;
+        return base + LEGACY_SUFFIX;
+    }
+
+    private void createPartitions(LocalDate from, LocalDate toInclusive) {
+        for (LocalDate day = from; !day.isAfter(toInclusive); day = day.plusDays(1)) {
+            String partition = TABLE + "_p" + day.format(PARTITION_SUFFIX);
+            try {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + TABLE
+                        + " FOR VALUES FROM ('" + day.atStartOfDay(ZoneOffset.UTC).toInstant()
+                        + "') TO ('" + day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant() + "')");
+            } catch (DataAccessException e) {
+                // e.g. the default partition already holds rows for that day
+                log.warn("Could not create refresh token partition {}: {}", partition, e.getMessage());
+            }
+        }
+    }
+
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname::text FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid"
+                + " WHERE i.inhparent = to_regclass(?) ORDER BY c.relname", String.class, TABLE);
+    }
+}
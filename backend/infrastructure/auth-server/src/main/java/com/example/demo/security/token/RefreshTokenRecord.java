@@ -0,0 +1,96 @@
+package com.example.demo.security.token;
+
+import com.example.demo.user.User;
+
+import java.time.Instant;
+
+/**
+ * Immutable refresh token state as held by a {@link RefreshTokenStore}.
+ *
+ * Mirrors the {@link RefreshToken} entity but references the user by ID, so
+ * it can live in Redis and be written to Postgres later.
+ */
+public record RefreshTokenRecord(String tokenHash,
+                                 String tokenFamily,
+                                 Long userId,
+                                 String deviceFingerprint,
+                                 String deviceName,
+                                 String ipAddress,
+                                 String ipPrefix,
+                                 String userAgentHash,
+                                 String deviceId,
+                                 Instant createdAt,
+                                 Instant expiresAt,
+                                 Instant lastUsedAt,
+                                 boolean used,
+                                 boolean revoked,
+                                 Long userTokenVersion) {
+
+    public boolean isExpired() {
+        return Instant.now().isAfter(expiresAt);
+    }
+
+    public boolean isValid() {
+        return !revoked && !used && !isExpired();
+    }
+
+    /**
+     * Check if token version matches user's current version
+     */
+    public boolean isTokenVersionValid(Long currentUserTokenVersion) {
+        return userTokenVersion.equals(currentUserTokenVersion);
+    }
+
+    /**
+     * This token after being exchanged for its successor.
+     */
+    public RefreshTokenRecord markUsed(Instant usedAt) {
+        return new RefreshTokenRecord(tokenHash, tokenFamily, userId, deviceFingerprint, deviceName, ipAddress,
+                ipPrefix, userAgentHash, deviceId, createdAt, expiresAt, usedAt, true, revoked, userTokenVersion);
+    }
+
+    public static RefreshTokenRecord fromEntity(RefreshToken token) {
+        return new RefreshTokenRecord(
+                token.getTokenHash(),
+                token.getTokenFamily(),
+                token.getUser().getId(),
+                token.getDeviceFingerprint(),
+                token.getDeviceName(),
+                token.getIpAddress(),
+                token.getIpPrefix(),
+                token.getUserAgentHash(),
+                token.getDeviceId(),
+                token.getCreatedAt(),
+                token.getExpiresAt(),
+                token.getLastUsedAt(),
+                token.isUsed(),
+                token.isRevoked(),
+                token.getUserTokenVersion());
+    }
+
+    /**
+     * Copy this state onto a (new or existing) entity.
+     *
+     * @param entity Target entity
+     * @param user User reference (a lazy proxy is enough)
+     * @return The entity
+     */
+    public RefreshToken applyTo(RefreshToken entity, User user) {
+        entity.setTokenHash(tokenHash);
+        entity.setTokenFamily(tokenFamily);
+        entity.setUser(user);
+        entity.setDeviceFingerprint(deviceFingerprint);
+        entity.setDeviceName(deviceName);
+        entity.setIpAddress(ipAddress);
+        entity.setIpPrefix(ipPrefix);
+        entity.setUserAgentHash(userAgentHash);
+        entity.setDeviceId(deviceId);
+        entity.setCreatedAt(createdAt);
+        entity.setExpiresAt(expiresAt);
+        entity.setLastUsedAt(lastUsedAt);
+        entity.setUsed(used);
+        entity.setRevoked(revoked);
+        entity.setUserTokenVersion(userTokenVersion);
+        return entity;
+    }
+}
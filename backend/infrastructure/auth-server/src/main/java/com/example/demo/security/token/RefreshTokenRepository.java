@@ -1,12 +1,14 @@
 package com.example.demo.security.token;
 
 import com.example.demo.user.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,10 +16,26 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
 
     Optional<RefreshToken> findByTokenHash(String tokenHash);
 
+    List<RefreshToken> findByTokenHashIn(Collection<String> tokenHashes);
+
     List<RefreshToken> findByUserAndRevokedFalse(User user);
 
     List<RefreshToken> findByTokenFamily(String tokenFamily);
 
+    /**
+     * Mark a token used only if it is still usable (atomic rotation)
+     */
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.used = true, rt.lastUsedAt = :usedAt WHERE rt.tokenHash = :hash AND rt.used = false AND rt.revoked = false")
+    int markUsedIfUsable(@Param("hash") String tokenHash, @Param("usedAt") Instant usedAt);
+
+    /**
+     * Revoke a single token
+     */
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.revoked = true WHERE rt.tokenHash = :hash")
+    void revokeByTokenHash(@Param("hash") String tokenHash);
+
     /**
      * Revoke all tokens in a family (theft detection)
      */
@@ -40,11 +58,17 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
     void revokeDeviceTokens(@Param("user") User user, @Param("fingerprint") String fingerprint);
 
     /**
-     * Delete expired tokens (cleanup job)
+     * IDs of expired tokens, oldest first (chunked cleanup)
+     */
+    @Query("SELECT rt.id FROM RefreshToken rt WHERE rt.expiresAt < :now ORDER BY rt.expiresAt")
+    List<Long> findExpiredIds(@Param("now") Instant now, Pageable pageable);
+
+    /**
+     * Delete one chunk of tokens (chunked cleanup)
      */
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.expiresAt < :now")
-    int deleteExpiredTokens(@Param("now") Instant now);
+    @Query("DELETE FROM RefreshToken rt WHERE rt.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 
     /**
      * Count active sessions for a user
@@ -57,4 +81,10 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
      */
     @Query("SELECT rt FROM RefreshToken rt WHERE rt.user = :user AND rt.revoked = false AND rt.used = false AND rt.expiresAt > :now ORDER BY rt.lastUsedAt DESC")
     List<RefreshToken> findActiveSessions(@Param("user") User user, @Param("now") Instant now);
+
+    /**
+     * Page through usable tokens by ID (rebuilding the Redis store)
+     */
+    @Query("SELECT rt FROM RefreshToken rt WHERE rt.id > :afterId AND rt.revoked = false AND rt.used = false AND rt.expiresAt > :now ORDER BY rt.id")
+    List<RefreshToken> findActiveAfter(@Param("afterId") Long afterId, @Param("now") Instant now, Pageable pageable);
 }
@@ -0,0 +1,100 @@
+package com.example.demo.security.token;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Reclaims expired rows of {@code refresh_tokens}.
+ *
+ * When the table is partitioned ({@link RefreshTokenPartitionManager}),
+ * expired days are dropped as whole partitions and upcoming ones are
+ * created. Otherwise expired rows are deleted {@code chunk-size} at a time,
+ * each chunk in its own short transaction, instead of one huge DELETE that
+ * holds locks and bloats the table for the whole run.
+ *
+ * Duration and rows reclaimed are recorded per strategy
+ * ({@code auth.refresh-token.cleanup.*}, tag {@code strategy}).
+ */
+@Service
+public class RefreshTokenRetention {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenPartitionManager partitionManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer partitionDuration;
+    private final Timer chunkedDuration;
+    private final Counter partitionRows;
+    private final Counter chunkedRows;
+
+    @Value("${security.refresh-token.cleanup.chunk-size:5000}")
+    private int chunkSize;
+
+    public RefreshTokenRetention(RefreshTokenRepository refreshTokenRepository,
+                                 RefreshTokenPartitionManager partitionManager,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.partitionManager = partitionManager;
+        this.transactionTemplate = transactionTemplate;
+
+        this.partitionDuration = Timer.builder("auth.refresh-token.cleanup.duration")
+                .description("Time spent reclaiming expired refresh tokens")
+                .tag("strategy", "partition")
+                .register(meterRegistry);
+        this.chunkedDuration = Timer.builder("auth.refresh-token.cleanup.duration")
+                .description("Time spent reclaiming expired refresh tokens")
+                .tag("strategy", "chunked")
+                .register(meterRegistry);
+        this.partitionRows = Counter.builder("auth.refresh-token.cleanup.rows")
+                .description("Expired refresh token rows reclaimed")
+                .tag("strategy", "partition")
+                .register(meterRegistry);
+        this.chunkedRows = Counter.builder("auth.refresh-token.cleanup.rows")
+                .description("Expired refresh token rows reclaimed")
+                .tag("strategy", "chunked")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reclaim every refresh token that expired before now.
+     *
+     * @return Number of rows reclaimed
+     */
+    public long reclaimExpired() {
+        Instant now = Instant.now();
+        if (partitionManager.isPartitioned()) {
+            long reclaimed = partitionDuration.record(() -> {
+                partitionManager.ensurePartitions(now);
+                return partitionManager.dropExpiredPartitions(now)
+                        + partitionManager.purgeDefaultPartition(now, chunkSize);
+            });
+            partitionRows.increment(reclaimed);
+            return reclaimed;
+        }
+        long reclaimed = chunkedDuration.record(() -> deleteInChunks(now));
+        chunkedRows.increment(reclaimed);
+        return reclaimed;
+    }
+
+    private long deleteInChunks(Instant now) {
+        long deleted = 0;
+        int chunk;
+        do {
+            Integer count = transactionTemplate.execute(status -> {
+                List<Long> ids = refreshTokenRepository.findExpiredIds(now, PageRequest.of(0, chunkSize));
+                return ids.isEmpty() ? 0 : refreshTokenRepository.deleteByIdIn(ids);
+            });
+            chunk = count != null ? count : 0;
+            deleted += chunk;
+        } while (chunk >= chunkSize);
+        return deleted;
+    }
+}
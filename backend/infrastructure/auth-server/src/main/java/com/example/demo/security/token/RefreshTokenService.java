@@ -1,36 +1,55 @@
 package com.example.demo.security.token;
 
+import com.example.demo.security.blacklist.TokenBlacklistService;
 import com.example.demo.security.device.DeviceInfo;
 import com.example.demo.security.jti.JtiTrackingService;
 import com.example.demo.user.User;
+import com.example.demo.user.UserChangeStream;
 import com.example.demo.user.UserRepository;
+import com.example.demo.user.UserSecurityCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Base64;
 import java.util.HexFormat;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Refresh Token Service with military-grade security features.
  * 
  * Features:
  * - Token rotation: Each use generates a new token
- * - Token hashing: Only SHA-256 hash stored in DB
+ * - Token hashing: Only SHA-256 hash stored
  * - Device binding: Token tied to device fingerprint
  * - Family tracking: Detect token theft via reuse
  * - Automatic cleanup of expired tokens
+ *
+ * Token state lives in a {@link RefreshTokenStore} (Redis by default, with
+ * the refresh_tokens table written behind), so a rotation normally costs
+ * one Redis script plus a primary-key user lookup.
+ *
+ * Rotation is single-flight per token. An SPA whose access token expired
+ * fires several calls at once with the same refresh cookie; concurrent
+ * callers in this instance wait for one rotation and share its result, and
+ * callers that lose the race on another instance (or arrive within
+ * {@code reuse-grace-seconds}) are handed the same successor token from the
+ * store. Only a replay after the grace window, or from a different device,
+ * is treated as theft.
  */
 @Service
 public class RefreshTokenService {
@@ -38,10 +57,15 @@ public class RefreshTokenService {
     private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
     private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 
-    private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenStore refreshTokenStore;
     private final UserRepository userRepository;
     private final CacheManager cacheManager;
     private final JtiTrackingService jtiTrackingService;
+    private final TokenBlacklistService tokenBlacklistService;
+    private final UserSecurityCache userSecurityCache;
+    private final UserChangeStream userChangeStream;
+    private final Map<String, CompletableFuture<Optional<RefreshTokenRotationResult>>> inflightRotations =
+            new ConcurrentHashMap<>();
 
     @Value("${security.refresh-token.expiration-days:7}")
     private int refreshTokenExpirationDays;
@@ -49,14 +73,23 @@ public class RefreshTokenService {
     @Value("${security.refresh-token.max-devices:5}")
     private int maxDevicesPerUser;
 
-    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+    @Value("${security.refresh-token.reuse-grace-seconds:10}")
+    private int reuseGraceSeconds;
+
+    public RefreshTokenService(RefreshTokenStore refreshTokenStore,
                               UserRepository userRepository,
                               CacheManager cacheManager,
-                              JtiTrackingService jtiTrackingService) {
-        this.refreshTokenRepository = refreshTokenRepository;
+                              JtiTrackingService jtiTrackingService,
+                              TokenBlacklistService tokenBlacklistService,
+                              UserSecurityCache userSecurityCache,
+                              UserChangeStream userChangeStream) {
+        this.refreshTokenStore = refreshTokenStore;
         this.userRepository = userRepository;
         this.cacheManager = cacheManager;
         this.jtiTrackingService = jtiTrackingService;
+        this.tokenBlacklistService = tokenBlacklistService;
+        this.userSecurityCache = userSecurityCache;
+        this.userChangeStream = userChangeStream;
     }
 
     /**
@@ -66,10 +99,9 @@ public class RefreshTokenService {
      * @param deviceInfo Device information for binding
      * @return The plain text token (only returned once, never stored)
      */
-    @Transactional
     public String createRefreshToken(User user, DeviceInfo deviceInfo) {
         // Check device limit
-        long activeDevices = refreshTokenRepository.countActiveDevices(user, Instant.now());
+        long activeDevices = refreshTokenStore.countActiveDevices(user.getId());
         if (activeDevices >= maxDevicesPerUser) {
             log.warn("User {} exceeded max devices ({}), revoking oldest", user.getUsername(), maxDevicesPerUser);
             // Could implement: revoke oldest device or reject
@@ -77,24 +109,9 @@ public class RefreshTokenService {
 
         // Generate cryptographically secure token
         String plainToken = generateSecureToken();
-        String tokenHash = hashToken(plainToken);
         String tokenFamily = UUID.randomUUID().toString();
 
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setTokenHash(tokenHash);
-        refreshToken.setTokenFamily(tokenFamily);
-        refreshToken.setUser(user);
-        refreshToken.setDeviceFingerprint(deviceInfo.getFingerprint());
-        refreshToken.setDeviceName(deviceInfo.getDeviceName());
-        refreshToken.setIpAddress(deviceInfo.getIpAddress());
-        refreshToken.setIpPrefix(deviceInfo.getIpPrefix());
-        refreshToken.setUserAgentHash(deviceInfo.getUserAgentHash());
-        refreshToken.setDeviceId(deviceInfo.getDeviceId());
-        refreshToken.setExpiresAt(Instant.now().plusSeconds(refreshTokenExpirationDays * 24L * 60 * 60));
-        refreshToken.setUserTokenVersion(user.getTokenVersion());
-        refreshToken.setLastUsedAt(Instant.now());
-
-        refreshTokenRepository.save(refreshToken);
+        refreshTokenStore.create(newTokenRecord(hashToken(plainToken), tokenFamily, user, deviceInfo));
         log.info("Created refresh token for user {} on device {}", user.getUsername(), deviceInfo.getDeviceName());
 
         return plainToken;
@@ -108,143 +125,234 @@ public class RefreshTokenService {
      * @param deviceInfo Current device info for validation
      * @return New plain text token, or empty if invalid
      */
-    @Transactional
     public Optional<RefreshTokenRotationResult> rotateToken(String plainToken, DeviceInfo deviceInfo) {
         String tokenHash = hashToken(plainToken);
-        Optional<RefreshToken> tokenOpt = refreshTokenRepository.findByTokenHash(tokenHash);
+        Optional<RefreshTokenRecord> tokenOpt = refreshTokenStore.find(tokenHash);
 
         if (tokenOpt.isEmpty()) {
             log.warn("Refresh token not found");
             return Optional.empty();
         }
 
-        RefreshToken token = tokenOpt.get();
+        RefreshTokenRecord token = tokenOpt.get();
 
-        // Check if token was already used (potential theft!)
-        if (token.isUsed()) {
-            User user = token.getUser();
-            log.error("SECURITY ALERT: Refresh token reuse detected! Revoking ALL sessions for user {}", user.getUsername());
-            refreshTokenRepository.revokeAllUserTokens(user);
-            user.incrementTokenVersion();
-            userRepository.save(user);
-
-            Cache cache = cacheManager.getCache("usersByUsername");
-            if (cache != null) {
-                cache.evict(user.getUsername());
-            }
-            jtiTrackingService.blacklistAllUserJtis(user.getId());
-            return Optional.empty();
+        // Check if token was already used (potential theft, or a request that lost a refresh race)
+        if (token.used()) {
+            return handleUsedToken(token, plainToken, deviceInfo);
         }
 
         // Validate token
         if (!token.isValid()) {
-            log.warn("Invalid refresh token: revoked={}, expired={}", token.isRevoked(), token.isExpired());
+            log.warn("Invalid refresh token: revoked={}, expired={}", token.revoked(), token.isExpired());
             return Optional.empty();
         }
 
-        // Validate device binding - check UA hash, IP prefix, and device ID
-        if (!deviceInfo.matches(token.getUserAgentHash(), token.getIpPrefix(), token.getDeviceId())) {
-            log.error("SECURITY ALERT: Device binding mismatch for user {}! " +
-                    "UA match: {}, IP prefix match: {}, DeviceID match: {}",
-                    token.getUser().getUsername(),
-                    deviceInfo.getUserAgentHash().equals(token.getUserAgentHash()),
-                    deviceInfo.getIpPrefix().equals(token.getIpPrefix()),
-                    token.getDeviceId() == null || deviceInfo.getDeviceId() != null && 
-                        deviceInfo.getDeviceId().equals(token.getDeviceId()));
-            
-            // CRITICAL: Revoke ALL tokens for this user - potential theft!
-            refreshTokenRepository.revokeAllUserTokens(token.getUser());
-            log.error("REVOKED ALL TOKENS for user {} due to device binding mismatch", 
-                    token.getUser().getUsername());
+        if (!deviceMatches(token, deviceInfo, true)) {
             return Optional.empty();
         }
-        
-        // Also validate fingerprint as additional check
-        if (!token.getDeviceFingerprint().equals(deviceInfo.getFingerprint())) {
-            log.warn("SECURITY ALERT: Device fingerprint mismatch for user {}. Expected: {}, Got: {}", 
-                    token.getUser().getUsername(), token.getDeviceFingerprint(), deviceInfo.getFingerprint());
-            // Revoke this token family as potential theft
-            refreshTokenRepository.revokeTokenFamily(token.getTokenFamily());
-            return Optional.empty();
+
+        // Single flight: concurrent rotations of this token in this instance share one result
+        CompletableFuture<Optional<RefreshTokenRotationResult>> flight = new CompletableFuture<>();
+        CompletableFuture<Optional<RefreshTokenRotationResult>> leader = inflightRotations.putIfAbsent(tokenHash, flight);
+        if (leader != null) {
+            return awaitLeader(leader);
         }
+        try {
+            Optional<RefreshTokenRotationResult> result = rotateValidated(token, plainToken, deviceInfo);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflightRotations.remove(tokenHash, flight);
+        }
+    }
 
+    private Optional<RefreshTokenRotationResult> rotateValidated(RefreshTokenRecord token, String plainToken,
+                                                                 DeviceInfo deviceInfo) {
         // Validate token version
-        User user = token.getUser();
+        Optional<User> userOpt = userRepository.findById(token.userId());
+        if (userOpt.isEmpty()) {
+            log.warn("Refresh token user {} no longer exists", token.userId());
+            return Optional.empty();
+        }
+        User user = userOpt.get();
         if (!token.isTokenVersionValid(user.getTokenVersion())) {
             log.info("Token version outdated for user {}", user.getUsername());
             return Optional.empty();
         }
 
-        // Mark current token as used
-        token.setUsed(true);
-        token.setLastUsedAt(Instant.now());
-        refreshTokenRepository.save(token);
-
-        // Create new token in same family
+        // Mark current token as used and create its successor in the same family, atomically
         String newPlainToken = generateSecureToken();
-        String newTokenHash = hashToken(newPlainToken);
-
-        RefreshToken newToken = new RefreshToken();
-        newToken.setTokenHash(newTokenHash);
-        newToken.setTokenFamily(token.getTokenFamily()); // Same family for tracking
-        newToken.setUser(user);
-        newToken.setDeviceFingerprint(deviceInfo.getFingerprint());
-        newToken.setDeviceName(deviceInfo.getDeviceName());
-        newToken.setIpAddress(deviceInfo.getIpAddress());
-        newToken.setIpPrefix(deviceInfo.getIpPrefix());
-        newToken.setUserAgentHash(deviceInfo.getUserAgentHash());
-        newToken.setDeviceId(deviceInfo.getDeviceId());
-        newToken.setExpiresAt(Instant.now().plusSeconds(refreshTokenExpirationDays * 24L * 60 * 60));
-        newToken.setUserTokenVersion(user.getTokenVersion());
-        newToken.setLastUsedAt(Instant.now());
-
-        refreshTokenRepository.save(newToken);
-        log.debug("Rotated refresh token for user {}", user.getUsername());
-
-        return Optional.of(new RefreshTokenRotationResult(newPlainToken, user));
+        RefreshTokenRecord newToken = newTokenRecord(hashToken(newPlainToken), token.tokenFamily(), user, deviceInfo);
+        String envelope = reuseGraceSeconds > 0 ? SuccessorEnvelope.seal(plainToken, newPlainToken) : null;
+
+        switch (refreshTokenStore.rotate(token, newToken, envelope, Duration.ofSeconds(reuseGraceSeconds))) {
+            case ROTATED -> {
+                log.debug("Rotated refresh token for user {}", user.getUsername());
+                return Optional.of(new RefreshTokenRotationResult(newPlainToken, user));
+            }
+            case ALREADY_USED -> {
+                // Lost a race with a rotation on another instance
+                return handleUsedToken(token, plainToken, deviceInfo);
+            }
+            default -> {
+                log.warn("Refresh token became invalid during rotation for user {}", user.getUsername());
+                return Optional.empty();
+            }
+        }
+    }
+
+    private Optional<RefreshTokenRotationResult> awaitLeader(
+            CompletableFuture<Optional<RefreshTokenRotationResult>> leader) {
+        try {
+            return leader.get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (Exception e) {
+            log.debug("Joined refresh rotation failed: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * An already used token was presented. If it was rotated within the grace
+     * window and comes from the same device, this is a request that lost a
+     * refresh race: hand it the token the winning rotation issued (or just
+     * reject it if that one is no longer usable). Anything else is treated as
+     * theft.
+     */
+    private Optional<RefreshTokenRotationResult> handleUsedToken(RefreshTokenRecord token, String plainToken,
+                                                                 DeviceInfo deviceInfo) {
+        if (reuseGraceSeconds > 0 && deviceMatches(token, deviceInfo, false)) {
+            Optional<String> successor = refreshTokenStore.findSuccessor(token.tokenHash())
+                    .flatMap(envelope -> SuccessorEnvelope.open(plainToken, envelope));
+            if (successor.isPresent()) {
+                boolean usable = refreshTokenStore.find(hashToken(successor.get()))
+                        .map(RefreshTokenRecord::isValid)
+                        .orElse(false);
+                if (!usable) {
+                    log.debug("Refresh token for user {} replayed within grace window, successor already used",
+                            token.userId());
+                    return Optional.empty();
+                }
+                log.debug("Refresh token for user {} reused within grace window; returning its successor",
+                        token.userId());
+                return userRepository.findById(token.userId())
+                        .map(user -> new RefreshTokenRotationResult(successor.get(), user));
+            }
+        }
+        handleReuse(token);
+        return Optional.empty();
+    }
+
+    /**
+     * Device binding - UA hash, IP prefix, device ID and fingerprint must match the token.
+     *
+     * @param revokeOnMismatch Revoke the user's tokens (binding) or the family (fingerprint) on mismatch
+     */
+    private boolean deviceMatches(RefreshTokenRecord token, DeviceInfo deviceInfo, boolean revokeOnMismatch) {
+        if (!deviceInfo.matches(token.userAgentHash(), token.ipPrefix(), token.deviceId())) {
+            if (!revokeOnMismatch) {
+                return false;
+            }
+            log.error("SECURITY ALERT: Device binding mismatch for user {}! " +
+                    "UA match: {}, IP prefix match: {}, DeviceID match: {}",
+                    token.userId(),
+                    deviceInfo.getUserAgentHash().equals(token.userAgentHash()),
+                    deviceInfo.getIpPrefix().equals(token.ipPrefix()),
+                    token.deviceId() == null || deviceInfo.getDeviceId() != null && 
+                        deviceInfo.getDeviceId().equals(token.deviceId()));
+            
+            // CRITICAL: Revoke ALL tokens for this user - potential theft!
+            refreshTokenStore.revokeAllForUser(token.userId());
+            log.error("REVOKED ALL TOKENS for user {} due to device binding mismatch", token.userId());
+            return false;
+        }
+        
+        // Also validate fingerprint as additional check
+        if (!token.deviceFingerprint().equals(deviceInfo.getFingerprint())) {
+            if (!revokeOnMismatch) {
+                return false;
+            }
+            log.warn("SECURITY ALERT: Device fingerprint mismatch for user {}. Expected: {}, Got: {}", 
+                    token.userId(), token.deviceFingerprint(), deviceInfo.getFingerprint());
+            // Revoke this token family as potential theft
+            refreshTokenStore.revokeFamily(token.tokenFamily());
+            return false;
+        }
+        return true;
     }
 
     /**
      * Revoke a specific refresh token.
      */
-    @Transactional
     public void revokeToken(String plainToken) {
-        String tokenHash = hashToken(plainToken);
-        refreshTokenRepository.findByTokenHash(tokenHash).ifPresent(token -> {
-            token.setRevoked(true);
-            refreshTokenRepository.save(token);
-            log.info("Revoked refresh token for user {}", token.getUser().getUsername());
-        });
+        refreshTokenStore.revoke(hashToken(plainToken));
+        log.info("Revoked refresh token");
     }
 
     /**
      * Revoke all tokens for a user (logout from all devices).
      */
-    @Transactional
     public void revokeAllUserTokens(User user) {
-        refreshTokenRepository.revokeAllUserTokens(user);
+        refreshTokenStore.revokeAllForUser(user.getId());
         log.info("Revoked all refresh tokens for user {}", user.getUsername());
     }
 
     /**
      * Revoke tokens for a specific device.
      */
-    @Transactional
     public void revokeDeviceTokens(User user, String deviceFingerprint) {
-        refreshTokenRepository.revokeDeviceTokens(user, deviceFingerprint);
+        refreshTokenStore.revokeDevice(user.getId(), deviceFingerprint);
         log.info("Revoked tokens for device {} of user {}", deviceFingerprint, user.getUsername());
     }
 
     /**
-     * Cleanup expired tokens (call from scheduled job).
+     * A used token was presented again: either stolen and replayed, or the
+     * legitimate client lost its successor. Revoke every session of the user.
      */
-    @Transactional
-    public int cleanupExpiredTokens() {
-        int deleted = refreshTokenRepository.deleteExpiredTokens(Instant.now());
-        if (deleted > 0) {
-            log.info("Cleaned up {} expired refresh tokens", deleted);
+    private void handleReuse(RefreshTokenRecord token) {
+        User user = userRepository.findById(token.userId()).orElse(null);
+        if (user == null) {
+            refreshTokenStore.revokeAllForUser(token.userId());
+            return;
         }
-        return deleted;
+        log.error("SECURITY ALERT: Refresh token reuse detected! Revoking ALL sessions for user {}", user.getUsername());
+        refreshTokenStore.revokeAllForUser(user.getId());
+        user.incrementTokenVersion();
+        userRepository.save(user);
+
+        Cache cache = cacheManager.getCache("usersByUsername");
+        if (cache != null) {
+            cache.evict(user.getUsername());
+        }
+        userSecurityCache.invalidate(user.getUsername());
+        userChangeStream.publish(user, false);
+        tokenBlacklistService.blacklistUserTokens(user.getId(), user.getTokenVersion());
+        jtiTrackingService.blacklistAllUserJtis(user.getId());
+    }
+
+    private RefreshTokenRecord newTokenRecord(String tokenHash, String tokenFamily, User user, DeviceInfo deviceInfo) {
+        Instant now = Instant.now();
+        return new RefreshTokenRecord(
+                tokenHash,
+                tokenFamily,
+                user.getId(),
+                deviceInfo.getFingerprint(),
+                deviceInfo.getDeviceName(),
+                deviceInfo.getIpAddress(),
+                deviceInfo.getIpPrefix(),
+                deviceInfo.getUserAgentHash(),
+                deviceInfo.getDeviceId(),
+                now,
+                now.plusSeconds(refreshTokenExpirationDays * 24L * 60 * 60),
+                now,
+                false,
+                false,
+                user.getTokenVersion());
     }
 
     /**
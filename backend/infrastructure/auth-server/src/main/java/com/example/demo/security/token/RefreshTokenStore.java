@@ -0,0 +1,76 @@
+package com.example.demo.security.token;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Storage for refresh token state used by {@link RefreshTokenService}.
+ *
+ * Selected with {@code security.refresh-token.store}:
+ * - {@code redis} (default): {@link RedisRefreshTokenStore}, Redis is primary
+ *   and Postgres is written behind
+ * - {@code jpa}: {@link JpaRefreshTokenStore}, Postgres only
+ *
+ * Implementations must make {@link #rotate} atomic: of two concurrent
+ * rotations of the same token, exactly one may succeed.
+ */
+public interface RefreshTokenStore {
+
+    /**
+     * Store a newly issued token.
+     */
+    void create(RefreshTokenRecord token);
+
+    /**
+     * Look up a token by its SHA-256 hash.
+     */
+    Optional<RefreshTokenRecord> find(String tokenHash);
+
+    /**
+     * Mark {@code current} as used and store {@code next}, only if
+     * {@code current} is still unused and not revoked. The successor envelope
+     * is kept for {@code grace} so that racing requests with the same token
+     * can be handed {@code next} (see {@link #findSuccessor}).
+     */
+    RotationStatus rotate(RefreshTokenRecord current, RefreshTokenRecord next,
+                          String successorEnvelope, Duration grace);
+
+    /**
+     * The successor envelope recorded when a token was rotated, while its
+     * grace window lasts.
+     */
+    Optional<String> findSuccessor(String tokenHash);
+
+    /**
+     * Revoke a single token.
+     */
+    void revoke(String tokenHash);
+
+    /**
+     * Revoke every token in a rotation family (theft detection).
+     */
+    void revokeFamily(String tokenFamily);
+
+    /**
+     * Revoke every token of a user (logout from all devices).
+     */
+    void revokeAllForUser(Long userId);
+
+    /**
+     * Revoke every token of a user bound to one device.
+     */
+    void revokeDevice(Long userId, String deviceFingerprint);
+
+    /**
+     * Number of distinct devices with a usable token.
+     */
+    long countActiveDevices(Long userId);
+
+    enum RotationStatus {
+        ROTATED,
+        /** The token was already exchanged: replay of a stolen token or a racing client */
+        ALREADY_USED,
+        REVOKED,
+        NOT_FOUND
+    }
+}
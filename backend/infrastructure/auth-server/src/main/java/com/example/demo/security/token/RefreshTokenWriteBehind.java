@@ -0,0 +1,327 @@
+package com.example.demo.security.token;
+
+import com.example.demo.user.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous, batched writer of refresh token changes to Postgres.
+ *
+ * {@link RedisRefreshTokenStore} queues every change here. A scheduled flush
+ * writes up to {@code batch-size} queued changes in one transaction, in
+ * order. Consecutive upserts become one lookup and one saveAll.
+ *
+ * If a batch fails because the database is unavailable, it goes back to the
+ * front of the queue and is retried on the next tick. Any other failure
+ * (e.g. a constraint violation) is retried change by change, so one change
+ * that can never be written does not hold up the rest: it is attempted at
+ * most {@code max-attempts} times, then dropped and logged as dead-lettered.
+ *
+ * Upserts never clear {@code revoked} or {@code used} on an existing row.
+ * Revocations queued on another instance (or ahead of the upsert on this
+ * one) may reach the database before the row exists, so after each commit
+ * the upserted tokens are checked against Redis and revoked there too if
+ * Redis has them revoked.
+ *
+ * When the queue is full the caller flushes it and then waits up to
+ * {@code enqueue-timeout-ms} for room, so a slow database slows refreshes
+ * down instead of losing changes or writing them out of order.
+ *
+ * The queue lives in this JVM only: changes not yet flushed (at most one
+ * flush interval's worth, or more while the database is unavailable) are
+ * lost if the JVM crashes or is killed. A graceful shutdown flushes first.
+ * Redis keeps the state of lost changes until the tokens expire, but
+ * Postgres misses them, so a later rebuild of Redis from Postgres would not
+ * see them either.
+ */
+@Component
+@ConditionalOnProperty(name = "security.refresh-token.store", havingValue = "redis", matchIfMissing = true)
+public class RefreshTokenWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenWriteBehind.class);
+
+    private static final byte[] REVOKED_FIELD = "revoked".getBytes(StandardCharsets.UTF_8);
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final LinkedBlockingDeque<PendingWrite> queue = new LinkedBlockingDeque<>();
+    // Queue slots; a slot is released once its change is written or dropped, never on a requeue
+    private final Semaphore capacity;
+    private final Counter flushFailures;
+    private final Counter backpressureWaits;
+    private final Counter deadLettered;
+    private final Counter lateRevocations;
+
+    @Value("${security.refresh-token.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${security.refresh-token.write-behind.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${security.refresh-token.write-behind.enqueue-timeout-ms:5000}")
+    private long enqueueTimeoutMs;
+
+    public RefreshTokenWriteBehind(RefreshTokenRepository refreshTokenRepository,
+                                   UserRepository userRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   StringRedisTemplate redisTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${security.refresh-token.write-behind.queue-capacity:100000}") int queueCapacity) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.redisTemplate = redisTemplate;
+        this.capacity = new Semaphore(queueCapacity);
+
+        Gauge.builder("auth.refresh-token.write-behind.queue.size", queue, LinkedBlockingDeque::size)
+                .description("Refresh token changes not yet written to Postgres")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("auth.refresh-token.write-behind.failures")
+                .register(meterRegistry);
+        this.backpressureWaits = Counter.builder("auth.refresh-token.write-behind.backpressure")
+                .description("Changes that found the queue full and waited for a flush")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("auth.refresh-token.write-behind.dead-lettered")
+                .description("Changes dropped after max-attempts failed writes")
+                .register(meterRegistry);
+        this.lateRevocations = Counter.builder("auth.refresh-token.write-behind.late-revocations")
+                .description("Upserted tokens revoked after commit because Redis had them revoked")
+                .register(meterRegistry);
+    }
+
+    public void upsert(RefreshTokenRecord token) {
+        enqueue(new PendingWrite(Kind.UPSERT, token, token.tokenHash(), token.userId(), 0));
+    }
+
+    public void revoke(String tokenHash) {
+        enqueue(new PendingWrite(Kind.REVOKE_TOKEN, null, tokenHash, null, 0));
+    }
+
+    public void revokeFamily(String tokenFamily) {
+        enqueue(new PendingWrite(Kind.REVOKE_FAMILY, null, tokenFamily, null, 0));
+    }
+
+    public void revokeAllForUser(Long userId) {
+        enqueue(new PendingWrite(Kind.REVOKE_USER, null, null, userId, 0));
+    }
+
+    public void revokeDevice(Long userId, String deviceFingerprint) {
+        enqueue(new PendingWrite(Kind.REVOKE_DEVICE, null, deviceFingerprint, userId, 0));
+    }
+
+    private void enqueue(PendingWrite write) {
+        if (!capacity.tryAcquire()) {
+            // Full: write out what is already queued first, so this change stays behind it
+            backpressureWaits.increment();
+            log.debug("Refresh token write-behind queue full, flushing before enqueueing");
+            flush();
+            try {
+                if (!capacity.tryAcquire(enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new IllegalStateException("Refresh token write-behind queue is full");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for the refresh token write-behind queue", e);
+            }
+        }
+        queue.offerLast(write);
+    }
+
+    /**
+     * Write everything queued so far.
+     */
+    @Scheduled(fixedDelayString = "${security.refresh-token.write-behind.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        while (!queue.isEmpty()) {
+            List<PendingWrite> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+            queue.drainTo(batch, batchSize);
+            try {
+                transactionTemplate.executeWithoutResult(status -> apply(batch));
+                capacity.release(batch.size());
+                revokeIfRevokedInRedis(batch);
+            } catch (Exception e) {
+                flushFailures.increment();
+                if (isTransient(e)) {
+                    log.error("Refresh token write-behind flush of {} changes failed, will retry: {}",
+                            batch.size(), e.getMessage());
+                    requeue(batch);
+                    return;
+                }
+                log.warn("Refresh token write-behind flush of {} changes failed, retrying one by one: {}",
+                        batch.size(), e.getMessage());
+                if (!applyOneByOne(batch)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Apply each change of a failed batch in its own transaction. Changes
+     * that fail again are requeued until they run out of attempts.
+     *
+     * @return Whether flushing can go on with the rest of the queue
+     */
+    private boolean applyOneByOne(List<PendingWrite> batch) {
+        List<PendingWrite> retry = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            try {
+                transactionTemplate.executeWithoutResult(status -> apply(List.of(write)));
+                capacity.release();
+                revokeIfRevokedInRedis(List.of(write));
+            } catch (Exception e) {
+                if (isTransient(e)) {
+                    retry.addAll(batch.subList(i, batch.size()));
+                    break;
+                }
+                int attempts = write.attempts() + 1;
+                if (attempts >= maxAttempts) {
+                    capacity.release();
+                    deadLettered.increment();
+                    log.error("Refresh token write-behind dropped {} (key={}, userId={}) after {} attempts: {}",
+                            write.kind(), write.key(), write.userId(), attempts, e.getMessage());
+                } else {
+                    retry.add(write.withAttempts(attempts));
+                }
+            }
+        }
+        requeue(retry);
+        return retry.isEmpty();
+    }
+
+    private void requeue(List<PendingWrite> writes) {
+        for (int i = writes.size() - 1; i >= 0; i--) {
+            queue.offerFirst(writes.get(i));
+        }
+    }
+
+    private static boolean isTransient(Exception e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private void apply(List<PendingWrite> batch) {
+        Map<String, RefreshTokenRecord> upserts = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            if (write.kind() == Kind.UPSERT) {
+                upserts.put(write.key(), write.token());
+                continue;
+            }
+            saveUpserts(upserts);
+            upserts.clear();
+            switch (write.kind()) {
+                case REVOKE_TOKEN -> refreshTokenRepository.revokeByTokenHash(write.key());
+                case REVOKE_FAMILY -> refreshTokenRepository.revokeTokenFamily(write.key());
+                case REVOKE_USER -> refreshTokenRepository.revokeAllUserTokens(
+                        userRepository.getReferenceById(write.userId()));
+                case REVOKE_DEVICE -> refreshTokenRepository.revokeDeviceTokens(
+                        userRepository.getReferenceById(write.userId()), write.key());
+                default -> throw new IllegalStateException("Unexpected write: " + write.kind());
+            }
+        }
+        saveUpserts(upserts);
+    }
+
+    private void saveUpserts(Map<String, RefreshTokenRecord> upserts) {
+        if (upserts.isEmpty()) {
+            return;
+        }
+        Map<String, RefreshToken> existing = refreshTokenRepository.findByTokenHashIn(upserts.keySet()).stream()
+                .collect(Collectors.toMap(RefreshToken::getTokenHash, Function.identity()));
+        List<RefreshToken> entities = new ArrayList<>(upserts.size());
+        for (RefreshTokenRecord token : upserts.values()) {
+            RefreshToken current = existing.get(token.tokenHash());
+            RefreshToken entity = token.applyTo(current != null ? current : new RefreshToken(),
+                    userRepository.getReferenceById(token.userId()));
+            if (current != null) {
+                // A revocation or rotation applied earlier is never undone by an older snapshot
+                entity.setRevoked(current.isRevoked() || token.revoked());
+                entity.setUsed(current.isUsed() || token.used());
+            }
+            entities.add(entity);
+        }
+        refreshTokenRepository.saveAll(entities);
+    }
+
+    /**
+     * Revoke committed upserts that Redis (the primary copy) has revoked in
+     * the meantime. Checked after the commit: a revocation that reached
+     * Redis later is written to Postgres after this row is visible.
+     */
+    private void revokeIfRevokedInRedis(List<PendingWrite> applied) {
+        List<String> hashes = applied.stream()
+                .filter(write -> write.kind() == Kind.UPSERT && !write.token().revoked())
+                .map(PendingWrite::key)
+                .distinct()
+                .toList();
+        if (hashes.isEmpty()) {
+            return;
+        }
+        try {
+            List<Object> flags = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String hash : hashes) {
+                    connection.hashCommands().hGet(
+                            (RedisRefreshTokenStore.TOKEN_PREFIX + hash).getBytes(StandardCharsets.UTF_8),
+                            REVOKED_FIELD);
+                }
+                return null;
+            });
+            List<String> revoked = new ArrayList<>();
+            for (int i = 0; i < hashes.size(); i++) {
+                if ("1".equals(flags.get(i))) {
+                    revoked.add(hashes.get(i));
+                }
+            }
+            if (!revoked.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> revoked.forEach(
+                        refreshTokenRepository::revokeByTokenHash));
+                lateRevocations.increment(revoked.size());
+            }
+        } catch (Exception e) {
+            log.warn("Could not check {} upserted refresh tokens against Redis: {}", hashes.size(), e.getMessage());
+        }
+    }
+
+    private enum Kind { UPSERT, REVOKE_TOKEN, REVOKE_FAMILY, REVOKE_USER, REVOKE_DEVICE }
+
+    private record PendingWrite(Kind kind, RefreshTokenRecord token, String key, Long userId, int attempts) {
+
+        PendingWrite withAttempts(int attempts) {
+            return new PendingWrite(kind, token, key, userId, attempts);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.security.token;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Encrypts a rotated refresh token's successor under a key derived from the
+ * rotated (old) plain token.
+ *
+ * The successor is kept for a few seconds so parallel requests carrying the
+ * same old cookie can be handed the same new token. Only a holder of the old
+ * plain token can open the envelope, so no usable refresh token is ever
+ * stored in Redis, and the store still only knows token hashes.
+ */
+final class SuccessorEnvelope {
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private SuccessorEnvelope() {
+    }
+
+    static String seal(String oldPlainToken, String newPlainToken) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            SECURE_RANDOM.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key(oldPlainToken), new GCMParameterSpec(TAG_BITS, iv));
+            byte[] sealed = cipher.doFinal(newPlainToken.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + sealed.length)
+                    .put(iv).put(sealed).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM not available", e);
+        }
+    }
+
+    static Optional<String> open(String oldPlainToken, String envelope) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(envelope);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key(oldPlainToken), new GCMParameterSpec(TAG_BITS, bytes, 0, IV_LENGTH));
+            byte[] plain = cipher.doFinal(bytes, IV_LENGTH, bytes.length - IV_LENGTH);
+            return Optional.of(new String(plain, StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static SecretKeySpec key(String oldPlainToken) throws GeneralSecurityException {
+        byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(("refresh-successor:" + oldPlainToken).getBytes(StandardCharsets.UTF_8));
+        return new SecretKeySpec(digest, "AES");
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.demo.security.validation;
+
+import com.example.demo.security.blacklist.TokenBlacklistService;
+import com.example.demo.security.jti.JtiTrackingService;
+import com.example.demo.security.jti.JtiTrackingService.JtiValidationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Checks an access token's Redis-side state in a single round trip.
+ *
+ * One Lua script checks, atomically:
+ * 1. the legacy token blacklist ({@code token:blacklist:})
+ * 2. the JTI blacklist ({@code jti:blacklist:})
+ * 3. the user's minimum token version ({@code user:token-version:})
+ * 4. the IP the JTI was issued to ({@code jti:})
+ *
+ * The IP prefix comparison stays in {@link JtiTrackingService}. All keys are
+ * touched by one script, so this assumes a single Redis node (no cluster).
+ */
+@Service
+public class TokenStateValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenStateValidator.class);
+
+    // Verdict: 'OK|<issuedIp>' (empty if untracked) or 'BLACKLISTED' / 'JTI_REVOKED' / 'VERSION_REVOKED'
+    private static final RedisScript<String> VALIDATE_SCRIPT = new DefaultRedisScript<>("""
+            if ARGV[1] == '1' and redis.call('EXISTS', KEYS[1]) == 1 then
+                return 'BLACKLISTED'
+            end
+            if ARGV[2] == '1' and redis.call('EXISTS', KEYS[2]) == 1 then
+                return 'JTI_REVOKED'
+            end
+            if ARGV[1] == '1' and ARGV[3] ~= '' then
+                local minVersion = redis.call('GET', KEYS[4])
+                if minVersion and tonumber(ARGV[3]) < tonumber(minVersion) then
+                    return 'VERSION_REVOKED'
+                end
+            end
+            local issuedIp = ''
+            if ARGV[2] == '1' then
+                issuedIp = redis.call('GET', KEYS[3]) or ''
+            end
+            return 'OK|' .. issuedIp
+            """, String.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final TokenBlacklistService tokenBlacklistService;
+    private final JtiTrackingService jtiTrackingService;
+
+    @Value("${security.fail-closed:false}")
+    private boolean failClosed;
+
+    public TokenStateValidator(StringRedisTemplate redisTemplate,
+                               TokenBlacklistService tokenBlacklistService,
+                               JtiTrackingService jtiTrackingService) {
+        this.redisTemplate = redisTemplate;
+        this.tokenBlacklistService = tokenBlacklistService;
+        this.jtiTrackingService = jtiTrackingService;
+    }
+
+    /**
+     * Validate a token's revocation and replay state.
+     *
+     * @param jti JWT ID
+     * @param userId User ID claim (may be null for older tokens)
+     * @param tokenVersion Token version claim
+     * @param currentIp Current request IP
+     * @return Validation result; on Redis failure, invalid only if {@code security.fail-closed}
+     */
+    public JtiValidationResult validate(String jti, Long userId, Long tokenVersion, String currentIp) {
+        boolean checkBlacklist = tokenBlacklistService.isEnabled();
+        boolean checkJti = jtiTrackingService.isEnabled();
+        if (!checkBlacklist && !checkJti) {
+            return JtiValidationResult.valid();
+        }
+        if (jti == null) {
+            return checkJti ? JtiValidationResult.invalid("Missing JTI") : JtiValidationResult.valid();
+        }
+
+        String verdict;
+        try {
+            verdict = redisTemplate.execute(VALIDATE_SCRIPT,
+                    List.of(TokenBlacklistService.blacklistKey(jti),
+                            JtiTrackingService.blacklistKey(jti),
+                            JtiTrackingService.jtiKey(jti),
+                            TokenBlacklistService.tokenVersionKey(userId)),
+                    checkBlacklist ? "1" : "0",
+                    checkJti ? "1" : "0",
+                    userId != null && tokenVersion != null ? tokenVersion.toString() : "");
+        } catch (Exception e) {
+            log.error("Failed to validate token state: {}", e.getMessage());
+            // Configurable: fail closed for high-security deployments
+            return failClosed ? JtiValidationResult.invalid("Security backend unavailable") : JtiValidationResult.valid();
+        }
+
+        int separator = verdict != null ? verdict.indexOf('|') : -1;
+        String status = verdict == null ? "OK" : separator < 0 ? verdict : verdict.substring(0, separator);
+        switch (status) {
+            case "BLACKLISTED" -> {
+                log.debug("Token JTI is blacklisted: {}", jti);
+                return JtiValidationResult.invalid("Token has been revoked");
+            }
+            case "JTI_REVOKED" -> {
+                log.warn("SECURITY: Blacklisted JTI used: {}", jti);
+                return JtiValidationResult.invalid("Token has been revoked");
+            }
+            case "VERSION_REVOKED" -> {
+                log.debug("Token version {} revoked for user {}", tokenVersion, userId);
+                return JtiValidationResult.invalid("Token version has been revoked");
+            }
+            default -> {
+                if (!checkJti) {
+                    return JtiValidationResult.valid();
+                }
+                String issuedIp = separator < 0 ? "" : verdict.substring(separator + 1);
+                return jtiTrackingService.checkIssuedIp(jti, issuedIp.isEmpty() ? null : issuedIp, currentIp);
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.demo.service;
 
 import com.example.demo.user.User;
 import com.example.demo.user.UserRepository;
+import com.example.demo.user.UserSecurityCache;
 import com.example.demo.user.UserXService;
 import com.example.demo.user.UserXServiceRepository;
 import org.springframework.stereotype.Service;
@@ -17,13 +18,16 @@ public class UserServiceManagementService {
     private final UserServiceRepository userServiceRepository;
     private final UserRepository userRepository;
     private final UserXServiceRepository userXServiceRepository;
+    private final UserSecurityCache userSecurityCache;
 
     public UserServiceManagementService(UserServiceRepository userServiceRepository, 
                                        UserRepository userRepository,
-                                       UserXServiceRepository userXServiceRepository) {
+                                       UserXServiceRepository userXServiceRepository,
+                                       UserSecurityCache userSecurityCache) {
         this.userServiceRepository = userServiceRepository;
         this.userRepository = userRepository;
         this.userXServiceRepository = userXServiceRepository;
+        this.userSecurityCache = userSecurityCache;
     }
 
     // ========== SERVICE MANAGEMENT ==========
@@ -57,6 +61,7 @@ public class UserServiceManagementService {
                 .orElseThrow(() -> new IllegalArgumentException("Service not found with id: " + serviceId));
         service.setActive(true);
         userServiceRepository.save(service);
+        userSecurityCache.invalidateServiceUsers(serviceId);
     }
 
     public void deactivateService(Long serviceId) {
@@ -64,6 +69,7 @@ public class UserServiceManagementService {
                 .orElseThrow(() -> new IllegalArgumentException("Service not found with id: " + serviceId));
         service.setActive(false);
         userServiceRepository.save(service);
+        userSecurityCache.invalidateServiceUsers(serviceId);
     }
 
     public void deleteService(Long serviceId) {
@@ -111,6 +117,7 @@ public class UserServiceManagementService {
         // Create new UserXService assignment
         UserXService userXService = new UserXService(user, service, "system");
         userXServiceRepository.save(userXService);
+        userSecurityCache.invalidate(user.getUsername());
     }
 
     public void removeUserFromService(Long userId, String serviceCode) {
@@ -118,6 +125,7 @@ public class UserServiceManagementService {
                 .orElseThrow(() -> new IllegalArgumentException("Service not found with code: " + serviceCode));
 
         userXServiceRepository.deleteByUserIdAndServiceId(userId, service.getId());
+        userRepository.findById(userId).ifPresent(user -> userSecurityCache.invalidate(user.getUsername()));
     }
 
     public List<UserServiceEntity> getUserServices(Long userId) {
@@ -0,0 +1,307 @@
+package com.example.demo.user;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ordered stream of user directory changes, so other services can keep a
+ * local replica of users instead of calling the auth-server on hot paths.
+ *
+ * Every change to a user's {@link UserDirectoryEntry} (create, update,
+ * deactivate, token-version bump) is appended to the Redis stream
+ * {@code users:changes} after the surrounding transaction commits. Entries
+ * carry the full new state, and their stream ID is {@code <sequence>-0},
+ * with a gap-free sequence. Saves that do not change the entry (e.g.
+ * last-login updates) are not published.
+ *
+ * The entry is re-read from the database after commit, under a per-user
+ * lock, rather than captured at save time: two updates that commit A then
+ * B may run their after-commit callbacks B then A, and the last callback
+ * must still publish B. The lock is per JVM, so with several auth-server
+ * instances a concurrent pair can still end on the older state until the
+ * user's next change.
+ *
+ * Consumers bootstrap from {@link #snapshot()}, then poll
+ * {@link #changesAfter(String, long, int)} from the snapshot's sequence (or
+ * XREAD the stream directly) and upsert each entry. Applying an event
+ * twice is harmless. A consumer must take a new snapshot when:
+ * - the epoch changed: Redis lost the stream and numbering restarted, or
+ *   changes could not be published (see below)
+ * - its position was trimmed (older than {@code stream-max-length} events)
+ *
+ * If appending fails (Redis unavailable), the user's ID is kept and its
+ * current state is re-read and published every {@code republish-interval-ms}
+ * until Redis accepts it, so the stream still ends on every user's latest
+ * state. If more than {@code max-pending-republish} users are waiting, the
+ * epoch is replaced instead once Redis is back, which makes every consumer
+ * resync. Pending IDs live in this JVM only: a crash while Redis is down
+ * loses them.
+ */
+@Service
+public class UserChangeStream {
+
+    private static final Logger log = LoggerFactory.getLogger(UserChangeStream.class);
+
+    private static final String STREAM_KEY = "users:changes";
+    private static final String SEQUENCE_KEY = "users:changes:seq";
+    private static final String EPOCH_KEY = "users:changes:epoch";
+    private static final String STATE_KEY = "users:changes:state";
+
+    // KEYS: stream, sequence, epoch, state hash;
+    // ARGV: userId, entryJson, enabled (1/0), tokenVersion, typeIfNew, maxLen, epochCandidate
+    private static final RedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>("""
+            local state = ARGV[3] .. '|' .. ARGV[4] .. '|' .. ARGV[2]
+            local previous = redis.call('HGET', KEYS[4], ARGV[1])
+            if previous == state then
+                return 0
+            end
+            local type = 'UPDATED'
+            if not previous then
+                type = ARGV[5]
+            else
+                local wasEnabled, oldVersion = string.match(previous, '^(%d)|(%d+)|')
+                if wasEnabled == '1' and ARGV[3] == '0' then
+                    type = 'DEACTIVATED'
+                elseif oldVersion ~= ARGV[4] then
+                    type = 'TOKEN_VERSION'
+                end
+            end
+            redis.call('SET', KEYS[3], ARGV[7], 'NX')
+            local seq = redis.call('INCR', KEYS[2])
+            redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[6], seq .. '-0', 'type', type, 'user', ARGV[2])
+            redis.call('HSET', KEYS[4], ARGV[1], state)
+            return seq
+            """, Long.class);
+
+    // KEYS: sequence, epoch; ARGV: epochCandidate. Returns "<epoch>|<sequence>"
+    private static final RedisScript<String> POSITION_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('SET', KEYS[2], ARGV[1], 'NX')
+            return redis.call('GET', KEYS[2]) .. '|' .. (redis.call('GET', KEYS[1]) or '0')
+            """, String.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper redisObjectMapper;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readTemplate;
+
+    // Serialises re-read and append per user (striped by ID)
+    private final Object[] userLocks = new Object[64];
+
+    // Users whose last change could not be appended; republished from the database
+    private final Set<Long> pendingRepublish = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean epochResetNeeded = new AtomicBoolean();
+
+    @Value("${security.user-directory.stream-max-length:100000}")
+    private long maxLength;
+
+    @Value("${security.user-directory.max-pending-republish:10000}")
+    private int maxPendingRepublish;
+
+    public UserChangeStream(StringRedisTemplate redisTemplate,
+                            ObjectMapper redisObjectMapper,
+                            UserRepository userRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.redisTemplate = redisTemplate;
+        this.redisObjectMapper = redisObjectMapper;
+        this.userRepository = userRepository;
+        // A new transaction, so the re-read bypasses the committed one's persistence context
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTemplate.setReadOnly(true);
+        for (int i = 0; i < userLocks.length; i++) {
+            userLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Publish a user's current directory entry, after commit when called
+     * inside a transaction. Does nothing if the entry did not change.
+     *
+     * @param user    User as saved
+     * @param created Whether this save created the user
+     */
+    public void publish(User user, boolean created) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        Long userId = user.getId();
+        String type = created ? "CREATED" : "UPDATED";
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appendCurrent(userId, type);
+                }
+            });
+        } else {
+            appendCurrent(userId, type);
+        }
+    }
+
+    /**
+     * Every user, with the stream position to resume from. The position is
+     * read before the users, so no change can fall between the two.
+     */
+    public Snapshot snapshot() {
+        Position position = position();
+        List<UserDirectoryEntry> users = userRepository.findAll().stream()
+                .map(UserDirectoryEntry::of)
+                .toList();
+        return new Snapshot(position.epoch(), position.sequence(), users);
+    }
+
+    /**
+     * Up to {@code limit} changes with a sequence above {@code after}.
+     * {@code resync} is set when the consumer cannot continue from there.
+     *
+     * @param epoch Epoch the consumer's position belongs to (may be null)
+     */
+    public Changes changesAfter(String epoch, long after, int limit) {
+        Position position = position();
+        List<Change> changes = new ArrayList<>();
+        boolean resync = (epoch != null && !epoch.equals(position.epoch())) || after > position.sequence();
+        if (!resync && after < position.sequence()) {
+            List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(STREAM_KEY,
+                    Range.rightUnbounded(Range.Bound.inclusive((after + 1) + "-0")), Limit.limit().count(limit));
+            if (records == null || records.isEmpty() || sequenceOf(records.get(0)) != after + 1) {
+                // Trimmed past the consumer's position
+                resync = true;
+            } else {
+                for (MapRecord<String, Object, Object> record : records) {
+                    changes.add(toChange(record));
+                }
+            }
+        }
+        return new Changes(position.epoch(), position.sequence(), resync, changes);
+    }
+
+    /**
+     * Publish the current state of users whose change could not be
+     * appended, or start a new epoch if too many were missed.
+     */
+    @Scheduled(fixedDelayString = "${security.user-directory.republish-interval-ms:5000}")
+    public void republishPending() {
+        if (epochResetNeeded.get()) {
+            try {
+                redisTemplate.opsForValue().set(EPOCH_KEY, UUID.randomUUID().toString());
+                epochResetNeeded.set(false);
+                log.warn("Started a new user change epoch after missed changes; consumers will resync");
+            } catch (Exception e) {
+                log.warn("Could not start a new user change epoch, will retry: {}", e.getMessage());
+            }
+            return;
+        }
+        for (Long userId : List.copyOf(pendingRepublish)) {
+            pendingRepublish.remove(userId);
+            if (!appendCurrent(userId, "UPDATED")) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Re-read the user and append its committed state. Holding the user's
+     * lock across both steps means the last caller reads after every
+     * earlier commit, so the stream ends on the latest state.
+     *
+     * @return Whether the entry was appended (or was unchanged, or the user is gone)
+     */
+    private boolean appendCurrent(Long userId, String typeIfNew) {
+        synchronized (userLocks[Math.floorMod(userId.hashCode(), userLocks.length)]) {
+            Optional<UserDirectoryEntry> entry;
+            try {
+                entry = readTemplate.execute(status -> userRepository.findById(userId).map(UserDirectoryEntry::of));
+            } catch (Exception e) {
+                log.warn("Failed to read user {} for its change event, will republish: {}", userId, e.getMessage());
+                pendingRepublish.add(userId);
+                return false;
+            }
+            return entry == null || entry.isEmpty() || append(entry.get(), typeIfNew);
+        }
+    }
+
+    /**
+     * @return Whether the entry was appended (or was unchanged)
+     */
+    private boolean append(UserDirectoryEntry entry, String typeIfNew) {
+        try {
+            redisTemplate.execute(PUBLISH_SCRIPT,
+                    List.of(STREAM_KEY, SEQUENCE_KEY, EPOCH_KEY, STATE_KEY),
+                    entry.id().toString(),
+                    redisObjectMapper.writeValueAsString(entry),
+                    entry.enabled() ? "1" : "0",
+                    String.valueOf(entry.tokenVersion() != null ? entry.tokenVersion() : 0),
+                    typeIfNew,
+                    String.valueOf(maxLength),
+                    UUID.randomUUID().toString());
+            return true;
+        } catch (Exception e) {
+            if (pendingRepublish.size() < maxPendingRepublish) {
+                pendingRepublish.add(entry.id());
+                log.warn("Failed to publish user change for {}, will republish: {}", entry.username(), e.getMessage());
+            } else {
+                pendingRepublish.clear();
+                epochResetNeeded.set(true);
+                log.error("Failed to publish user change for {} with {} changes already pending;"
+                        + " consumers will be told to resync: {}", entry.username(), maxPendingRepublish, e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    private Position position() {
+        String result = redisTemplate.execute(POSITION_SCRIPT, List.of(SEQUENCE_KEY, EPOCH_KEY),
+                UUID.randomUUID().toString());
+        int separator = result.lastIndexOf('|');
+        return new Position(result.substring(0, separator), Long.parseLong(result.substring(separator + 1)));
+    }
+
+    private Change toChange(MapRecord<String, Object, Object> record) {
+        try {
+            return new Change(sequenceOf(record), (String) record.getValue().get("type"),
+                    redisObjectMapper.readValue((String) record.getValue().get("user"), UserDirectoryEntry.class));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable user change " + record.getId(), e);
+        }
+    }
+
+    private static long sequenceOf(MapRecord<String, Object, Object> record) {
+        return record.getId().getTimestamp();
+    }
+
+    private record Position(String epoch, long sequence) {
+    }
+
+    public record Snapshot(String epoch, long sequence, List<UserDirectoryEntry> users) {
+    }
+
+    public record Change(long sequence, String type, UserDirectoryEntry user) {
+    }
+
+    public record Changes(String epoch, long sequence, boolean resync, List<Change> changes) {
+    }
+}
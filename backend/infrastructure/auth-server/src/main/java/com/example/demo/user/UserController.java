@@ -1,6 +1,7 @@
 package com.example.demo.user;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
@@ -13,9 +14,16 @@ import java.util.Optional;
 public class UserController {
 
     private final UserService userService;
+    private final UserDirectory userDirectory;
+    private final UserChangeStream userChangeStream;
 
-    public UserController(UserService userService) {
+    @Value("${security.user-directory.max-batch-size:5000}")
+    private int maxBatchSize;
+
+    public UserController(UserService userService, UserDirectory userDirectory, UserChangeStream userChangeStream) {
         this.userService = userService;
+        this.userDirectory = userDirectory;
+        this.userChangeStream = userChangeStream;
     }
 
     @GetMapping
@@ -130,6 +138,43 @@ public class UserController {
         return ResponseEntity.notFound().build();
     }
 
+    /**
+     * Resolve many users in one call, by id and/or username (e.g. to label a
+     * report list or fill a local replica). Unknown keys are left out.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> lookupUsers(@RequestBody UserLookupRequest request) {
+        int size = (request.getIds() != null ? request.getIds().size() : 0)
+                + (request.getUsernames() != null ? request.getUsernames().size() : 0);
+        if (size > maxBatchSize) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("error", "At most " + maxBatchSize + " ids and usernames per request"));
+        }
+        List<UserDirectoryEntry> users = userDirectory.lookup(request.getIds(), request.getUsernames());
+        return ResponseEntity.ok(java.util.Map.of("users", users));
+    }
+
+    /**
+     * Every user plus the change-stream position to resume from, to
+     * bootstrap a local replica.
+     */
+    @GetMapping("/directory/snapshot")
+    public ResponseEntity<UserChangeStream.Snapshot> getDirectorySnapshot() {
+        return ResponseEntity.ok(userChangeStream.snapshot());
+    }
+
+    /**
+     * Directory changes after a sequence number. If {@code resync} is true
+     * the replica must be rebuilt from a new snapshot.
+     */
+    @GetMapping("/directory/changes")
+    public ResponseEntity<UserChangeStream.Changes> getDirectoryChanges(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(required = false) String epoch,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.ok(userChangeStream.changesAfter(epoch, after, Math.min(Math.max(limit, 1), maxBatchSize)));
+    }
+
     @GetMapping("/{id}/username")
     public ResponseEntity<String> getUsername(@PathVariable Long id) {
         User user = userService.getUserById(id);
@@ -219,6 +264,27 @@ public class UserController {
         }
     }
 
+    public static class UserLookupRequest {
+        private List<Long> ids;
+        private List<String> usernames;
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public void setIds(List<Long> ids) {
+            this.ids = ids;
+        }
+
+        public List<String> getUsernames() {
+            return usernames;
+        }
+
+        public void setUsernames(List<String> usernames) {
+            this.usernames = usernames;
+        }
+    }
+
     public static class AssignServicesRequest {
         private List<Long> serviceIds;
 
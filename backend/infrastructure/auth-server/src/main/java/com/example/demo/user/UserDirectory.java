@@ -0,0 +1,146 @@
+package com.example.demo.user;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batch user lookups for other services (id, username, full name, phone,
+ * enabled, root).
+ *
+ * Entries are kept in-process, by id with a username index, for
+ * {@code local-ttl-seconds}. All misses of a batch are loaded with one
+ * {@code IN} query per key type. Entries are evicted by the same
+ * {@code auth:user-invalidations} messages as {@link UserSecurityCache},
+ * which every user change already publishes.
+ */
+@Service
+public class UserDirectory {
+
+    private final UserRepository userRepository;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+    private final Map<String, Long> idsByUsername = new ConcurrentHashMap<>();
+    // Bumped on every eviction; a load that raced with one is not kept
+    private final AtomicLong generation = new AtomicLong();
+
+    @Value("${security.user-directory.local-ttl-seconds:30}")
+    private long localTtlSeconds;
+
+    @Value("${security.user-directory.local-max-entries:50000}")
+    private int localMaxEntries;
+
+    public UserDirectory(UserRepository userRepository, RedisMessageListenerContainer listenerContainer) {
+        this.userRepository = userRepository;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> evict(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(UserSecurityCache.CHANNEL));
+    }
+
+    /**
+     * Resolve users by id and/or username. Unknown ids and usernames are
+     * left out; a user matched by both appears once.
+     *
+     * @param ids       User IDs (may be null)
+     * @param usernames Usernames (may be null)
+     * @return Matching users, in no particular order
+     */
+    public List<UserDirectoryEntry> lookup(Collection<Long> ids, Collection<String> usernames) {
+        long now = System.nanoTime();
+        long loadGeneration = generation.get();
+        Map<Long, UserDirectoryEntry> found = new LinkedHashMap<>();
+        Set<Long> missingIds = new LinkedHashSet<>();
+        Set<String> missingUsernames = new LinkedHashSet<>();
+
+        if (ids != null) {
+            for (Long id : ids) {
+                UserDirectoryEntry entry = getLocal(id, now);
+                if (entry != null) {
+                    found.put(id, entry);
+                } else if (id != null) {
+                    missingIds.add(id);
+                }
+            }
+        }
+        if (usernames != null) {
+            for (String username : usernames) {
+                Long id = username != null ? idsByUsername.get(username) : null;
+                UserDirectoryEntry entry = getLocal(id, now);
+                if (entry != null) {
+                    found.putIfAbsent(entry.id(), entry);
+                } else if (username != null) {
+                    missingUsernames.add(username);
+                }
+            }
+        }
+
+        List<User> loaded = new ArrayList<>();
+        if (!missingIds.isEmpty()) {
+            loaded.addAll(userRepository.findAllById(missingIds));
+        }
+        if (!missingUsernames.isEmpty()) {
+            loaded.addAll(userRepository.findByUsernameIn(missingUsernames));
+        }
+        boolean cacheable = generation.get() == loadGeneration;
+        for (User user : loaded) {
+            UserDirectoryEntry entry = UserDirectoryEntry.of(user);
+            found.putIfAbsent(entry.id(), entry);
+            if (cacheable) {
+                putLocal(entry, now);
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    private UserDirectoryEntry getLocal(Long id, long now) {
+        Entry entry = id != null ? byId.get(id) : null;
+        if (entry == null || now - entry.loadedAtNanos() >= Duration.ofSeconds(localTtlSeconds).toNanos()) {
+            return null;
+        }
+        return entry.value();
+    }
+
+    private void putLocal(UserDirectoryEntry value, long now) {
+        if (byId.size() >= localMaxEntries && !byId.containsKey(value.id())) {
+            long expiredBefore = now - Duration.ofSeconds(localTtlSeconds).toNanos();
+            byId.values().removeIf(existing -> existing.loadedAtNanos() < expiredBefore);
+            idsByUsername.values().removeIf(id -> !byId.containsKey(id));
+            if (byId.size() >= localMaxEntries) {
+                return;
+            }
+        }
+        byId.put(value.id(), new Entry(value, now));
+        idsByUsername.put(value.username(), value.id());
+    }
+
+    private void evict(String username) {
+        generation.incrementAndGet();
+        Long id = idsByUsername.remove(username);
+        if (id != null) {
+            byId.remove(id);
+        }
+    }
+
+    private record Entry(UserDirectoryEntry value, long loadedAtNanos) {
+    }
+}
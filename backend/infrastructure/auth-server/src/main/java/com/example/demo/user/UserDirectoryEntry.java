@@ -0,0 +1,31 @@
+package com.example.demo.user;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Public directory view of a user, as served to other services by the
+ * batch lookup endpoint and the change stream ({@link UserChangeStream}).
+ * Null fields are left out to keep large responses small.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserDirectoryEntry(Long id,
+                                 String username,
+                                 String fullName,
+                                 String phone,
+                                 boolean enabled,
+                                 boolean root,
+                                 Long tokenVersion) {
+
+    public static final String ROOT_USERNAME = "root";
+
+    public static UserDirectoryEntry of(User user) {
+        return new UserDirectoryEntry(
+                user.getId(),
+                user.getUsername(),
+                user.getFullName(),
+                user.getPhone(),
+                user.isEnabled(),
+                ROOT_USERNAME.equals(user.getUsername()),
+                user.getTokenVersion());
+    }
+}
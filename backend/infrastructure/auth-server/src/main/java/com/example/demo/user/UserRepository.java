@@ -1,5 +1,6 @@
 package com.example.demo.user;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -7,4 +8,5 @@ import org.springframework.data.jpa.repository.JpaRepository;
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     List<User> findByEnabledTrue();
+    List<User> findByUsernameIn(Collection<String> usernames);
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package com.example.demo.user;
+
+import com.example.demo.service.UserServiceEntity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache of {@link UserSecuritySnapshot}s for per-request authentication.
+ *
+ * L1 is an in-process map with a short TTL, so the common path makes no
+ * network calls. L2 is a Redis JSON entry shared by all instances, so an
+ * L1 miss rarely reaches the database.
+ *
+ * Changes to a user, or to the services assigned to it, go through
+ * {@link #invalidate(String)}. It deletes the
+ * L2 entry and publishes the username on {@code auth:user-invalidations},
+ * after the surrounding transaction commits. Every instance then drops its
+ * L1 entry. If a message is lost, the L1 TTL limits how long an instance
+ * serves the old snapshot. Token-version revocation does not depend on this
+ * cache alone: the Redis version floor is still checked on every request
+ * by the token state validator.
+ */
+@Service
+public class UserSecurityCache {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSecurityCache.class);
+
+    public static final String CHANNEL = "auth:user-invalidations";
+    private static final String KEY_PREFIX = "user:security:";
+
+    private final UserRepository userRepository;
+    private final UserXServiceRepository userXServiceRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper redisObjectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Map<String, Entry> local = new ConcurrentHashMap<>();
+    // Bumped on every eviction; a load that raced with one is not kept in L1
+    private final AtomicLong generation = new AtomicLong();
+
+    @Value("${security.user-cache.local-ttl-seconds:30}")
+    private long localTtlSeconds;
+
+    @Value("${security.user-cache.local-max-entries:10000}")
+    private int localMaxEntries;
+
+    @Value("${security.user-cache.redis-ttl-seconds:60}")
+    private long redisTtlSeconds;
+
+    public UserSecurityCache(UserRepository userRepository,
+                             UserXServiceRepository userXServiceRepository,
+                             StringRedisTemplate redisTemplate,
+                             ObjectMapper redisObjectMapper,
+                             RedisMessageListenerContainer listenerContainer) {
+        this.userRepository = userRepository;
+        this.userXServiceRepository = userXServiceRepository;
+        this.redisTemplate = redisTemplate;
+        this.redisObjectMapper = redisObjectMapper;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> evictLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * Look up a user's security snapshot: L1, then Redis, then the database.
+     *
+     * @param username Username (JWT subject)
+     * @return Snapshot, or empty if the user does not exist
+     */
+    public Optional<UserSecuritySnapshot> get(String username) {
+        long now = System.nanoTime();
+        Entry entry = local.get(username);
+        if (entry != null && now - entry.loadedAtNanos() < Duration.ofSeconds(localTtlSeconds).toNanos()) {
+            return Optional.of(entry.snapshot());
+        }
+
+        long loadGeneration = generation.get();
+        UserSecuritySnapshot snapshot = readRedis(username);
+        if (snapshot == null) {
+            snapshot = userRepository.findByUsername(username)
+                    .map(user -> UserSecuritySnapshot.of(user, activeServiceCodes(user.getId())))
+                    .orElse(null);
+            if (snapshot == null) {
+                return Optional.empty();
+            }
+            writeRedis(snapshot);
+        }
+
+        if (generation.get() == loadGeneration) {
+            putLocal(username, new Entry(snapshot, now));
+        }
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * Drop a user's snapshot on every instance. Inside a transaction the
+     * eviction is repeated after commit, so no instance can reload the
+     * pre-commit state and keep it.
+     *
+     * @param username Username
+     */
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        evictEverywhere(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictEverywhere(username);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drop the snapshots of every user actively assigned to a service, after
+     * the service itself was activated or deactivated.
+     *
+     * @param serviceId Service ID
+     */
+    public void invalidateServiceUsers(Long serviceId) {
+        userXServiceRepository.findActiveUsersByServiceId(serviceId)
+                .forEach(user -> invalidate(user.getUsername()));
+    }
+
+    private List<String> activeServiceCodes(Long userId) {
+        return userXServiceRepository.findActiveServicesByUserId(userId).stream()
+                .filter(UserServiceEntity::isActive)
+                .map(UserServiceEntity::getCode)
+                .toList();
+    }
+
+    private void evictEverywhere(String username) {
+        evictLocal(username);
+        try {
+            redisTemplate.delete(KEY_PREFIX + username);
+            redisTemplate.convertAndSend(CHANNEL, username);
+        } catch (Exception e) {
+            log.warn("Failed to publish user cache invalidation for {}: {}", username, e.getMessage());
+        }
+    }
+
+    private void evictLocal(String username) {
+        generation.incrementAndGet();
+        local.remove(username);
+    }
+
+    private void putLocal(String username, Entry entry) {
+        if (local.size() >= localMaxEntries && !local.containsKey(username)) {
+            long expiredBefore = entry.loadedAtNanos() - Duration.ofSeconds(localTtlSeconds).toNanos();
+            local.values().removeIf(existing -> existing.loadedAtNanos() < expiredBefore);
+            if (local.size() >= localMaxEntries) {
+                return;
+            }
+        }
+        local.put(username, entry);
+    }
+
+    private UserSecuritySnapshot readRedis(String username) {
+        try {
+            String json = redisTemplate.opsForValue().get(KEY_PREFIX + username);
+            UserSecuritySnapshot snapshot = json != null ? redisObjectMapper.readValue(json, UserSecuritySnapshot.class) : null;
+            // Entries written before service codes were cached are treated as a miss
+            return snapshot != null && snapshot.serviceCodes() != null ? snapshot : null;
+        } catch (Exception e) {
+            log.debug("User cache read failed for {}: {}", username, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRedis(UserSecuritySnapshot snapshot) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + snapshot.username(),
+                    redisObjectMapper.writeValueAsString(snapshot), Duration.ofSeconds(redisTtlSeconds));
+        } catch (Exception e) {
+            log.debug("User cache write failed for {}: {}", snapshot.username(), e.getMessage());
+        }
+    }
+
+    private record Entry(UserSecuritySnapshot snapshot, long loadedAtNanos) {
+    }
+}
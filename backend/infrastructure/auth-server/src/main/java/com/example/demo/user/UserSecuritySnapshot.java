@@ -0,0 +1,62 @@
+package com.example.demo.user;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable view of the user fields needed to authenticate a request.
+ *
+ * Cached by {@link UserSecurityCache} so the JWT filter does not load the
+ * full {@link User} entity on every request, and token issuance does not
+ * query the user's services. Holds no password hash.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record UserSecuritySnapshot(Long id,
+                                   String username,
+                                   Long tokenVersion,
+                                   boolean enabled,
+                                   boolean accountLocked,
+                                   Instant lockExpiresAt,
+                                   List<String> authorities,
+                                   List<String> serviceCodes) {
+
+    /**
+     * @param serviceCodes Codes of the user's active service assignments (signed into access tokens)
+     */
+    public static UserSecuritySnapshot of(User user, List<String> serviceCodes) {
+        return new UserSecuritySnapshot(
+                user.getId(),
+                user.getUsername(),
+                user.getTokenVersion(),
+                user.isEnabled(),
+                user.isAccountLocked(),
+                user.getLockExpiresAt(),
+                List.of(), // no roles for now, same as UserService.loadUserByUsername
+                List.copyOf(serviceCodes));
+    }
+
+    /**
+     * Locked and the lock has not expired yet.
+     */
+    @JsonIgnore
+    public boolean isLocked() {
+        return accountLocked && (lockExpiresAt == null || !Instant.now().isAfter(lockExpiresAt));
+    }
+
+    /**
+     * Principal for the security context. Credentials are not needed once the
+     * JWT has been verified, so the password is left empty.
+     */
+    @JsonIgnore
+    public UserDetails toUserDetails() {
+        return org.springframework.security.core.userdetails.User.withUsername(username)
+                .password("")
+                .authorities(authorities.stream().map(SimpleGrantedAuthority::new).toList())
+                .build();
+    }
+}
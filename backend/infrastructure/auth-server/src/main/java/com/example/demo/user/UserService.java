@@ -30,17 +30,23 @@ public class UserService implements UserDetailsService {
     private final com.example.demo.service.UserServiceManagementService userServiceManagementService;
     private final PasswordEncoder passwordEncoder;
     private final ObjectProvider<UserService> selfProvider;
+    private final UserSecurityCache userSecurityCache;
+    private final UserChangeStream userChangeStream;
 
     public UserService(UserRepository userRepository,
             UserXServiceRepository userXServiceRepository,
             com.example.demo.service.UserServiceManagementService userServiceManagementService,
             PasswordEncoder passwordEncoder,
-            ObjectProvider<UserService> selfProvider) {
+            ObjectProvider<UserService> selfProvider,
+            UserSecurityCache userSecurityCache,
+            UserChangeStream userChangeStream) {
         this.userRepository = userRepository;
         this.userXServiceRepository = userXServiceRepository;
         this.userServiceManagementService = userServiceManagementService;
         this.passwordEncoder = passwordEncoder;
         this.selfProvider = selfProvider;
+        this.userSecurityCache = userSecurityCache;
+        this.userChangeStream = userChangeStream;
     }
 
     @CacheEvict(cacheNames = "usersByUsername", key = "#username")
@@ -93,6 +99,7 @@ public class UserService implements UserDetailsService {
                 userXServiceRepository.save(userXService);
             }
         }
+        userSecurityCache.invalidate(user.getUsername());
     }
 
     @Transactional
@@ -138,6 +145,7 @@ public class UserService implements UserDetailsService {
                 userXServiceRepository.save(userXService);
             }
         }
+        userSecurityCache.invalidate(user.getUsername());
     }
 
     @Transactional
@@ -152,6 +160,7 @@ public class UserService implements UserDetailsService {
     @Transactional
     public void removeServiceFromUser(Long userId, Long serviceId) {
         userXServiceRepository.deleteByUserIdAndServiceId(userId, serviceId);
+        userRepository.findById(userId).ifPresent(user -> userSecurityCache.invalidate(user.getUsername()));
     }
 
     public List<UserServiceEntity> getUserServices(Long userId) {
@@ -195,6 +204,8 @@ public class UserService implements UserDetailsService {
             user.setEnabled(false);
             user.setAccountLocked(true);
             userRepository.save(user);
+            userSecurityCache.invalidate(user.getUsername());
+            userChangeStream.publish(user, false);
 
             logger.info("Successfully soft-deleted user {} (deactivated and locked)", userId);
 
@@ -252,7 +263,10 @@ public class UserService implements UserDetailsService {
             }
         }
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userSecurityCache.invalidate(saved.getUsername());
+        userChangeStream.publish(saved, false);
+        return saved;
     }
 
     public com.example.demo.user.User getUserByUsername(String username) {
@@ -269,7 +283,11 @@ public class UserService implements UserDetailsService {
 
     @CacheEvict(cacheNames = "usersByUsername", key = "#user.username")
     public com.example.demo.user.User save(com.example.demo.user.User user) {
-        return userRepository.save(user);
+        boolean created = user.getId() == null;
+        com.example.demo.user.User saved = userRepository.save(user);
+        userSecurityCache.invalidate(saved.getUsername());
+        userChangeStream.publish(saved, created);
+        return saved;
     }
 
     @Override
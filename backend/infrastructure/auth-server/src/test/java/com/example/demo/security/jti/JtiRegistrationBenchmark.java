@@ -0,0 +1,147 @@
+package com.example.demo.security.jti;
+
+import com.example.demo.security.revocation.RevocationPublisher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JTI registration (the Redis part of every login and transparent refresh)
+ * and logout-all revocation against a real Redis, before and after moving
+ * them into single scripts.
+ *
+ * The "before" methods replay the commands the old code sent: two SETs,
+ * ZADD, EXPIRE, ZADD, ZCARD, ZREMRANGEBYRANK and EXPIRE per registration,
+ * and a {@code blacklistJti} call (SET plus replay-set publish) per JTI on
+ * logout-all. The "after" methods call {@link JtiTrackingService}.
+ *
+ * Needs a Redis at {@code -Dredis.host} / {@code -Dredis.port}
+ * (default localhost:6379); it writes under the usual key prefixes, so do
+ * not point it at a shared instance. Run with:
+ * {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main JtiRegistrationBenchmark"}
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JtiRegistrationBenchmark {
+
+    private static final long USER_ID = 900_001L;
+    private static final long LOGOUT_USER_ID = 900_002L;
+    private static final String DEVICE = "benchmark-device";
+    private static final String IP = "203.0.113.10";
+    private static final int MAX_PER_DEVICE = 2;
+    private static final int JTIS_PER_USER = 20;
+    private static final long ACCESS_TTL_SECONDS = 180;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private RevocationPublisher revocationPublisher;
+    private JtiTrackingService jtiTrackingService;
+
+    @Setup(Level.Trial)
+    public void connect() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "localhost"),
+                Integer.getInteger("redis.port", 6379)));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        revocationPublisher = new RevocationPublisher(redisTemplate);
+        ReflectionTestUtils.setField(revocationPublisher, "publishEnabled", true);
+        ReflectionTestUtils.setField(revocationPublisher, "accessTokenExpirationMinutes", 3);
+
+        jtiTrackingService = new JtiTrackingService(redisTemplate, revocationPublisher);
+        ReflectionTestUtils.setField(jtiTrackingService, "trackingEnabled", true);
+        ReflectionTestUtils.setField(jtiTrackingService, "maxJtisPerDevice", MAX_PER_DEVICE);
+        ReflectionTestUtils.setField(jtiTrackingService, "accessTokenExpirationMinutes", 3);
+    }
+
+    /**
+     * A user with {@value #JTIS_PER_USER} active JTIs before every logout-all.
+     */
+    @Setup(Level.Invocation)
+    public void seedUserJtis() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < JTIS_PER_USER; i++) {
+            redisTemplate.opsForZSet().add("user:jtis:" + LOGOUT_USER_ID, UUID.randomUUID().toString(), now + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() {
+        redisTemplate.delete(Set.of("user:jtis:" + USER_ID, "user:jtis:" + LOGOUT_USER_ID, "device:jtis:" + DEVICE));
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void registerJtiBefore() {
+        String jti = UUID.randomUUID().toString();
+        Duration ttl = Duration.ofSeconds(ACCESS_TTL_SECONDS + 60);
+        redisTemplate.opsForValue().set("jti:" + jti, IP, ttl);
+        redisTemplate.opsForValue().set("jti:ip:" + jti, IP, ttl);
+
+        String userJtisKey = "user:jtis:" + USER_ID;
+        long now = System.currentTimeMillis();
+        redisTemplate.opsForZSet().add(userJtisKey, jti, now);
+        redisTemplate.expire(userJtisKey, Duration.ofDays(1));
+
+        String deviceJtisKey = "device:jtis:" + DEVICE;
+        redisTemplate.opsForZSet().add(deviceJtisKey, jti, now);
+        Long count = redisTemplate.opsForZSet().zCard(deviceJtisKey);
+        if (count != null && count > MAX_PER_DEVICE) {
+            redisTemplate.opsForZSet().removeRange(deviceJtisKey, 0, count - MAX_PER_DEVICE - 1);
+        }
+        redisTemplate.expire(deviceJtisKey, Duration.ofDays(1));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void registerJtiAfter() {
+        jtiTrackingService.registerJti(UUID.randomUUID().toString(), USER_ID, DEVICE, IP, ACCESS_TTL_SECONDS);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void blacklistAllUserJtisBefore() {
+        String userJtisKey = "user:jtis:" + LOGOUT_USER_ID;
+        Set<String> jtis = redisTemplate.opsForZSet().range(userJtisKey, 0, -1);
+        if (jtis != null) {
+            for (String jti : jtis) {
+                redisTemplate.opsForValue().set("jti:blacklist:" + jti, "1", Duration.ofSeconds(ACCESS_TTL_SECONDS + 60));
+                revocationPublisher.publishRevokedJti(jti, ACCESS_TTL_SECONDS);
+            }
+        }
+        redisTemplate.delete(userJtisKey);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void blacklistAllUserJtisAfter() {
+        jtiTrackingService.blacklistAllUserJtis(LOGOUT_USER_ID);
+    }
+}
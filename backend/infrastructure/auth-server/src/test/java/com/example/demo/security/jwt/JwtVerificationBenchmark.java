@@ -0,0 +1,119 @@
+package com.example.demo.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request CPU spent verifying the access token in
+ * {@link JwtAuthenticationFilter}, before and after verifying it once with
+ * a shared parser.
+ *
+ * Before, every step parsed the token again with a freshly built parser:
+ * an authenticated request did it twice (expiry check, claims), a
+ * suspicious one three times. Now {@link JwtService#verify} parses it once.
+ * The token carries the claims {@link JwtService#issueAccessToken} signs,
+ * with five service codes and a device fingerprint.
+ *
+ * Run with:
+ * {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main JwtVerificationBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-with-at-least-32-characters";
+    private static final String ISSUER = "secure-app";
+
+    private SecretKey signingKey;
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        signingKey = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        jwtService = new JwtService(null);
+        ReflectionTestUtils.setField(jwtService, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "issuer", ISSUER);
+        ReflectionTestUtils.setField(jwtService, "accessTokenExpirationMinutes", 3);
+        jwtService.init();
+
+        Instant now = Instant.now();
+        token = Jwts.builder()
+                .header()
+                    .type("JWT")
+                    .and()
+                .subject("branch.manager.01")
+                .issuer(ISSUER)
+                .issuedAt(Date.from(now))
+                // Outlives the run
+                .expiration(Date.from(now.plusSeconds(3600)))
+                .id(UUID.randomUUID().toString())
+                .claim("ver", 3L)
+                .claim("uid", 12345L)
+                .claim("svc", List.of("call", "delivery", "marketing", "branchreport", "region"))
+                .claim("dfp", "3f1c9a6e0b7d4e2a8c5f1b3d7e9a0c2e4f6b8d0a1c3e5f7a9b1d3f5a7c9e1b3d")
+                .signWith(signingKey, Jwts.SIG.HS256)
+                .compact();
+    }
+
+    /**
+     * Authenticated request before: expiry check and claims, each with a new parser.
+     */
+    @Benchmark
+    public Claims beforeAuthenticatedRequest() {
+        freshParse();
+        return freshParse();
+    }
+
+    /**
+     * Suspicious-use path before: one more parse for the remaining TTL.
+     */
+    @Benchmark
+    public Claims beforeSuspiciousRequest() {
+        freshParse();
+        freshParse();
+        return freshParse();
+    }
+
+    /**
+     * Any request now: one verification with the shared parser.
+     */
+    @Benchmark
+    public VerifiedToken afterVerifyOnce() {
+        return jwtService.verify(token).orElseThrow();
+    }
+
+    private Claims freshParse() {
+        return Jwts.parser()
+                .verifyWith(signingKey)
+                .requireIssuer(ISSUER)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+}
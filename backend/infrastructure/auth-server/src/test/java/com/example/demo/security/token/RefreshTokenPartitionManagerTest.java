@@ -0,0 +1,178 @@
+package com.example.demo.security.token;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the refresh_tokens partitioning migration, partition rollover and
+ * expired-partition drop against a real PostgreSQL.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RefreshTokenPartitionManagerTest {
+
+    private static final int EXPIRATION_DAYS = 7;
+    private static final int PRECREATE_DAYS = 2;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16");
+
+    private JdbcTemplate jdbcTemplate;
+    private RefreshTokenPartitionManager partitionManager;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        jdbcTemplate.execute("DROP SCHEMA public CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA public");
+        // The schema Hibernate (ddl-auto=update) creates for User and RefreshToken before partitioning
+        jdbcTemplate.execute("CREATE TABLE users (id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE refresh_tokens ("
+                + " id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                + " token_hash varchar(64) NOT NULL UNIQUE,"
+                + " token_family varchar(36) NOT NULL,"
+                + " user_id bigint NOT NULL REFERENCES users (id),"
+                + " device_fingerprint varchar(64) NOT NULL,"
+                + " device_name varchar(255),"
+                + " ip_address varchar(45),"
+                + " ip_prefix varchar(45) NOT NULL,"
+                + " user_agent_hash varchar(64) NOT NULL,"
+                + " device_id varchar(64),"
+                + " created_at timestamp(6) with time zone NOT NULL,"
+                + " expires_at timestamp(6) with time zone NOT NULL,"
+                + " last_used_at timestamp(6) with time zone,"
+                + " used boolean NOT NULL,"
+                + " revoked boolean NOT NULL,"
+                + " user_token_version bigint NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX idx_refresh_token_hash ON refresh_tokens (token_hash)");
+        jdbcTemplate.execute("CREATE INDEX idx_refresh_token_user ON refresh_tokens (user_id)");
+        jdbcTemplate.execute("CREATE INDEX idx_refresh_token_family ON refresh_tokens (token_family)");
+        jdbcTemplate.execute("CREATE INDEX idx_refresh_token_expires ON refresh_tokens (expires_at)");
+        jdbcTemplate.update("INSERT INTO users DEFAULT VALUES");
+
+        partitionManager = new RefreshTokenPartitionManager(jdbcTemplate, transactionTemplate);
+        ReflectionTestUtils.setField(partitionManager, "enabled", true);
+        ReflectionTestUtils.setField(partitionManager, "precreateDays", PRECREATE_DAYS);
+        ReflectionTestUtils.setField(partitionManager, "expirationDays", EXPIRATION_DAYS);
+    }
+
+    @Test
+    void migrationCopiesUnexpiredTokensAndKeepsLegacyTable() {
+        Instant now = Instant.now();
+        insertToken("expired", now.minus(Duration.ofDays(1)));
+        insertToken("live", now.plus(Duration.ofDays(3)));
+
+        partitionManager.init();
+
+        assertThat(partitionManager.isPartitioned()).isTrue();
+        assertThat(relkind("refresh_tokens")).isEqualTo("p");
+        assertThat(tokenHashes("refresh_tokens")).containsExactly("live");
+        assertThat(tokenHashes("refresh_tokens_unpartitioned")).containsExactlyInAnyOrder("expired", "live");
+
+        LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        assertThat(partitions()).contains(
+                partitionName(today), partitionName(today.plusDays(EXPIRATION_DAYS + PRECREATE_DAYS)),
+                "refresh_tokens_default");
+
+        // New ids continue after the legacy ones
+        long legacyMax = jdbcTemplate.queryForObject("SELECT max(id) FROM refresh_tokens_unpartitioned", Long.class);
+        insertToken("next", now.plus(Duration.ofDays(1)));
+        assertThat(jdbcTemplate.queryForObject("SELECT id FROM refresh_tokens WHERE token_hash = 'next'", Long.class))
+                .isGreaterThan(legacyMax);
+
+        // A second startup finds the table already partitioned
+        partitionManager.init();
+        assertThat(partitionManager.isPartitioned()).isTrue();
+        assertThat(tokenHashes("refresh_tokens")).containsExactlyInAnyOrder("live", "next");
+    }
+
+    @Test
+    void tokenHashStaysUniquePerExpiry() {
+        Instant expiresAt = Instant.now().plus(Duration.ofDays(2));
+        partitionManager.init();
+
+        insertToken("hash", expiresAt);
+        assertThatThrownBy(() -> insertToken("hash", expiresAt)).isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void ensurePartitionsRollsForward() {
+        partitionManager.init();
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate nextHorizon = today.plusDays(3 + EXPIRATION_DAYS + PRECREATE_DAYS);
+        assertThat(partitions()).doesNotContain(partitionName(nextHorizon));
+
+        partitionManager.ensurePartitions(Instant.now().plus(Duration.ofDays(3)));
+
+        assertThat(partitions()).contains(partitionName(nextHorizon));
+    }
+
+    @Test
+    void dropsExpiredPartitionsAndPurgesDefault() {
+        Instant now = Instant.now();
+        LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        partitionManager.init();
+        // Partitions from two days ago, as if created by an earlier rollover
+        partitionManager.ensurePartitions(now.minus(Duration.ofDays(2)));
+        insertToken("two-days-ago", now.minus(Duration.ofDays(2)));
+        insertToken("live", now.plus(Duration.ofDays(1)));
+        // No partition covers a month ago: lands in the default partition
+        insertToken("month-ago", now.minus(Duration.ofDays(30)));
+
+        assertThat(partitionManager.dropExpiredPartitions(now)).isEqualTo(1);
+        assertThat(partitions()).doesNotContain(partitionName(today.minusDays(2)), partitionName(today.minusDays(1)))
+                .contains(partitionName(today));
+
+        assertThat(partitionManager.purgeDefaultPartition(now, 1)).isEqualTo(1);
+        assertThat(tokenHashes("refresh_tokens")).containsExactly("live");
+    }
+
+    private void insertToken(String tokenHash, Instant expiresAt) {
+        jdbcTemplate.update("INSERT INTO refresh_tokens (token_hash, token_family, user_id, device_fingerprint,"
+                        + " ip_prefix, user_agent_hash, created_at, expires_at, used, revoked, user_token_version)"
+                        + " VALUES (?, 'family', 1, 'fingerprint', '10.0.0', 'agent', ?, ?, false, false, 0)",
+                tokenHash, Timestamp.from(Instant.now()), Timestamp.from(expiresAt));
+    }
+
+    private List<String> tokenHashes(String table) {
+        return jdbcTemplate.queryForList("SELECT token_hash FROM " + table, String.class);
+    }
+
+    private String relkind(String table) {
+        return jdbcTemplate.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, table);
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname::text FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid"
+                + " WHERE i.inhparent = to_regclass('refresh_tokens')", String.class);
+    }
+
+    private static String partitionName(LocalDate day) {
+        return "refresh_tokens_p" + day.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+}
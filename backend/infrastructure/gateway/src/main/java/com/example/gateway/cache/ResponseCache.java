@@ -0,0 +1,156 @@
+package com.example.gateway.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * In-memory store for cached GET responses, bounded by entry count and
+ * per-entry size. Entries are keyed by {@code routeId + " " + path?query}.
+ */
+@Component
+public class ResponseCache {
+
+    private final Map<String, CachedResponse> entries = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so responses fetched before a write are not stored after it
+    private final AtomicLong generation = new AtomicLong();
+    private final int maxEntries;
+    private final int maxEntryBytes;
+
+    public ResponseCache(MeterRegistry meterRegistry,
+                         @Value("${gateway.response-cache.max-entries:1000}") int maxEntries,
+                         @Value("${gateway.response-cache.max-entry-bytes:1048576}") int maxEntryBytes) {
+        this.maxEntries = Math.max(maxEntries, 1);
+        this.maxEntryBytes = maxEntryBytes;
+        Gauge.builder("gateway.response.cache.size", entries, Map::size)
+                .description("Current number of cached gateway responses")
+                .register(meterRegistry);
+    }
+
+    public CachedResponse get(String key) {
+        CachedResponse cached = entries.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, cached);
+            return null;
+        }
+        return cached;
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Store a response body fetched at the given cache generation. Bodies over
+     * the configured size, or fetched before an invalidation, are not cached.
+     */
+    public CachedResponse put(String key, String routeId, String path, byte[] body,
+                              MediaType contentType, long ttlMillis, long fetchedAtGeneration) {
+        CachedResponse response = new CachedResponse(routeId, path, body, contentType, etag(body),
+                System.currentTimeMillis() + ttlMillis);
+        if (body.length > maxEntryBytes || fetchedAtGeneration != generation.get()) {
+            return response;
+        }
+        if (entries.size() >= maxEntries) {
+            evict(System.currentTimeMillis());
+        }
+        entries.put(key, response);
+        return response;
+    }
+
+    public int invalidateRoute(String routeId) {
+        generation.incrementAndGet();
+        return removeIf(cached -> cached.routeId().equals(routeId));
+    }
+
+    public int invalidatePathPrefix(String pathPrefix) {
+        generation.incrementAndGet();
+        return removeIf(cached -> cached.path().startsWith(pathPrefix));
+    }
+
+    public int invalidateAll() {
+        generation.incrementAndGet();
+        int size = entries.size();
+        entries.clear();
+        return size;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private int removeIf(Predicate<CachedResponse> predicate) {
+        int removed = 0;
+        Iterator<CachedResponse> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (predicate.test(it.next())) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Drop expired entries first; if still full, drop arbitrary entries
+     * until there is roughly 10% headroom again.
+     */
+    private void evict(long now) {
+        removeIf(cached -> cached.isExpired(now));
+        int target = maxEntries - Math.max(maxEntries / 10, 1);
+        Iterator<CachedResponse> it = entries.values().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Strong ETag: quoted, URL-safe Base64 SHA-256 of the exact body bytes.
+     */
+    static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record CachedResponse(String routeId, String path, byte[] body, MediaType contentType,
+                                 String etag, long expiresAtMillis) {
+        boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+
+        /**
+         * Whether an If-None-Match header value matches this entry's ETag.
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
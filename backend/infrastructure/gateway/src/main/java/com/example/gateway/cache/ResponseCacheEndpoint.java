@@ -0,0 +1,31 @@
+package com.example.gateway.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint ({@code /actuator/responsecache}) to inspect the
+ * gateway response cache.
+ *
+ * Read-only: {@code /actuator/} is public on the gateway, so a web purge
+ * would let anyone push every region read onto region-service. Purging is
+ * JMX-only ({@link ResponseCachePurgeEndpoint}).
+ */
+@Component
+@Endpoint(id = "responsecache")
+public class ResponseCacheEndpoint {
+
+    private final ResponseCache cache;
+
+    public ResponseCacheEndpoint(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return Map.of("entries", cache.size());
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.gateway.cache;
+
+import com.example.gateway.cache.ResponseCache.CachedResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gateway-side cache for whitelisted, non-user-specific GET routes.
+ *
+ * A route opts in through its metadata:
+ * <pre>
+ * metadata:
+ *   response-cache:
+ *     enabled: true
+ *     ttl-seconds: 300
+ *     paths: /api/region/areas/hierarchy,/api/region/branches
+ * </pre>
+ *
+ * Cached responses carry a strong ETag, and a matching If-None-Match is
+ * answered with 304 without touching the downstream service. Any successful
+ * POST/PUT/PATCH/DELETE through the same route clears that route's entries.
+ * A downstream response may also carry {@code X-Cache-Bust} with
+ * comma-separated path prefixes to purge; the header is never forwarded to clients.
+ */
+@Component
+public class ResponseCacheFilter implements GlobalFilter, Ordered {
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseCacheFilter.class);
+    public static final String CACHE_BUST_HEADER = "X-Cache-Bust";
+    private static final String METADATA_KEY = "response-cache";
+    private static final PathPatternParser PATTERN_PARSER = new PathPatternParser();
+
+    private final ResponseCache cache;
+    private final Map<String, RouteCacheConfig> routeConfigs = new ConcurrentHashMap<>();
+    private final long defaultTtlSeconds;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter notModified;
+
+    public ResponseCacheFilter(ResponseCache cache,
+                               MeterRegistry meterRegistry,
+                               @Value("${gateway.response-cache.default-ttl-seconds:300}") long defaultTtlSeconds) {
+        this.cache = cache;
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.hits = Counter.builder("gateway.response.cache")
+                .tag("result", "hit")
+                .description("Cacheable GET requests answered from the gateway cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("gateway.response.cache")
+                .tag("result", "miss")
+                .description("Cacheable GET requests forwarded downstream")
+                .register(meterRegistry);
+        this.notModified = Counter.builder("gateway.response.cache.not-modified")
+                .description("Requests answered with 304 Not Modified")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        RouteCacheConfig config = routeConfigs.computeIfAbsent(route.getId(),
+                id -> RouteCacheConfig.fromMetadata(route.getMetadata(), defaultTtlSeconds));
+        ServerHttpRequest request = exchange.getRequest();
+        HttpMethod method = request.getMethod();
+
+        if (config.enabled() && HttpMethod.GET.equals(method) && config.matches(request.getPath().pathWithinApplication())) {
+            return serveCacheable(exchange, chain, route.getId(), config);
+        }
+
+        ServerHttpResponseDecorator decorated = new InvalidatingResponse(exchange.getResponse(), route.getId(),
+                config.enabled() && isWrite(method));
+        return chain.filter(exchange.mutate().response(decorated).build());
+    }
+
+    private Mono<Void> serveCacheable(ServerWebExchange exchange, GatewayFilterChain chain,
+                                      String routeId, RouteCacheConfig config) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        String query = request.getURI().getRawQuery();
+        String key = routeId + " " + path + (query != null ? "?" + query : "");
+        String ifNoneMatch = request.getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH);
+
+        CachedResponse cached = cache.get(key);
+        if (cached != null) {
+            hits.increment();
+            return writeCached(exchange.getResponse(), cached, ifNoneMatch);
+        }
+
+        misses.increment();
+        long generation = cache.generation();
+        ServerHttpResponse original = exchange.getResponse();
+        ServerHttpResponseDecorator decorated = new ServerHttpResponseDecorator(original) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                HttpStatusCode status = getStatusCode();
+                HttpHeaders headers = getHeaders();
+                headers.remove(CACHE_BUST_HEADER);
+                if (status == null || status.value() != HttpStatus.OK.value()
+                        || headers.containsKey(HttpHeaders.CONTENT_ENCODING)
+                        || headers.containsKey(HttpHeaders.SET_COOKIE)) {
+                    return super.writeWith(body);
+                }
+
+                return DataBufferUtils.join(Flux.from(body)).map(joined -> {
+                    byte[] bytes = new byte[joined.readableByteCount()];
+                    joined.read(bytes);
+                    DataBufferUtils.release(joined);
+                    return bytes;
+                }).defaultIfEmpty(new byte[0]).flatMap(bytes -> {
+                    CachedResponse stored = cache.put(key, routeId, path, bytes, headers.getContentType(),
+                            config.ttlSeconds() * 1000L, generation);
+                    headers.setETag(stored.etag());
+                    if (stored.matches(ifNoneMatch)) {
+                        notModified.increment();
+                        setStatusCode(HttpStatus.NOT_MODIFIED);
+                        headers.remove(HttpHeaders.CONTENT_LENGTH);
+                        return setComplete();
+                    }
+                    return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                });
+            }
+        };
+        return chain.filter(exchange.mutate().response(decorated).build());
+    }
+
+    private Mono<Void> writeCached(ServerHttpResponse response, CachedResponse cached, String ifNoneMatch) {
+        HttpHeaders headers = response.getHeaders();
+        headers.setETag(cached.etag());
+        headers.set("X-Cache", "HIT");
+        if (cached.matches(ifNoneMatch)) {
+            notModified.increment();
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+
+        response.setStatusCode(HttpStatus.OK);
+        if (cached.contentType() != null) {
+            headers.setContentType(cached.contentType());
+        }
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    /**
+     * Clears cache entries after a successful write on a cached route, and
+     * honours {@code X-Cache-Bust} from any downstream response.
+     */
+    private final class InvalidatingResponse extends ServerHttpResponseDecorator {
+        private final String routeId;
+        private final boolean invalidateRoute;
+
+        InvalidatingResponse(ServerHttpResponse delegate, String routeId, boolean invalidateRoute) {
+            super(delegate);
+            this.routeId = routeId;
+            this.invalidateRoute = invalidateRoute;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            invalidate();
+            return super.writeWith(body);
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            invalidate();
+            return super.setComplete();
+        }
+
+        private void invalidate() {
+            HttpHeaders headers = getHeaders();
+            String bust = headers.getFirst(CACHE_BUST_HEADER);
+            if (bust != null) {
+                headers.remove(CACHE_BUST_HEADER);
+                for (String prefix : bust.split(",")) {
+                    if (!prefix.isBlank()) {
+                        int removed = cache.invalidatePathPrefix(prefix.trim());
+                        log.debug("Cache bust for prefix {} removed {} entries", prefix.trim(), removed);
+                    }
+                }
+            }
+
+            HttpStatusCode status = getStatusCode();
+            if (invalidateRoute && status != null && status.is2xxSuccessful()) {
+                int removed = cache.invalidateRoute(routeId);
+                log.debug("Write on route {} removed {} cached responses", routeId, removed);
+            }
+        }
+    }
+
+    @EventListener(RefreshRoutesEvent.class)
+    public void onRoutesRefreshed() {
+        routeConfigs.clear();
+        cache.invalidateAll();
+    }
+
+    private static boolean isWrite(HttpMethod method) {
+        return HttpMethod.POST.equals(method) || HttpMethod.PUT.equals(method)
+                || HttpMethod.PATCH.equals(method) || HttpMethod.DELETE.equals(method);
+    }
+
+    @Override
+    public int getOrder() {
+        // After rate limiting, before NettyWriteResponseFilter (-1) writes the body
+        return -80;
+    }
+
+    private record RouteCacheConfig(boolean enabled, long ttlSeconds, List<PathPattern> paths) {
+
+        static RouteCacheConfig fromMetadata(Map<String, Object> metadata, long defaultTtlSeconds) {
+            Object raw = metadata != null ? metadata.get(METADATA_KEY) : null;
+            if (!(raw instanceof Map<?, ?> config)) {
+                return new RouteCacheConfig(false, 0, List.of());
+            }
+
+            boolean enabled = Boolean.parseBoolean(String.valueOf(config.get("enabled")));
+            Object ttl = config.get("ttl-seconds");
+            long ttlSeconds = ttl != null ? Long.parseLong(String.valueOf(ttl).trim()) : defaultTtlSeconds;
+            Object paths = config.get("paths");
+            List<PathPattern> patterns = paths == null ? List.of() : Arrays.stream(String.valueOf(paths).split(","))
+                    .map(String::trim)
+                    .filter(p -> !p.isEmpty())
+                    .map(PATTERN_PARSER::parse)
+                    .toList();
+            return new RouteCacheConfig(enabled && !patterns.isEmpty(), ttlSeconds, patterns);
+        }
+
+        boolean matches(PathContainer path) {
+            for (PathPattern pattern : paths) {
+                if (pattern.matches(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
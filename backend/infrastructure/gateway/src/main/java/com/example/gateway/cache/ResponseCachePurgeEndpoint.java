@@ -0,0 +1,40 @@
+package com.example.gateway.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.jmx.annotation.JmxEndpoint;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * JMX-only endpoint to purge the gateway response cache, reachable from the
+ * host (jconsole, jcmd) but not over HTTP.
+ *
+ * {@code purge} with no arguments drops everything;
+ * {@code route=region-service} or {@code prefix=/api/region/branches}
+ * narrows it.
+ */
+@Component
+@JmxEndpoint(id = "responsecachepurge")
+public class ResponseCachePurgeEndpoint {
+
+    private final ResponseCache cache;
+
+    public ResponseCachePurgeEndpoint(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @DeleteOperation
+    public Map<String, Object> purge(@Nullable String route, @Nullable String prefix) {
+        int removed;
+        if (route != null && !route.isBlank()) {
+            removed = cache.invalidateRoute(route);
+        } else if (prefix != null && !prefix.isBlank()) {
+            removed = cache.invalidatePathPrefix(prefix);
+        } else {
+            removed = cache.invalidateAll();
+        }
+        return Map.of("removed", removed);
+    }
+}
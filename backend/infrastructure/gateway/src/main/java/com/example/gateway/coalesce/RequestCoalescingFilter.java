@@ -0,0 +1,212 @@
+package com.example.gateway.coalesce;
+
+import com.example.gateway.security.JwtAuthenticationFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-flight coalescing of identical concurrent GET requests.
+ *
+ * A route opts in through its metadata:
+ * <pre>
+ * metadata:
+ *   coalesce:
+ *     enabled: true
+ *     paths: /api/marketing/goods-shipments/dashboard-stats
+ * </pre>
+ *
+ * Requests are keyed by route, path, query and user id. The first request
+ * goes downstream; identical requests arriving while it is in flight wait
+ * for its response and replay it instead of opening their own upstream call.
+ * If the leader fails or is cancelled, waiting followers go downstream themselves.
+ */
+@Component
+public class RequestCoalescingFilter implements GlobalFilter, Ordered {
+
+    private static final String METADATA_KEY = "coalesce";
+    private static final PathPatternParser PATTERN_PARSER = new PathPatternParser();
+    // Per-client headers that must not be replayed from the leader's response
+    private static final Set<String> EXCLUDED_HEADERS = Set.of(
+            HttpHeaders.SET_COOKIE.toLowerCase(), HttpHeaders.TRANSFER_ENCODING.toLowerCase());
+
+    private final Map<String, Sinks.One<CapturedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, CoalesceConfig> routeConfigs = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter collapsed;
+
+    @Value("${gateway.coalesce.max-wait-ms:30000}")
+    private long maxWaitMs;
+
+    public RequestCoalescingFilter(MeterRegistry meterRegistry) {
+        this.leaders = Counter.builder("gateway.coalesce.requests")
+                .tag("role", "leader")
+                .description("Coalescable requests that went downstream")
+                .register(meterRegistry);
+        this.collapsed = Counter.builder("gateway.coalesce.requests")
+                .tag("role", "collapsed")
+                .description("Requests answered from another in-flight identical request")
+                .register(meterRegistry);
+        Gauge.builder("gateway.coalesce.in-flight", inFlight, Map::size)
+                .description("Distinct coalesced requests currently in flight")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        ServerHttpRequest request = exchange.getRequest();
+        if (route == null || !HttpMethod.GET.equals(request.getMethod())) {
+            return chain.filter(exchange);
+        }
+
+        CoalesceConfig config = routeConfigs.computeIfAbsent(route.getId(),
+                id -> CoalesceConfig.fromMetadata(route.getMetadata()));
+        if (!config.enabled() || !config.matches(request.getPath().pathWithinApplication())) {
+            return chain.filter(exchange);
+        }
+
+        Long userId = exchange.getAttribute(JwtAuthenticationFilter.USER_ID_ATTR);
+        String query = request.getURI().getRawQuery();
+        String key = route.getId() + " " + request.getPath().value()
+                + (query != null ? "?" + query : "") + " " + (userId != null ? userId : "-");
+
+        Sinks.One<CapturedResponse> sink = Sinks.one();
+        Sinks.One<CapturedResponse> existing = inFlight.putIfAbsent(key, sink);
+        if (existing != null) {
+            return follow(exchange, chain, existing);
+        }
+
+        leaders.increment();
+        return lead(exchange, chain, key, sink);
+    }
+
+    private Mono<Void> lead(ServerWebExchange exchange, GatewayFilterChain chain,
+                            String key, Sinks.One<CapturedResponse> sink) {
+        ServerHttpResponseDecorator decorated = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                return DataBufferUtils.join(Flux.from(body)).map(joined -> {
+                    byte[] bytes = new byte[joined.readableByteCount()];
+                    joined.read(bytes);
+                    DataBufferUtils.release(joined);
+                    return bytes;
+                }).defaultIfEmpty(new byte[0]).flatMap(bytes -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.putAll(getHeaders());
+                    inFlight.remove(key, sink);
+                    sink.tryEmitValue(new CapturedResponse(getStatusCode(), headers, bytes));
+                    return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                });
+            }
+        };
+
+        return chain.filter(exchange.mutate().response(decorated).build())
+                .doFinally(signal -> {
+                    // No body was captured (error, cancel or empty response): release followers
+                    inFlight.remove(key, sink);
+                    sink.tryEmitEmpty();
+                });
+    }
+
+    private Mono<Void> follow(ServerWebExchange exchange, GatewayFilterChain chain,
+                              Sinks.One<CapturedResponse> leader) {
+        return leader.asMono()
+                .timeout(Duration.ofMillis(maxWaitMs), Mono.empty())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(captured -> {
+                    if (captured.isEmpty()) {
+                        return chain.filter(exchange);
+                    }
+                    collapsed.increment();
+                    return replay(exchange.getResponse(), captured.get());
+                });
+    }
+
+    private Mono<Void> replay(ServerHttpResponse response, CapturedResponse captured) {
+        response.setStatusCode(captured.status());
+        HttpHeaders headers = response.getHeaders();
+        captured.headers().forEach((name, values) -> {
+            if (!EXCLUDED_HEADERS.contains(name.toLowerCase()) && !headers.containsKey(name)) {
+                headers.addAll(name, values);
+            }
+        });
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(captured.body())));
+    }
+
+    @EventListener(RefreshRoutesEvent.class)
+    public void onRoutesRefreshed() {
+        routeConfigs.clear();
+    }
+
+    @Override
+    public int getOrder() {
+        // After rate limiting and the response cache, before NettyWriteResponseFilter (-1)
+        return -70;
+    }
+
+    private record CapturedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+    }
+
+    private record CoalesceConfig(boolean enabled, List<PathPattern> paths) {
+
+        static CoalesceConfig fromMetadata(Map<String, Object> metadata) {
+            Object raw = metadata != null ? metadata.get(METADATA_KEY) : null;
+            if (!(raw instanceof Map<?, ?> config)) {
+                return new CoalesceConfig(false, List.of());
+            }
+
+            boolean enabled = Boolean.parseBoolean(String.valueOf(config.get("enabled")));
+            Object paths = config.get("paths");
+            List<PathPattern> patterns = paths == null ? List.of() : Arrays.stream(String.valueOf(paths).split(","))
+                    .map(String::trim)
+                    .filter(p -> !p.isEmpty())
+                    .map(PATTERN_PARSER::parse)
+                    .toList();
+            return new CoalesceConfig(enabled && !patterns.isEmpty(), patterns);
+        }
+
+        boolean matches(PathContainer path) {
+            for (PathPattern pattern : paths) {
+                if (pattern.matches(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
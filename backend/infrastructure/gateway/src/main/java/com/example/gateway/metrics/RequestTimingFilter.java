@@ -0,0 +1,101 @@
+package com.example.gateway.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-route latency metrics for every request through the gateway.
+ *
+ * Records three percentile histograms tagged by route id:
+ * {@code gateway.request} (total), {@code gateway.request.filters} (time spent
+ * in gateway filters before routing) and {@code gateway.request.upstream}
+ * (time from handing the request to the routing filter until the response is
+ * written). Requests slower than the threshold are logged at a sampled rate.
+ */
+@Component
+public class RequestTimingFilter implements GlobalFilter, Ordered {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestTimingFilter.class);
+    private static final String NO_ROUTE = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${gateway.metrics.slow-request-threshold-ms:1000}")
+    private long slowRequestThresholdMs;
+
+    @Value("${gateway.metrics.slow-request-sample-rate:0.01}")
+    private double slowRequestSampleRate;
+
+    public RequestTimingFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> record(exchange, start, System.nanoTime()));
+    }
+
+    private void record(ServerWebExchange exchange, long start, long end) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : NO_ROUTE;
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        String outcome = status != null ? (status.value() / 100) + "xx" : "unknown";
+
+        long totalNanos = end - start;
+        timer("gateway.request", "Total gateway request latency", routeId, outcome).record(Duration.ofNanos(totalNanos));
+
+        Long upstreamStart = exchange.getAttribute(UpstreamTimingFilter.UPSTREAM_START_ATTR);
+        long filterNanos = upstreamStart != null ? upstreamStart - start : totalNanos;
+        long upstreamNanos = upstreamStart != null ? end - upstreamStart : 0;
+        timer("gateway.request.filters", "Time spent in gateway filters before routing", routeId, outcome)
+                .record(Duration.ofNanos(filterNanos));
+        if (upstreamStart != null) {
+            timer("gateway.request.upstream", "Time spent in the downstream call, including connection acquisition",
+                    routeId, outcome).record(Duration.ofNanos(upstreamNanos));
+        }
+
+        if (totalNanos >= slowRequestThresholdMs * 1_000_000L
+                && ThreadLocalRandom.current().nextDouble() < slowRequestSampleRate) {
+            ServerHttpRequest request = exchange.getRequest();
+            log.warn("Slow request: route={} {} {} status={} total={}ms filters={}ms upstream={}ms reqBytes={} respBytes={}",
+                    routeId, request.getMethod(), request.getURI().getPath(),
+                    status != null ? status.value() : null,
+                    totalNanos / 1_000_000, filterNanos / 1_000_000, upstreamNanos / 1_000_000,
+                    request.getHeaders().getContentLength(),
+                    exchange.getResponse().getHeaders().getContentLength());
+        }
+    }
+
+    private Timer timer(String name, String description, String routeId, String outcome) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("routeId", routeId)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int getOrder() {
+        // Outermost gateway filter so the total covers every other filter
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
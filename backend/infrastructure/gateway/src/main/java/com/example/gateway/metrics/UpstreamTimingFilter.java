@@ -0,0 +1,30 @@
+package com.example.gateway.metrics;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Marks the moment a request leaves the gateway filter chain and is handed to
+ * the routing filter, splitting gateway filter time from upstream time.
+ */
+@Component
+public class UpstreamTimingFilter implements GlobalFilter, Ordered {
+
+    static final String UPSTREAM_START_ATTR = UpstreamTimingFilter.class.getName() + ".upstreamStart";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        exchange.getAttributes().put(UPSTREAM_START_ATTR, System.nanoTime());
+        return chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        // Immediately before NettyRoutingFilter (LOWEST_PRECEDENCE)
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.gateway.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free token bucket.
+ *
+ * Implemented as GCRA (generic cell rate algorithm), which is equivalent to a
+ * token bucket but keeps its whole state in a single "theoretical arrival
+ * time", so one compare-and-set decides each request.
+ */
+final class LocalTokenBucket {
+
+    private final long capacity;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival;
+    private final LongAdder admittedSinceSync = new LongAdder();
+    private volatile long lastAccessNanos;
+
+    // Cluster sync bookkeeping, only touched by the single sync loop
+    long syncWindow = -1;
+    long localInWindow;
+    long remoteSeenInWindow;
+
+    LocalTokenBucket(long capacity, double refillPerSecond, long now) {
+        this.capacity = Math.max(capacity, 1);
+        this.emissionIntervalNanos = Math.max((long) (1_000_000_000L / refillPerSecond), 1);
+        this.burstToleranceNanos = this.emissionIntervalNanos * this.capacity;
+        this.theoreticalArrival = new AtomicLong(now);
+        this.lastAccessNanos = now;
+    }
+
+    /**
+     * Try to take one token.
+     *
+     * @return 0 if the request is admitted, otherwise nanoseconds until a token is available
+     */
+    long tryAcquire(long now) {
+        lastAccessNanos = now;
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long newTat = Math.max(tat, now) + emissionIntervalNanos;
+            long allowAt = newTat - burstToleranceNanos;
+            if (allowAt > now) {
+                return allowAt - now;
+            }
+            if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                admittedSinceSync.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Tokens currently left in the bucket.
+     */
+    long remaining(long now) {
+        long tat = Math.max(theoreticalArrival.get(), now);
+        return Math.max((now + burstToleranceNanos - tat) / emissionIntervalNanos, 0);
+    }
+
+    /**
+     * Remove tokens consumed elsewhere in the cluster. Never drains the bucket
+     * further than one full burst into the future.
+     */
+    void consumeRemote(long tokens, long now) {
+        if (tokens <= 0) {
+            return;
+        }
+        long ceiling = now + burstToleranceNanos;
+        theoreticalArrival.updateAndGet(tat ->
+                Math.min(Math.max(tat, now) + tokens * emissionIntervalNanos, ceiling));
+    }
+
+    long drainAdmitted() {
+        return admittedSinceSync.sumThenReset();
+    }
+
+    boolean isIdle(long now, long idleNanos) {
+        return theoreticalArrival.get() <= now && now - lastAccessNanos > idleNanos;
+    }
+
+    long capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.gateway.ratelimit;
+
+import com.example.gateway.security.JwtAuthenticationFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.gateway.support.ipresolver.RemoteAddressResolver;
+import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddressResolver;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Edge rate limiting for every proxied route.
+ *
+ * Applies a per-IP bucket and, for authenticated requests, a per-user bucket.
+ * Limits come from each route's {@code metadata.rate-limit} block (see
+ * {@link RouteRateLimits}) or the {@code gateway.rate-limit.*} defaults.
+ * Decisions are made from in-memory buckets only; rejected requests get a
+ * 429 with Retry-After and never reach the downstream service.
+ */
+@Component
+public class RateLimitFilter implements GlobalFilter, Ordered {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final TokenBucketRegistry registry;
+    private final RouteRateLimits defaults;
+    private final Map<String, RouteRateLimits> routeLimits = new ConcurrentHashMap<>();
+    private final RemoteAddressResolver clientAddressResolver;
+    private final Counter ipRejections;
+    private final Counter userRejections;
+
+    public RateLimitFilter(TokenBucketRegistry registry,
+                           MeterRegistry meterRegistry,
+                           @Value("${gateway.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${gateway.rate-limit.ip.capacity:200}") long ipCapacity,
+                           @Value("${gateway.rate-limit.ip.refill-per-second:50}") double ipRefill,
+                           @Value("${gateway.rate-limit.user.capacity:100}") long userCapacity,
+                           @Value("${gateway.rate-limit.user.refill-per-second:25}") double userRefill,
+                           @Value("${gateway.rate-limit.trusted-proxies:0}") int trustedProxies) {
+        this.registry = registry;
+        this.clientAddressResolver = trustedProxies > 0
+                ? XForwardedRemoteAddressResolver.maxTrustedIndex(trustedProxies)
+                : new RemoteAddressResolver() {
+                };
+        this.defaults = new RouteRateLimits(enabled,
+                new RouteRateLimits.Limit(ipCapacity, ipRefill),
+                new RouteRateLimits.Limit(userCapacity, userRefill));
+        this.ipRejections = Counter.builder("gateway.ratelimit.rejected")
+                .tag("scope", "ip")
+                .description("Requests rejected by the per-IP edge rate limit")
+                .register(meterRegistry);
+        this.userRejections = Counter.builder("gateway.ratelimit.rejected")
+                .tag("scope", "user")
+                .description("Requests rejected by the per-user edge rate limit")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        RouteRateLimits limits = routeLimits.computeIfAbsent(route.getId(),
+                id -> RouteRateLimits.fromMetadata(route.getMetadata(), defaults));
+        if (!limits.enabled()) {
+            return chain.filter(exchange);
+        }
+
+        long now = System.nanoTime();
+
+        if (limits.ip().isActive()) {
+            String clientIp = extractClientIp(exchange);
+            LocalTokenBucket bucket = registry.bucket(route.getId() + ":ip:", clientIp, limits.ip(), now);
+            long waitNanos = bucket.tryAcquire(now);
+            if (waitNanos > 0) {
+                ipRejections.increment();
+                log.debug("Rate limit exceeded on route {} for IP {}", route.getId(), clientIp);
+                return reject(exchange, waitNanos);
+            }
+        }
+
+        Long userId = exchange.getAttribute(JwtAuthenticationFilter.USER_ID_ATTR);
+        if (userId != null && limits.user().isActive()) {
+            LocalTokenBucket bucket = registry.bucket(route.getId() + ":user:", String.valueOf(userId), limits.user(), now);
+            long waitNanos = bucket.tryAcquire(now);
+            if (waitNanos > 0) {
+                userRejections.increment();
+                log.debug("Rate limit exceeded on route {} for user {}", route.getId(), userId);
+                return reject(exchange, waitNanos);
+            }
+        }
+
+        return chain.filter(exchange);
+    }
+
+    @EventListener(RefreshRoutesEvent.class)
+    public void onRoutesRefreshed() {
+        routeLimits.clear();
+        registry.clear();
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, long waitNanos) {
+        long retryAfter = Math.max(TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L), 1);
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.getHeaders().set("X-RateLimit-Remaining", "0");
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        byte[] body = ("{\"error\":\"Too many requests\",\"retryAfter\":" + retryAfter + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        DataBuffer buffer = response.bufferFactory().wrap(body);
+        return response.writeWith(Mono.just(buffer));
+    }
+
+    /**
+     * Client IP for the per-IP bucket. Only X-Forwarded-For entries added by
+     * the {@code gateway.rate-limit.trusted-proxies} hops in front of the
+     * gateway are used; anything further left was sent by the client.
+     */
+    private String extractClientIp(ServerWebExchange exchange) {
+        InetSocketAddress remoteAddress = clientAddressResolver.resolve(exchange);
+        return remoteAddress != null && remoteAddress.getAddress() != null
+                ? remoteAddress.getAddress().getHostAddress()
+                : "unknown";
+    }
+
+    @Override
+    public int getOrder() {
+        // Right after JwtAuthenticationFilter so the user id is known
+        return -90;
+    }
+}
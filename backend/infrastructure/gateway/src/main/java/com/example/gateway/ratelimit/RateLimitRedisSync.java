@@ -0,0 +1,128 @@
+package com.example.gateway.ratelimit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Background loop that keeps the local token buckets roughly consistent
+ * across gateway replicas.
+ *
+ * Requests never wait on Redis. Once per interval, each bucket's locally
+ * admitted count is pushed with INCRBY into a per-window cluster counter
+ * (Lettuce pipelines the whole batch on one connection), and any tokens
+ * consumed by other replicas are then removed from the local bucket.
+ * The same loop evicts idle buckets, whether or not Redis sync is enabled.
+ */
+@Component
+public class RateLimitRedisSync {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitRedisSync.class);
+    private static final String KEY_PREFIX = "gateway:ratelimit:";
+
+    private final TokenBucketRegistry registry;
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    @Value("${gateway.rate-limit.redis-sync.enabled:false}")
+    private boolean redisSyncEnabled;
+
+    @Value("${gateway.rate-limit.redis-sync.interval-ms:1000}")
+    private long syncIntervalMs;
+
+    @Value("${gateway.rate-limit.redis-sync.window-seconds:10}")
+    private long windowSeconds;
+
+    @Value("${gateway.rate-limit.idle-eviction-seconds:300}")
+    private long idleEvictionSeconds;
+
+    private Disposable loop;
+
+    public RateLimitRedisSync(TokenBucketRegistry registry, ReactiveStringRedisTemplate redisTemplate) {
+        this.registry = registry;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        Duration interval = Duration.ofMillis(Math.max(syncIntervalMs, 100));
+        loop = Flux.interval(interval, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> syncOnce()
+                        .onErrorResume(e -> {
+                            log.warn("Rate limit sync failed, continuing with local buckets: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+        log.info("Rate limit bucket sync started (redis={}, interval={}ms)", redisSyncEnabled, interval.toMillis());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (loop != null) {
+            loop.dispose();
+        }
+    }
+
+    private Mono<Void> syncOnce() {
+        long now = System.nanoTime();
+        registry.evictIdle(now, Duration.ofSeconds(idleEvictionSeconds).toNanos());
+
+        if (!redisSyncEnabled) {
+            registry.buckets().values().forEach(LocalTokenBucket::drainAdmitted);
+            return Mono.empty();
+        }
+
+        long window = System.currentTimeMillis() / (Math.max(windowSeconds, 1) * 1000L);
+        List<SyncItem> dirty = new ArrayList<>();
+        for (Map.Entry<String, LocalTokenBucket> entry : registry.buckets().entrySet()) {
+            LocalTokenBucket bucket = entry.getValue();
+            long delta = bucket.drainAdmitted();
+            if (bucket.syncWindow != window) {
+                bucket.syncWindow = window;
+                bucket.localInWindow = 0;
+                bucket.remoteSeenInWindow = 0;
+            }
+            if (delta > 0) {
+                bucket.localInWindow += delta;
+                dirty.add(new SyncItem(KEY_PREFIX + entry.getKey() + ":" + window, delta, bucket));
+            }
+        }
+
+        if (dirty.isEmpty()) {
+            return Mono.empty();
+        }
+
+        Duration keyTtl = Duration.ofSeconds(Math.max(windowSeconds, 1) * 2);
+        return Flux.fromIterable(dirty)
+                .flatMap(item -> redisTemplate.opsForValue().increment(item.redisKey(), item.delta())
+                        .flatMap(total -> (total == item.delta()
+                                ? redisTemplate.expire(item.redisKey(), keyTtl)
+                                : Mono.just(true)).thenReturn(total))
+                        .doOnNext(total -> applyRemote(item.bucket(), total)), 256)
+                .then();
+    }
+
+    private void applyRemote(LocalTokenBucket bucket, long clusterTotal) {
+        long remote = clusterTotal - bucket.localInWindow;
+        long newlySeen = remote - bucket.remoteSeenInWindow;
+        if (newlySeen > 0) {
+            bucket.remoteSeenInWindow = remote;
+            bucket.consumeRemote(newlySeen, System.nanoTime());
+        }
+    }
+
+    private record SyncItem(String redisKey, long delta, LocalTokenBucket bucket) {
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.gateway.ratelimit;
+
+import java.util.Map;
+
+/**
+ * Per-route rate limits, resolved from the route's {@code metadata.rate-limit}
+ * block in application.yml and falling back to the global defaults.
+ *
+ * <pre>
+ * metadata:
+ *   rate-limit:
+ *     enabled: true
+ *     ip:
+ *       capacity: 100
+ *       refill-per-second: 20
+ *     user:
+ *       capacity: 60
+ *       refill-per-second: 10
+ * </pre>
+ */
+record RouteRateLimits(boolean enabled, Limit ip, Limit user) {
+
+    static final String METADATA_KEY = "rate-limit";
+
+    record Limit(long capacity, double refillPerSecond) {
+        boolean isActive() {
+            return capacity > 0 && refillPerSecond > 0;
+        }
+    }
+
+    static RouteRateLimits fromMetadata(Map<String, Object> metadata, RouteRateLimits defaults) {
+        Object raw = metadata != null ? metadata.get(METADATA_KEY) : null;
+        if (!(raw instanceof Map<?, ?> config)) {
+            return defaults;
+        }
+
+        boolean enabled = parseBoolean(config.get("enabled"), defaults.enabled());
+        return new RouteRateLimits(enabled,
+                parseLimit(config.get("ip"), defaults.ip()),
+                parseLimit(config.get("user"), defaults.user()));
+    }
+
+    private static Limit parseLimit(Object raw, Limit fallback) {
+        if (!(raw instanceof Map<?, ?> config)) {
+            return fallback;
+        }
+        long capacity = (long) parseNumber(config.get("capacity"), fallback.capacity());
+        double refill = parseNumber(config.get("refill-per-second"), fallback.refillPerSecond());
+        return new Limit(capacity, refill);
+    }
+
+    private static double parseNumber(Object value, double fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static boolean parseBoolean(Object value, boolean fallback) {
+        return value != null ? Boolean.parseBoolean(String.valueOf(value).trim()) : fallback;
+    }
+}
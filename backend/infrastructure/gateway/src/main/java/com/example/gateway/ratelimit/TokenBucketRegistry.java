@@ -0,0 +1,79 @@
+package com.example.gateway.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory store of the gateway's token buckets, keyed by
+ * {@code routeId:ip:<address>} or {@code routeId:user:<id>}.
+ *
+ * At most {@code gateway.rate-limit.max-buckets} buckets are held. Once
+ * full, new subjects share one overflow bucket per route and scope until
+ * idle buckets are evicted, so rotating keys cannot grow the map without
+ * bound or escape the limit.
+ */
+@Component
+public class TokenBucketRegistry {
+
+    static final String OVERFLOW_SUBJECT = "*";
+
+    private final Map<String, LocalTokenBucket> buckets = new ConcurrentHashMap<>();
+    private final int maxBuckets;
+    private final Counter overflows;
+
+    public TokenBucketRegistry(MeterRegistry meterRegistry,
+                               @Value("${gateway.rate-limit.max-buckets:100000}") int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+        Gauge.builder("gateway.ratelimit.buckets", buckets, Map::size)
+                .description("Active rate limit buckets held in memory")
+                .register(meterRegistry);
+        this.overflows = Counter.builder("gateway.ratelimit.overflow")
+                .description("Requests limited through the shared overflow bucket because the registry was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Bucket for {@code prefix + subject}, or the prefix's shared overflow
+     * bucket when the registry is full.
+     */
+    LocalTokenBucket bucket(String prefix, String subject, RouteRateLimits.Limit limit, long now) {
+        String key = prefix + subject;
+        LocalTokenBucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxBuckets) {
+            overflows.increment();
+            key = prefix + OVERFLOW_SUBJECT;
+        }
+        return buckets.computeIfAbsent(key,
+                k -> new LocalTokenBucket(limit.capacity(), limit.refillPerSecond(), now));
+    }
+
+    Map<String, LocalTokenBucket> buckets() {
+        return buckets;
+    }
+
+    /**
+     * Drop buckets that are full again and have not been touched recently.
+     */
+    int evictIdle(long now, long idleNanos) {
+        int[] removed = {0};
+        buckets.forEach((key, bucket) -> {
+            if (bucket.isIdle(now, idleNanos) && buckets.remove(key, bucket)) {
+                removed[0]++;
+            }
+        });
+        return removed[0];
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.gateway.resilience;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-route circuit breaker and concurrency bulkhead in front of every
+ * downstream service.
+ *
+ * Each route gets its own breaker and bulkhead, named after the route id and
+ * configured from {@code metadata.resilience} (see {@link RouteResilience}) or
+ * the {@code gateway.resilience.*} defaults. Transport errors, timeouts and
+ * 5xx responses count as failures. While a breaker is open, or once a route
+ * has as many calls in flight as its bulkhead allows, requests are rejected
+ * immediately with a 503 JSON error so a stalled service cannot hold gateway
+ * connections that other routes need.
+ *
+ * Breaker and bulkhead state is exposed on {@code /actuator/circuitbreakers},
+ * {@code /actuator/bulkheads} and as {@code resilience4j_*} Prometheus metrics.
+ */
+@Component
+public class ResilienceFilter implements GlobalFilter, Ordered {
+
+    private static final Logger log = LoggerFactory.getLogger(ResilienceFilter.class);
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final MeterRegistry meterRegistry;
+    private final RouteResilience defaults;
+    private final Map<String, RouteGuard> guards = new ConcurrentHashMap<>();
+
+    public ResilienceFilter(CircuitBreakerRegistry circuitBreakerRegistry,
+                            BulkheadRegistry bulkheadRegistry,
+                            MeterRegistry meterRegistry,
+                            @Value("${gateway.resilience.enabled:true}") boolean enabled,
+                            @Value("${gateway.resilience.max-concurrent-calls:100}") int maxConcurrentCalls,
+                            @Value("${gateway.resilience.failure-rate-threshold:50}") float failureRateThreshold,
+                            @Value("${gateway.resilience.slow-call-threshold-ms:10000}") long slowCallThresholdMs,
+                            @Value("${gateway.resilience.slow-call-rate-threshold:100}") float slowCallRateThreshold,
+                            @Value("${gateway.resilience.minimum-calls:20}") int minimumCalls,
+                            @Value("${gateway.resilience.window-size:50}") int windowSize,
+                            @Value("${gateway.resilience.wait-in-open-seconds:30}") long waitInOpenSeconds) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.meterRegistry = meterRegistry;
+        this.defaults = new RouteResilience(enabled, maxConcurrentCalls, failureRateThreshold, slowCallThresholdMs,
+                slowCallRateThreshold, minimumCalls, windowSize, waitInOpenSeconds);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        RouteGuard guard = guards.computeIfAbsent(route.getId(),
+                id -> createGuard(id, RouteResilience.fromMetadata(route.getMetadata(), defaults)));
+        if (guard == RouteGuard.DISABLED) {
+            return chain.filter(exchange);
+        }
+
+        CircuitBreaker circuitBreaker = guard.circuitBreaker();
+        if (!circuitBreaker.tryAcquirePermission()) {
+            guard.circuitOpenRejections().increment();
+            log.debug("Circuit breaker for route {} is {}, rejecting request", route.getId(), circuitBreaker.getState());
+            return reject(exchange, "Service temporarily unavailable", guard.policy().waitInOpenSeconds());
+        }
+
+        Bulkhead bulkhead = guard.bulkhead();
+        if (!bulkhead.tryAcquirePermission()) {
+            circuitBreaker.releasePermission();
+            guard.bulkheadRejections().increment();
+            log.debug("Bulkhead for route {} is full, rejecting request", route.getId());
+            return reject(exchange, "Service is busy", 1);
+        }
+
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doOnSuccess(ignored -> {
+                    long duration = System.nanoTime() - start;
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    if (status != null && status.is5xxServerError()) {
+                        circuitBreaker.onError(duration, TimeUnit.NANOSECONDS,
+                                new DownstreamErrorException(route.getId(), status.value()));
+                    } else {
+                        circuitBreaker.onSuccess(duration, TimeUnit.NANOSECONDS);
+                    }
+                })
+                .doOnError(error -> circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, error))
+                .doOnCancel(circuitBreaker::releasePermission)
+                .doFinally(signal -> bulkhead.onComplete());
+    }
+
+    private RouteGuard createGuard(String routeId, RouteResilience policy) {
+        if (!policy.enabled()) {
+            return RouteGuard.DISABLED;
+        }
+
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(routeId, policy.circuitBreakerConfig());
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                log.warn("Circuit breaker for route {}: {}", routeId, event.getStateTransition()));
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(routeId, policy.bulkheadConfig());
+
+        return new RouteGuard(policy, circuitBreaker, bulkhead,
+                rejectionCounter(routeId, "circuit-open"),
+                rejectionCounter(routeId, "bulkhead-full"));
+    }
+
+    private Counter rejectionCounter(String routeId, String reason) {
+        return Counter.builder("gateway.resilience.rejected")
+                .tag("routeId", routeId)
+                .tag("reason", reason)
+                .description("Requests rejected by a route's circuit breaker or bulkhead")
+                .register(meterRegistry);
+    }
+
+    @EventListener(RefreshRoutesEvent.class)
+    public void onRoutesRefreshed() {
+        // Rebuild from the new route definitions on the next request
+        guards.keySet().forEach(routeId -> {
+            circuitBreakerRegistry.remove(routeId);
+            bulkheadRegistry.remove(routeId);
+        });
+        guards.clear();
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, String message, long retryAfter) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        byte[] body = ("{\"error\":\"" + message + "\",\"retryAfter\":" + retryAfter + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        DataBuffer buffer = response.bufferFactory().wrap(body);
+        return response.writeWith(Mono.just(buffer));
+    }
+
+    @Override
+    public int getOrder() {
+        // After the response cache and coalescing, so hits and collapsed requests never take a slot
+        return -60;
+    }
+
+    private record RouteGuard(RouteResilience policy,
+                              CircuitBreaker circuitBreaker,
+                              Bulkhead bulkhead,
+                              Counter circuitOpenRejections,
+                              Counter bulkheadRejections) {
+        static final RouteGuard DISABLED = new RouteGuard(null, null, null, null, null);
+    }
+
+    /**
+     * Recorded against the breaker when a downstream service answers with 5xx.
+     */
+    static final class DownstreamErrorException extends RuntimeException {
+        DownstreamErrorException(String routeId, int status) {
+            super("Route " + routeId + " returned " + status, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.gateway.resilience;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Per-route circuit breaker and bulkhead settings, resolved from the route's
+ * {@code metadata.resilience} block in application.yml and falling back to
+ * the global defaults.
+ *
+ * <pre>
+ * metadata:
+ *   response-timeout: 15000
+ *   connect-timeout: 2000
+ *   resilience:
+ *     enabled: true
+ *     max-concurrent-calls: 40
+ *     failure-rate-threshold: 50
+ *     slow-call-threshold-ms: 8000
+ *     slow-call-rate-threshold: 80
+ *     minimum-calls: 20
+ *     window-size: 50
+ *     wait-in-open-seconds: 30
+ * </pre>
+ *
+ * Timeouts use the gateway's own per-route {@code response-timeout} and
+ * {@code connect-timeout} metadata; a timed-out call counts as a breaker failure.
+ */
+record RouteResilience(boolean enabled,
+                       int maxConcurrentCalls,
+                       float failureRateThreshold,
+                       long slowCallThresholdMs,
+                       float slowCallRateThreshold,
+                       int minimumCalls,
+                       int windowSize,
+                       long waitInOpenSeconds) {
+
+    static final String METADATA_KEY = "resilience";
+
+    static RouteResilience fromMetadata(Map<String, Object> metadata, RouteResilience defaults) {
+        Object raw = metadata != null ? metadata.get(METADATA_KEY) : null;
+        if (!(raw instanceof Map<?, ?> config)) {
+            return defaults;
+        }
+
+        return new RouteResilience(
+                parseBoolean(config.get("enabled"), defaults.enabled()),
+                (int) parseNumber(config.get("max-concurrent-calls"), defaults.maxConcurrentCalls()),
+                (float) parseNumber(config.get("failure-rate-threshold"), defaults.failureRateThreshold()),
+                (long) parseNumber(config.get("slow-call-threshold-ms"), defaults.slowCallThresholdMs()),
+                (float) parseNumber(config.get("slow-call-rate-threshold"), defaults.slowCallRateThreshold()),
+                (int) parseNumber(config.get("minimum-calls"), defaults.minimumCalls()),
+                (int) parseNumber(config.get("window-size"), defaults.windowSize()),
+                (long) parseNumber(config.get("wait-in-open-seconds"), defaults.waitInOpenSeconds()));
+    }
+
+    CircuitBreakerConfig circuitBreakerConfig() {
+        return CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(Math.max(windowSize, 1))
+                .minimumNumberOfCalls(Math.max(minimumCalls, 1))
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(Duration.ofMillis(slowCallThresholdMs))
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .waitDurationInOpenState(Duration.ofSeconds(Math.max(waitInOpenSeconds, 1)))
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .permittedNumberOfCallsInHalfOpenState(5)
+                .build();
+    }
+
+    BulkheadConfig bulkheadConfig() {
+        // Never queue: a full bulkhead rejects immediately instead of holding the connection
+        return BulkheadConfig.custom()
+                .maxConcurrentCalls(Math.max(maxConcurrentCalls, 1))
+                .maxWaitDuration(Duration.ZERO)
+                .build();
+    }
+
+    private static double parseNumber(Object value, double fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static boolean parseBoolean(Object value, boolean fallback) {
+        return value != null ? Boolean.parseBoolean(String.valueOf(value).trim()) : fallback;
+    }
+}
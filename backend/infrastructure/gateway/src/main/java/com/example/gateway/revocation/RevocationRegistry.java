@@ -0,0 +1,114 @@
+package com.example.gateway.revocation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory replica of access token revocations published by the auth-server.
+ *
+ * Holds revoked JTIs (a Bloom filter in front of an exact map) and, per user,
+ * the lowest token version that is still valid. Every entry carries the time
+ * after which no token it could match is still unexpired, and is pruned then.
+ * Reads are lock-free; the rare writes are serialized so a rebuild never
+ * drops a concurrent update.
+ */
+@Component
+public class RevocationRegistry {
+
+    private final Map<String, Long> revokedJtis = new ConcurrentHashMap<>();
+    private final Map<Long, VersionFloor> versionFloors = new ConcurrentHashMap<>();
+    private final int expectedRevocations;
+    private final double falsePositiveRate;
+    private final Counter jtiRejections;
+    private final Counter versionRejections;
+    private final Counter bloomFalsePositives;
+
+    private volatile JtiBloomFilter bloomFilter;
+
+    public RevocationRegistry(MeterRegistry meterRegistry,
+                              @Value("${gateway.revocation.expected-revocations:10000}") int expectedRevocations,
+                              @Value("${gateway.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.bloomFilter = new JtiBloomFilter(expectedRevocations, falsePositiveRate);
+        this.jtiRejections = Counter.builder("gateway.revocation.rejected")
+                .tag("reason", "jti")
+                .description("Requests rejected because the token's JTI was revoked")
+                .register(meterRegistry);
+        this.versionRejections = Counter.builder("gateway.revocation.rejected")
+                .tag("reason", "version")
+                .description("Requests rejected because the token version is below the user's minimum")
+                .register(meterRegistry);
+        this.bloomFalsePositives = Counter.builder("gateway.revocation.bloom.false-positives")
+                .description("Bloom filter hits that were not in the exact revocation set")
+                .register(meterRegistry);
+        Gauge.builder("gateway.revocation.jtis", revokedJtis, Map::size)
+                .description("Revoked JTIs currently replicated in the gateway")
+                .register(meterRegistry);
+        Gauge.builder("gateway.revocation.version-floors", versionFloors, Map::size)
+                .description("Users with a replicated minimum token version")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if the token was revoked by JTI or by a token version bump
+     */
+    public boolean isRevoked(String jti, Long userId, Long tokenVersion) {
+        long now = System.currentTimeMillis() / 1000;
+
+        if (userId != null && tokenVersion != null) {
+            VersionFloor floor = versionFloors.get(userId);
+            if (floor != null && floor.expiresAt() >= now && tokenVersion < floor.minVersion()) {
+                versionRejections.increment();
+                return true;
+            }
+        }
+
+        if (jti != null && bloomFilter.mightContain(jti)) {
+            if (revokedJtis.containsKey(jti)) {
+                jtiRejections.increment();
+                return true;
+            }
+            bloomFalsePositives.increment();
+        }
+        return false;
+    }
+
+    synchronized void revokeJti(String jti, long expiresAt) {
+        revokedJtis.merge(jti, expiresAt, Math::max);
+        bloomFilter.add(jti);
+    }
+
+    synchronized void raiseVersionFloor(Long userId, long minVersion, long expiresAt) {
+        versionFloors.merge(userId, new VersionFloor(minVersion, expiresAt),
+                (current, update) -> update.minVersion() >= current.minVersion() ? update : current);
+    }
+
+    /**
+     * Merge a full snapshot from Redis, drop expired entries and rebuild the
+     * Bloom filter from what is left.
+     */
+    synchronized void reconcile(Map<String, Long> jtis, Map<Long, VersionFloor> floors) {
+        jtis.forEach((jti, expiresAt) -> revokedJtis.merge(jti, expiresAt, Math::max));
+        floors.forEach((userId, floor) -> versionFloors.merge(userId, floor,
+                (current, update) -> update.minVersion() >= current.minVersion() ? update : current));
+
+        long now = System.currentTimeMillis() / 1000;
+        revokedJtis.values().removeIf(expiresAt -> expiresAt < now);
+        versionFloors.values().removeIf(floor -> floor.expiresAt() < now);
+
+        JtiBloomFilter rebuilt = new JtiBloomFilter(Math.max(expectedRevocations, revokedJtis.size() * 2),
+                falsePositiveRate);
+        revokedJtis.keySet().forEach(rebuilt::add);
+        bloomFilter = rebuilt;
+    }
+
+    record VersionFloor(long minVersion, long expiresAt) {
+    }
+}
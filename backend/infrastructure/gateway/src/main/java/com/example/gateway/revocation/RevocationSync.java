@@ -0,0 +1,133 @@
+package com.example.gateway.revocation;
+
+import com.example.gateway.revocation.RevocationRegistry.VersionFloor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps {@link RevocationRegistry} in step with the auth-server.
+ *
+ * Revocations arrive on the {@code auth:revocations} channel and are applied
+ * immediately. Pub/sub is fire-and-forget, so a periodic resync also reloads
+ * the auth-server's replay sorted sets; a gateway that missed messages or
+ * just started converges within one interval. If Redis is unavailable the
+ * last known state is kept and the auth-server remains the final check.
+ */
+@Component
+public class RevocationSync {
+
+    private static final Logger log = LoggerFactory.getLogger(RevocationSync.class);
+
+    // Shared with the auth-server's RevocationPublisher
+    private static final String CHANNEL = "auth:revocations";
+    private static final String REVOKED_JTIS_KEY = "revocations:jti";
+    private static final String USER_VERSION_FLOORS_KEY = "revocations:user-version";
+
+    private final RevocationRegistry registry;
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    @Value("${gateway.revocation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.revocation.resync-interval-ms:10000}")
+    private long resyncIntervalMs;
+
+    private Disposable subscription;
+    private Disposable resyncLoop;
+
+    public RevocationSync(RevocationRegistry registry, ReactiveStringRedisTemplate redisTemplate) {
+        this.registry = registry;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Gateway token revocation sync disabled");
+            return;
+        }
+
+        // Deferred: creating the listener connects eagerly, and Redis may not be up yet
+        subscription = Flux.defer(() -> redisTemplate.listenToChannel(CHANNEL))
+                .doOnNext(message -> apply(message.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Revocation channel subscription lost, retrying: {}",
+                                signal.failure().getMessage())))
+                .subscribe();
+
+        Duration interval = Duration.ofMillis(Math.max(resyncIntervalMs, 1000));
+        resyncLoop = Flux.interval(Duration.ZERO, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> resync()
+                        .onErrorResume(e -> {
+                            log.warn("Revocation resync failed, keeping last known state: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+        log.info("Gateway token revocation sync started (resync every {}ms)", interval.toMillis());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        if (resyncLoop != null) {
+            resyncLoop.dispose();
+        }
+    }
+
+    private void apply(String message) {
+        try {
+            String[] parts = message.split(":");
+            if (parts.length == 3 && "jti".equals(parts[0])) {
+                registry.revokeJti(parts[1], Long.parseLong(parts[2]));
+            } else if (parts.length == 4 && "ver".equals(parts[0])) {
+                registry.raiseVersionFloor(Long.parseLong(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+            } else {
+                log.debug("Ignoring unknown revocation message: {}", message);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed revocation message: {}", message);
+        }
+    }
+
+    private Mono<Void> resync() {
+        Range<Double> live = Range.rightUnbounded(Range.Bound.inclusive((double) (System.currentTimeMillis() / 1000)));
+
+        Mono<Map<String, Long>> jtis = redisTemplate.opsForZSet()
+                .rangeByScoreWithScores(REVOKED_JTIS_KEY, live)
+                .collectMap(TypedTuple::getValue, tuple -> tuple.getScore().longValue());
+
+        Mono<Map<Long, VersionFloor>> floors = redisTemplate.opsForZSet()
+                .rangeByScoreWithScores(USER_VERSION_FLOORS_KEY, live)
+                .collect(HashMap::new, (Map<Long, VersionFloor> result, TypedTuple<String> tuple) -> {
+                    String[] parts = tuple.getValue().split(":");
+                    if (parts.length != 2) {
+                        return;
+                    }
+                    VersionFloor floor = new VersionFloor(Long.parseLong(parts[1]), tuple.getScore().longValue());
+                    result.merge(Long.parseLong(parts[0]), floor,
+                            (a, b) -> b.minVersion() >= a.minVersion() ? b : a);
+                });
+
+        return jtis.flatMap(revoked -> floors.doOnNext(versions -> registry.reconcile(revoked, versions)))
+                .then();
+    }
+}
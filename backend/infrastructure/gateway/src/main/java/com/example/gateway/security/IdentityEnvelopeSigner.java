@@ -0,0 +1,94 @@
+package com.example.gateway.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the signed identity envelope forwarded to downstream services in
+ * the {@code X-Identity} header.
+ *
+ * Format: {@code base64url(json) + "." + base64url(HMAC-SHA256(json))}, where
+ * the JSON carries uid, sub, root, ver, svc and a short exp (epoch seconds).
+ * Downstream services verify it with the shared secret instead of calling
+ * the auth-server for every root or service-access check (call-service and
+ * marketing-service {@code GatewayIdentityVerifier}).
+ *
+ * The secret ({@code IDENTITY_SECRET}) has no default. Startup fails when it
+ * is shorter than 32 characters or equal to the JWT secret, so one key never
+ * signs both formats.
+ */
+@Component
+public class IdentityEnvelopeSigner {
+
+    public static final String IDENTITY_HEADER = "X-Identity";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String ROOT_USERNAME = "root";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${security.identity.secret}")
+    private String identitySecret;
+
+    @Value("${security.jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${security.identity.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    private SecretKeySpec signingKey;
+
+    public IdentityEnvelopeSigner(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (identitySecret.length() < 32) {
+            throw new IllegalStateException("IDENTITY_SECRET must be at least 32 characters");
+        }
+        if (identitySecret.equals(jwtSecret)) {
+            throw new IllegalStateException("IDENTITY_SECRET must differ from JWT_SECRET");
+        }
+        this.signingKey = new SecretKeySpec(identitySecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    }
+
+    /**
+     * Create a signed envelope for the verified token claims.
+     */
+    public String sign(Claims claims, Long userId) {
+        String username = claims.getSubject();
+        Number tokenVersion = claims.get("ver", Number.class);
+        Object services = claims.get("svc");
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("uid", userId);
+        payload.put("sub", username);
+        payload.put("root", ROOT_USERNAME.equals(username));
+        payload.put("ver", tokenVersion != null ? tokenVersion.longValue() : null);
+        payload.put("svc", services instanceof List<?> list ? list : List.of());
+        payload.put("exp", System.currentTimeMillis() / 1000 + ttlSeconds);
+
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(payload);
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            return ENCODER.encodeToString(json) + "." + ENCODER.encodeToString(mac.doFinal(json));
+        } catch (JsonProcessingException | GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign identity envelope", e);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.gateway.security;
 
+import com.example.gateway.revocation.RevocationRegistry;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,18 +14,23 @@ import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.security.Key;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Gateway JWT Authentication Filter.
  * 
  * Validates JWT tokens from cookies and forwards user context
- * to downstream microservices via HTTP headers.
+ * to downstream microservices via HTTP headers. Tokens revoked by the
+ * auth-server (see {@link RevocationRegistry}) are rejected with 401,
+ * except on /api/auth/ paths where the auth-server handles them itself.
  */
 @Component
 public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
@@ -30,14 +38,40 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
     private static final Logger log = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
     private static final String ACCESS_TOKEN_COOKIE = "access_token";
 
+    /** Exchange attribute holding the authenticated user's id (Long), for later filters. */
+    public static final String USER_ID_ATTR = JwtAuthenticationFilter.class.getName() + ".userId";
+
     @Value("${security.jwt.secret:mySecretKey123456789012345678901234567890}")
     private String jwtSecret;
 
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final IdentityEnvelopeSigner identityEnvelopeSigner;
+    private final RevocationRegistry revocationRegistry;
+
+    private JwtParser jwtParser;
+
+    public JwtAuthenticationFilter(VerifiedTokenCache verifiedTokenCache,
+                                   IdentityEnvelopeSigner identityEnvelopeSigner,
+                                   RevocationRegistry revocationRegistry) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.identityEnvelopeSigner = identityEnvelopeSigner;
+        this.revocationRegistry = revocationRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        // The parser is immutable and thread-safe; build it once instead of per request
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8)))
+                .build();
+    }
+
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        exchange = stripTrustedHeaders(exchange);
         ServerHttpRequest request = exchange.getRequest();
 
-        log.info("JwtAuthenticationFilter processing: {} {}", request.getMethod(), request.getURI().getPath());
+        log.debug("JwtAuthenticationFilter processing: {} {}", request.getMethod(), request.getURI().getPath());
 
         // Skip authentication for public endpoints
         String path = request.getURI().getPath();
@@ -47,19 +81,27 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
 
         try {
             String token = extractToken(request);
-            log.info("Extracted token: {}", token != null ? "present" : "missing");
 
             if (token != null) {
                 Claims claims = validateToken(token);
+                if (claims != null && isRevoked(claims)) {
+                    log.debug("Rejecting revoked token for user {}", claims.getSubject());
+                    // Logout and refresh must still reach the auth-server with a revoked access token
+                    return path.startsWith("/api/auth/") ? chain.filter(exchange) : rejectRevoked(exchange);
+                }
                 if (claims != null) {
+                    Number uid = claims.get("uid", Number.class);
+                    if (uid != null) {
+                        exchange.getAttributes().put(USER_ID_ATTR, uid.longValue());
+                    }
                     ServerHttpRequest mutatedRequest = forwardUserContext(request, claims);
-                    log.info("Forwarding user context for user {}", claims.getSubject());
+                    log.debug("Forwarding user context for user {}", claims.getSubject());
                     return chain.filter(exchange.mutate().request(mutatedRequest).build());
                 } else {
-                    log.warn("Token validation failed");
+                    log.debug("Token validation failed");
                 }
             } else {
-                log.warn("No token found in request");
+                log.debug("No token found in request");
             }
         } catch (Exception e) {
             log.error("JWT authentication failed: {}", e.getMessage(), e);
@@ -68,6 +110,23 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
         return chain.filter(exchange);
     }
 
+    /**
+     * Headers that downstream services trust must only ever be set by the gateway.
+     */
+    private ServerWebExchange stripTrustedHeaders(ServerWebExchange exchange) {
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        if (!headers.containsKey(IdentityEnvelopeSigner.IDENTITY_HEADER) && !headers.containsKey("X-Root-User")) {
+            return exchange;
+        }
+        ServerHttpRequest stripped = exchange.getRequest().mutate()
+                .headers(h -> {
+                    h.remove(IdentityEnvelopeSigner.IDENTITY_HEADER);
+                    h.remove("X-Root-User");
+                })
+                .build();
+        return exchange.mutate().request(stripped).build();
+    }
+
     private boolean isPublicEndpoint(String path) {
         return path.startsWith("/api/auth/login") ||
                 path.startsWith("/api/auth/register") ||
@@ -91,18 +150,19 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
     }
 
     private Claims validateToken(String token) {
+        // Previously verified tokens skip signature verification entirely
+        Claims cached = verifiedTokenCache.get(token);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
-            log.info("Validating token with secret length: {}", jwtSecret.length());
-            Key key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            log.info("Token validation successful for user: {}", claims.getSubject());
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            verifiedTokenCache.put(token, claims);
+            log.debug("Token validation successful for user: {}", claims.getSubject());
             return claims;
         } catch (JwtException e) {
-            log.error("Invalid JWT token: {}", e.getMessage());
+            log.debug("Invalid JWT token: {}", e.getMessage());
             return null;
         } catch (Exception e) {
             log.error("Error validating JWT token: {}", e.getMessage(), e);
@@ -110,6 +170,22 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
         }
     }
 
+    private boolean isRevoked(Claims claims) {
+        Number uid = claims.get("uid", Number.class);
+        Number version = claims.get("ver", Number.class);
+        return revocationRegistry.isRevoked(claims.getId(),
+                uid != null ? uid.longValue() : null,
+                version != null ? version.longValue() : null);
+    }
+
+    private Mono<Void> rejectRevoked(ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.UNAUTHORIZED);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        byte[] body = "{\"error\":\"Token has been revoked\"}".getBytes(StandardCharsets.UTF_8);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
     private ServerHttpRequest forwardUserContext(ServerHttpRequest request, Claims claims) {
         String username = claims.getSubject();
         Number userIdNumber = claims.get("uid", Number.class);
@@ -120,6 +196,7 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
             return request.mutate()
                     .header("X-User-Id", userId != null ? userId.toString() : "")
                     .header("X-Username", username)
+                    .header(IdentityEnvelopeSigner.IDENTITY_HEADER, identityEnvelopeSigner.sign(claims, userId))
                     .build();
         }
 
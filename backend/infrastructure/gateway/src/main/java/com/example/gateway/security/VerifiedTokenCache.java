@@ -0,0 +1,149 @@
+package com.example.gateway.security;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache of already-verified JWT claims.
+ *
+ * The browser sends the same access token cookie on every call during the
+ * token's lifetime, so the gateway only needs to verify its signature once.
+ * Entries are keyed by a SHA-256 hash of the token (the raw token is never
+ * stored) and expire at the token's own {@code exp} claim.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final Base64.Encoder KEY_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final Map<String, CachedClaims> entries = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public VerifiedTokenCache(MeterRegistry meterRegistry,
+                              @Value("${security.jwt.cache.enabled:true}") boolean enabled,
+                              @Value("${security.jwt.cache.max-size:10000}") int maxSize) {
+        this.enabled = enabled;
+        this.maxSize = Math.max(maxSize, 1);
+        this.hits = Counter.builder("gateway.jwt.cache")
+                .tag("result", "hit")
+                .description("Access tokens served from the verified-token cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("gateway.jwt.cache")
+                .tag("result", "miss")
+                .description("Access tokens that required signature verification")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("gateway.jwt.cache.evictions")
+                .description("Verified-token cache entries removed before or at expiry")
+                .register(meterRegistry);
+        Gauge.builder("gateway.jwt.cache.size", entries, Map::size)
+                .description("Current number of cached verified tokens")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Return cached claims for the token, or null if it must be verified.
+     */
+    public Claims get(String token) {
+        if (!enabled) {
+            return null;
+        }
+
+        String key = hash(token);
+        CachedClaims cached = entries.get(key);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (cached.isExpired(System.currentTimeMillis())) {
+            if (entries.remove(key, cached)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return cached.claims();
+    }
+
+    /**
+     * Remember the claims of a token whose signature has just been verified.
+     * Tokens without an expiration are never cached.
+     */
+    public void put(String token, Claims claims) {
+        if (!enabled || claims == null) {
+            return;
+        }
+
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long expiresAt = expiration.getTime();
+        if (expiresAt <= now) {
+            return;
+        }
+
+        if (entries.size() >= maxSize) {
+            evict(now);
+        }
+        entries.put(hash(token), new CachedClaims(claims, expiresAt));
+    }
+
+    /**
+     * Drop expired entries first; if the cache is still full, drop arbitrary
+     * entries until there is roughly 10% headroom again.
+     */
+    private void evict(long now) {
+        Iterator<CachedClaims> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+
+        int target = maxSize - Math.max(maxSize / 10, 1);
+        it = entries.values().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return KEY_ENCODER.encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record CachedClaims(Claims claims, long expiresAtMillis) {
+        boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+    }
+}
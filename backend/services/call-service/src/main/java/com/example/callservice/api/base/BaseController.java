@@ -1,5 +1,6 @@
 package com.example.callservice.api.base;
 
+import com.example.callservice.service.shared.GatewayIdentityVerifier;
 import com.example.callservice.service.shared.PermissionCheckService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
@@ -13,6 +14,7 @@ import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.util.Map;
+import java.util.Optional;
 
 public class BaseController {
 
@@ -24,6 +26,9 @@ public class BaseController {
     @Autowired
     protected RestTemplate restTemplate;
 
+    @Autowired
+    protected GatewayIdentityVerifier gatewayIdentityVerifier;
+
     @Value("${user.service.url:http://localhost:8080}")
     protected String userServiceUrl;
 
@@ -89,6 +94,11 @@ public class BaseController {
         if (hasRootHeaderFlag()) {
             return true;
         }
+        // Signed gateway identity answers locally; only fall back to the auth-server without it
+        Optional<GatewayIdentityVerifier.GatewayIdentity> identity = gatewayIdentityVerifier.currentFor(userId);
+        if (identity.isPresent()) {
+            return identity.get().root();
+        }
         try {
             String url = userServiceUrl + "/api/users/" + userId + "/username";
             String username = restTemplate.getForObject(url, String.class);
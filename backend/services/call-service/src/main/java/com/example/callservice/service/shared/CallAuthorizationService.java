@@ -19,6 +19,9 @@ public class CallAuthorizationService {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private GatewayIdentityVerifier gatewayIdentityVerifier;
+
     @Value("${user.service.url:http://localhost:8080}")
     private String userServiceUrl;
 
@@ -29,6 +32,11 @@ public class CallAuthorizationService {
             return false;
         }
 
+        Optional<GatewayIdentityVerifier.GatewayIdentity> identity = gatewayIdentityVerifier.currentFor(userId);
+        if (identity.isPresent()) {
+            return identity.get().root();
+        }
+
         try {
             String url = userServiceUrl + "/api/users/" + userId + "/username";
             String username = restTemplate.getForObject(url, String.class);
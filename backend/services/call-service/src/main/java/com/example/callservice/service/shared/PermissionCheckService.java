@@ -9,6 +9,7 @@ import org.springframework.web.client.RestTemplate;
 import com.example.callservice.service.permission.PermissionService;
 
 import java.util.Map;
+import java.util.Optional;
 
 @Service
 public class PermissionCheckService {
@@ -17,13 +18,16 @@ public class PermissionCheckService {
     
     private final RestTemplate restTemplate;
     private final PermissionService permissionService;
+    private final GatewayIdentityVerifier gatewayIdentityVerifier;
     
     @Value("${user.service.url:http://localhost:8081}")
     private String userServiceUrl;
     
-    public PermissionCheckService(RestTemplate restTemplate, PermissionService permissionService) {
+    public PermissionCheckService(RestTemplate restTemplate, PermissionService permissionService,
+                                  GatewayIdentityVerifier gatewayIdentityVerifier) {
         this.restTemplate = restTemplate;
         this.permissionService = permissionService;
+        this.gatewayIdentityVerifier = gatewayIdentityVerifier;
     }
     
     public boolean hasPermission(Long userId, String permissionCode) {
@@ -49,6 +53,11 @@ public class PermissionCheckService {
                 logger.debug("User {} is root user, granting all service access", userId);
                 return true;
             }
+
+            Optional<GatewayIdentityVerifier.GatewayIdentity> identity = gatewayIdentityVerifier.currentFor(userId);
+            if (identity.isPresent()) {
+                return identity.get().hasService(serviceKey);
+            }
             
             String url = userServiceUrl + "/api/rbac/check-service-access";
             Map<String, Object> request = Map.of(
@@ -80,6 +89,10 @@ public class PermissionCheckService {
     }
 
     private boolean isRootUser(Long userId) {
+        Optional<GatewayIdentityVerifier.GatewayIdentity> identity = gatewayIdentityVerifier.currentFor(userId);
+        if (identity.isPresent()) {
+            return identity.get().root();
+        }
         try {
             String url = userServiceUrl + "/api/users/" + userId + "/username";
             String username = restTemplate.getForObject(url, String.class);
@@ -3,14 +3,18 @@ package com.example.marketingservice.controller.goods;
 import com.example.marketingservice.controller.base.BaseController;
 import com.example.marketingservice.dto.goods.BulkGoodsResponse;
 import com.example.marketingservice.dto.goods.GoodsDashboardStatsResponse;
+import com.example.marketingservice.dto.goods.GoodsImportJobResponse;
 import com.example.marketingservice.dto.goods.OptimizedBulkGoodsRequest;
 import com.example.marketingservice.dto.goods.MarketingGoodsShipmentResponse;
 import com.example.marketingservice.dto.goods.MarketingGoodsShipmentUpdateRequest;
 import com.example.marketingservice.dto.goods.UserGoodsRecordRequest;
+import com.example.marketingservice.service.goods.GoodsImportJobService;
 import com.example.marketingservice.service.goods.MarketingGoodsShipmentService;
 import com.example.marketingservice.service.userassignment.MarketingUserAssignmentService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,7 +25,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -31,11 +37,13 @@ public class MarketingGoodsShipmentController extends BaseController {
 
     private final MarketingGoodsShipmentService shipmentService;
     private final MarketingUserAssignmentService userAssignmentService;
+    private final GoodsImportJobService importJobService;
 
     public MarketingGoodsShipmentController(MarketingGoodsShipmentService shipmentService,
-            MarketingUserAssignmentService userAssignmentService) {
+            MarketingUserAssignmentService userAssignmentService, GoodsImportJobService importJobService) {
         this.shipmentService = shipmentService;
         this.userAssignmentService = userAssignmentService;
+        this.importJobService = importJobService;
     }
 
     @PostMapping
@@ -49,15 +57,60 @@ public class MarketingGoodsShipmentController extends BaseController {
                         "accepted", accepted));
     }
 
+    /**
+     * Records a bulk upload. Large uploads are queued as a background job:
+     * the response is 202 with the job's status, to be polled at
+     * {@code /bulk/jobs/{jobId}}.
+     */
     @PostMapping("/bulk")
-    public ResponseEntity<BulkGoodsResponse> recordOptimizedBulk(@Valid @RequestBody OptimizedBulkGoodsRequest request,
+    public ResponseEntity<?> recordOptimizedBulk(@Valid @RequestBody OptimizedBulkGoodsRequest request,
             HttpServletRequest httpRequest) {
         checkPermission(httpRequest, "goods.create");
         Long creatorId = requireUserId(httpRequest);
+        if (importJobService.shouldRunAsJob(request.getRecords().size())) {
+            return jobAccepted(importJobService.submit(request.getSendDate(), request.getRecords(), creatorId));
+        }
         BulkGoodsResponse response = shipmentService.recordOptimizedBatch(request, creatorId);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Imports a CSV (.csv or .txt) or XLSX file with one member ID and total goods per
+     * row (an optional header row is skipped). The file is streamed in the
+     * background; the response is 202 with the job's status.
+     */
+    @PostMapping(value = "/bulk/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadBulk(@RequestParam("file") MultipartFile file,
+            @RequestParam LocalDate sendDate,
+            HttpServletRequest httpRequest) {
+        checkPermission(httpRequest, "goods.create");
+        Long creatorId = requireUserId(httpRequest);
+        try {
+            return jobAccepted(importJobService.submitUpload(sendDate, file, creatorId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(
+                    java.util.Map.of("error", "Could not read the file: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/bulk/jobs/{jobId}")
+    public ResponseEntity<GoodsImportJobResponse> getImportJob(@PathVariable String jobId,
+            HttpServletRequest httpRequest) {
+        checkPermission(httpRequest, "goods.create");
+        Long userId = requireUserId(httpRequest);
+        return importJobService.getStatus(jobId, userId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private ResponseEntity<?> jobAccepted(java.util.Optional<GoodsImportJobResponse> job) {
+        return job.<ResponseEntity<?>>map(status -> ResponseEntity.accepted().body(status))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(
+                        java.util.Map.of("error", "Too many imports in progress, please retry later")));
+    }
+
     @GetMapping
     public Object listRecent(
             @RequestParam(required = false) Long memberId,
@@ -0,0 +1,141 @@
+package com.example.marketingservice.dto.goods;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Progress of a background goods import job. {@code etaSeconds} is null
+ * until the first chunk finishes and once the job is done.
+ */
+public class GoodsImportJobResponse {
+
+    private String jobId;
+    private String status;
+    private int totalRecords;
+    private int processedRecords;
+    private int successfulRecords;
+    private int failedRecords;
+    private int totalChunks;
+    private int completedChunks;
+    private double recordsPerSecond;
+    private Long etaSeconds;
+    private List<String> errors;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    public GoodsImportJobResponse() {
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getTotalRecords() {
+        return totalRecords;
+    }
+
+    public void setTotalRecords(int totalRecords) {
+        this.totalRecords = totalRecords;
+    }
+
+    public int getProcessedRecords() {
+        return processedRecords;
+    }
+
+    public void setProcessedRecords(int processedRecords) {
+        this.processedRecords = processedRecords;
+    }
+
+    public int getSuccessfulRecords() {
+        return successfulRecords;
+    }
+
+    public void setSuccessfulRecords(int successfulRecords) {
+        this.successfulRecords = successfulRecords;
+    }
+
+    public int getFailedRecords() {
+        return failedRecords;
+    }
+
+    public void setFailedRecords(int failedRecords) {
+        this.failedRecords = failedRecords;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+
+    public int getCompletedChunks() {
+        return completedChunks;
+    }
+
+    public void setCompletedChunks(int completedChunks) {
+        this.completedChunks = completedChunks;
+    }
+
+    public double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public void setRecordsPerSecond(double recordsPerSecond) {
+        this.recordsPerSecond = recordsPerSecond;
+    }
+
+    public Long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public void setEtaSeconds(Long etaSeconds) {
+        this.etaSeconds = etaSeconds;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(LocalDateTime submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
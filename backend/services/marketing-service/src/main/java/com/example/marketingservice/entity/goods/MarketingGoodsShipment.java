@@ -9,7 +9,9 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "marketing_goods_shipments", indexes = {
+@Table(name = "marketing_goods_shipments", uniqueConstraints = {
+        @UniqueConstraint(name = MarketingGoodsShipment.MEMBER_DATE_KEY, columnNames = {"member_id", "send_date"})
+}, indexes = {
         @Index(name = "idx_goods_shipment_member_date", columnList = "member_id, send_date"),
         @Index(name = "idx_goods_shipment_member", columnList = "member_id"),
         @Index(name = "idx_goods_shipment_date", columnList = "send_date"),
@@ -18,6 +20,11 @@ import java.time.LocalDateTime;
 })
 public class MarketingGoodsShipment {
 
+    /**
+     * One shipment row per member and day; the conflict target of the bulk upsert.
+     */
+    public static final String MEMBER_DATE_KEY = "uk_goods_shipment_member_date";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 public interface VipMemberRepository extends JpaRepository<VipMember, Long>, JpaSpecificationExecutor<VipMember> {
@@ -20,6 +21,9 @@ public interface VipMemberRepository extends JpaRepository<VipMember, Long>, Jpa
 
         VipMember findByPhone(String phone);
 
+        @Query("SELECT v.id FROM VipMember v WHERE v.id IN :ids")
+        List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
         // Optimized queries for pagination
         @Query(value = "SELECT v.* FROM marketing_vip_members v WHERE v.branch_id = :branchId ORDER BY v.member_created_at DESC LIMIT :limit OFFSET :offset", nativeQuery = true)
         List<VipMember> findByBranchIdPaginated(@Param("branchId") Long branchId, @Param("offset") int offset,
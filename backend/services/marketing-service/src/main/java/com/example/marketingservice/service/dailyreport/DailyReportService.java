@@ -6,6 +6,8 @@ import com.example.marketingservice.entity.dailyreport.DailyReport;
 import com.example.marketingservice.entity.dailyreport.DailyReportItem;
 import com.example.marketingservice.repository.dailyreport.DailyReportRepository;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -16,6 +18,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -23,6 +26,11 @@ import java.util.stream.Collectors;
 @Transactional
 public class DailyReportService {
 
+    private static final Logger logger = LoggerFactory.getLogger(DailyReportService.class);
+
+    // Cached for users the auth-server returned without a phone, so they are not looked up again
+    private static final String NO_PHONE = "";
+
     @Autowired
     private DailyReportRepository dailyReportRepository;
 
@@ -37,20 +45,9 @@ public class DailyReportService {
 
     public List<DailyReportDto> getAllReports() {
         List<DailyReport> reports = dailyReportRepository.findAllByOrderByCreatedAtDesc();
+        preloadUsers(reports);
         return reports.stream()
-                .map(report -> {
-                    // Try to get user ID from username for existing reports
-                    Integer userId = null;
-                    try {
-                        String url = userServiceUrl + "/api/users/username/" + report.getCreatedBy() + "/id";
-                        userId = restTemplate.getForObject(url, Integer.class);
-                    } catch (Exception e) {
-                        // Log error but continue with null userId
-                        System.err
-                                .println("Error fetching user ID for " + report.getCreatedBy() + ": " + e.getMessage());
-                    }
-                    return convertToDto(report, userId);
-                })
+                .map(this::convertToDto)
                 .collect(Collectors.toList());
     }
 
@@ -73,39 +70,17 @@ public class DailyReportService {
 
     public List<DailyReportDto> getReportsByDate(String reportDate) {
         List<DailyReport> reports = dailyReportRepository.findByReportDateOrderByReportDateDesc(reportDate);
+        preloadUsers(reports);
         return reports.stream()
-                .map(report -> {
-                    // Try to get user ID from username for existing reports
-                    Integer userId = null;
-                    try {
-                        String url = userServiceUrl + "/api/users/username/" + report.getCreatedBy() + "/id";
-                        userId = restTemplate.getForObject(url, Integer.class);
-                    } catch (Exception e) {
-                        // Log error but continue with null userId
-                        System.err
-                                .println("Error fetching user ID for " + report.getCreatedBy() + ": " + e.getMessage());
-                    }
-                    return convertToDto(report, userId);
-                })
+                .map(this::convertToDto)
                 .collect(Collectors.toList());
     }
 
     public List<DailyReportDto> getReportsByCreatedBy(String createdBy) {
         List<DailyReport> reports = dailyReportRepository.findByCreatedByOrderByCreatedAtDesc(createdBy);
+        preloadUsers(reports);
         return reports.stream()
-                .map(report -> {
-                    // Try to get user ID from username for existing reports
-                    Integer userId = null;
-                    try {
-                        String url = userServiceUrl + "/api/users/username/" + report.getCreatedBy() + "/id";
-                        userId = restTemplate.getForObject(url, Integer.class);
-                    } catch (Exception e) {
-                        // Log error but continue with null userId
-                        System.err
-                                .println("Error fetching user ID for " + report.getCreatedBy() + ": " + e.getMessage());
-                    }
-                    return convertToDto(report, userId);
-                })
+                .map(this::convertToDto)
                 .collect(Collectors.toList());
     }
 
@@ -184,6 +159,40 @@ public class DailyReportService {
         return "report_" + timestamp + "_" + UUID.randomUUID().toString().substring(0, 8);
     }
 
+    /**
+     * Resolve the creators of a list of reports with one batch call to the
+     * auth-server and seed the name/phone caches, instead of looking up each
+     * row's user ID and name separately.
+     */
+    private void preloadUsers(List<DailyReport> reports) {
+        List<String> usernames = reports.stream()
+                .map(DailyReport::getCreatedBy)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        if (usernames.isEmpty()) {
+            return;
+        }
+
+        try {
+            String url = userServiceUrl + "/api/users/batch";
+            @SuppressWarnings("unchecked")
+            Map<String, Object> response = restTemplate.postForObject(url, Map.of("usernames", usernames), Map.class);
+            if (response != null && response.get("users") instanceof List<?> users) {
+                for (Object item : users) {
+                    if (item instanceof Map<?, ?> user && user.get("username") instanceof String username) {
+                        Object fullName = user.get("fullName");
+                        userFullNameCache.put(username, fullName instanceof String ? (String) fullName : username);
+                        userPhoneCache.put(username, user.get("phone") instanceof String phone ? phone : NO_PHONE);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Error fetching {} users in batch, falling back to per-user lookups: {}",
+                    usernames.size(), e.getMessage());
+        }
+    }
+
     private String getUsernameById(Integer userId) {
         if (userId == null)
             return null;
@@ -227,7 +236,7 @@ public class DailyReportService {
             return null;
 
         // Check cache first
-        return userPhoneCache.computeIfAbsent(username, user -> {
+        String phone = userPhoneCache.computeIfAbsent(username, user -> {
             try {
                 String url = userServiceUrl + "/api/users/username/" + user + "/fullname";
                 @SuppressWarnings("unchecked")
@@ -245,6 +254,7 @@ public class DailyReportService {
             }
             return null; // Return null if phone not found
         });
+        return NO_PHONE.equals(phone) ? null : phone;
     }
 
     private DailyReportDto convertToDto(DailyReport report) {
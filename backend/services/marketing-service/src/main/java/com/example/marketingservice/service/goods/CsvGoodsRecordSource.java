@@ -0,0 +1,95 @@
+package com.example.marketingservice.service.goods;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Goods records from a CSV file (UTF-8, optional BOM). The delimiter is
+ * whichever of comma, semicolon or tab is most frequent on the first line;
+ * values may be double-quoted.
+ */
+class CsvGoodsRecordSource extends FileGoodsRecordSource {
+
+    CsvGoodsRecordSource(Path file) {
+        super(file);
+    }
+
+    @Override
+    protected RowReader openRows() throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        return new RowReader() {
+            private char delimiter;
+
+            @Override
+            public String[] nextRow() throws IOException {
+                String line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+                if (delimiter == 0) {
+                    if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                        line = line.substring(1);
+                    }
+                    delimiter = detectDelimiter(line);
+                }
+                return split(line, delimiter);
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    private static char detectDelimiter(String line) {
+        char best = ',';
+        long bestCount = line.chars().filter(c -> c == ',').count();
+        for (char candidate : new char[]{';', '\t'}) {
+            long count = line.chars().filter(c -> c == candidate).count();
+            if (count > bestCount) {
+                best = candidate;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * First two fields of a line; quotes are removed and {@code ""} inside
+     * quotes is a literal quote.
+     */
+    private static String[] split(String line, char delimiter) {
+        String[] cells = new String[2];
+        StringBuilder cell = new StringBuilder();
+        int index = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length() && index < cells.length; i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                cells[index++] = cell.toString();
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        if (index < cells.length) {
+            cells[index] = cell.toString();
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.marketingservice.service.goods;
+
+import com.example.marketingservice.dto.goods.OptimizedBulkGoodsRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Goods records from an uploaded file, streamed row by row from a temporary
+ * copy that is deleted on {@link #close()}.
+ *
+ * The first column is the member ID and the second the total goods. A
+ * first row whose total is not a number is taken as a header; blank rows
+ * are skipped. A total that is not a whole number is passed on as null and
+ * reported as an invalid record.
+ */
+abstract class FileGoodsRecordSource implements GoodsRecordSource {
+
+    protected final Path file;
+    private DataRows rows;
+
+    protected FileGoodsRecordSource(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the file for the given upload name (.csv, .txt or .xlsx).
+     *
+     * @throws IllegalArgumentException for any other file type
+     */
+    static GoodsRecordSource open(Path file, String filename) {
+        String name = filename != null ? filename.toLowerCase(Locale.ROOT) : "";
+        if (name.endsWith(".csv") || name.endsWith(".txt")) {
+            return new CsvGoodsRecordSource(file);
+        }
+        if (name.endsWith(".xlsx")) {
+            return new XlsxGoodsRecordSource(file);
+        }
+        throw new IllegalArgumentException("Unsupported file type, expected .csv, .txt or .xlsx: " + filename);
+    }
+
+    /**
+     * A fresh reader over the file's rows, positioned at the first row.
+     */
+    protected abstract RowReader openRows() throws IOException;
+
+    @Override
+    public int size() throws IOException {
+        int count = 0;
+        try (DataRows counting = new DataRows(openRows())) {
+            while (counting.next() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public List<OptimizedBulkGoodsRequest.UserGoodsRecord> next(int max) throws IOException {
+        if (rows == null) {
+            rows = new DataRows(openRows());
+        }
+        List<OptimizedBulkGoodsRequest.UserGoodsRecord> chunk = new ArrayList<>(max);
+        OptimizedBulkGoodsRequest.UserGoodsRecord record;
+        while (chunk.size() < max && (record = rows.next()) != null) {
+            chunk.add(record);
+        }
+        return chunk;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rows != null) {
+                rows.close();
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Raw rows of a file: the first two cells of each, or null at the end.
+     */
+    interface RowReader extends Closeable {
+        String[] nextRow() throws IOException;
+    }
+
+    /**
+     * Turns raw rows into records, skipping blank rows and a header.
+     */
+    private static final class DataRows implements Closeable {
+
+        private final RowReader reader;
+        private boolean headerChecked;
+
+        DataRows(RowReader reader) {
+            this.reader = reader;
+        }
+
+        OptimizedBulkGoodsRequest.UserGoodsRecord next() throws IOException {
+            String[] row;
+            while ((row = reader.nextRow()) != null) {
+                String userId = row[0] != null ? row[0].trim() : "";
+                String total = row[1] != null ? row[1].trim() : "";
+                if (userId.isEmpty() && total.isEmpty()) {
+                    continue;
+                }
+                Integer totalGoods = parseWholeNumber(total);
+                if (!headerChecked) {
+                    headerChecked = true;
+                    if (totalGoods == null) {
+                        continue;
+                    }
+                }
+                return new OptimizedBulkGoodsRequest.UserGoodsRecord(userId, totalGoods);
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        private static Integer parseWholeNumber(String value) {
+            try {
+                // Spreadsheets store whole numbers as e.g. "12.0" or "1.2E3"
+                return new BigDecimal(value).intValueExact();
+            } catch (NumberFormatException | ArithmeticException e) {
+                return null;
+            }
+        }
+    }
+}
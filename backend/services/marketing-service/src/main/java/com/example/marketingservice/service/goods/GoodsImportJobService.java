@@ -0,0 +1,326 @@
+package com.example.marketingservice.service.goods;
+
+import com.example.marketingservice.dto.goods.GoodsImportJobResponse;
+import com.example.marketingservice.dto.goods.OptimizedBulkGoodsRequest;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs large goods uploads as background jobs, so the upload request
+ * returns a job id at once instead of holding the HTTP request (and one
+ * transaction) open until every record is written.
+ *
+ * Records come from the JSON upload or from a CSV/XLSX file
+ * ({@link GoodsRecordSource}) and are read a chunk of {@code chunk-size}
+ * records at a time. Chunks run on a pool of {@code workers} threads, each
+ * in its own transaction through
+ * {@link MarketingGoodsShipmentService#recordChunk}, so a failed chunk is
+ * reported and the rest of the job carries on. A job's chunks run one after
+ * another: a member repeated in the upload keeps its last value, and a job
+ * never contends with itself for row locks. Separate jobs run in parallel.
+ *
+ * At most {@code max-active-jobs} jobs are queued or running. Job state is
+ * kept in memory on the instance that took the upload; finished jobs are
+ * kept for {@code result-retention-minutes}.
+ */
+@Service
+public class GoodsImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GoodsImportJobService.class);
+
+    // Per-record errors kept per job; the counts stay exact beyond this
+    private static final int MAX_ERRORS_KEPT = 1000;
+
+    private final MarketingGoodsShipmentService shipmentService;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final ExecutorService workers;
+
+    @Value("${marketing.goods-import.async-threshold:5000}")
+    private int asyncThreshold;
+
+    @Value("${marketing.goods-import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${marketing.goods-import.max-active-jobs:20}")
+    private int maxActiveJobs;
+
+    @Value("${marketing.goods-import.result-retention-minutes:60}")
+    private long resultRetentionMinutes;
+
+    public GoodsImportJobService(MarketingGoodsShipmentService shipmentService,
+            @Value("${marketing.goods-import.workers:4}") int workerCount) {
+        this.shipmentService = shipmentService;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "goods-import-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Whether an upload of this size should run as a background job.
+     */
+    public boolean shouldRunAsJob(int recordCount) {
+        return recordCount > asyncThreshold;
+    }
+
+    /**
+     * Queues an import and returns its initial status, or empty when
+     * {@code max-active-jobs} jobs are already queued or running.
+     */
+    public Optional<GoodsImportJobResponse> submit(LocalDate sendDate,
+            List<OptimizedBulkGoodsRequest.UserGoodsRecord> records, Long creatorId) {
+        try {
+            return submit(sendDate, GoodsRecordSource.of(new ArrayList<>(records)), creatorId);
+        } catch (IOException e) {
+            // An in-memory source does no I/O
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Queues the import of an uploaded CSV (.csv or .txt) or XLSX file. The file is moved
+     * to a temporary copy that is streamed a chunk at a time and deleted
+     * when the job ends.
+     *
+     * @throws IllegalArgumentException if the file is not a .csv, .txt or .xlsx file
+     * @throws IOException              if the file cannot be read
+     */
+    public Optional<GoodsImportJobResponse> submitUpload(LocalDate sendDate, MultipartFile file, Long creatorId)
+            throws IOException {
+        Path copy = Files.createTempFile("goods-import-", ".upload");
+        GoodsRecordSource source;
+        try {
+            file.transferTo(copy);
+            source = FileGoodsRecordSource.open(copy, file.getOriginalFilename());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(copy);
+            throw e;
+        }
+        return submit(sendDate, source, creatorId);
+    }
+
+    private Optional<GoodsImportJobResponse> submit(LocalDate sendDate, GoodsRecordSource source, Long creatorId)
+            throws IOException {
+        purgeExpired();
+        Job job;
+        try {
+            // Counting also checks that an uploaded file is readable before it is accepted
+            int totalRecords = source.size();
+            synchronized (jobs) {
+                long active = jobs.values().stream().filter(existing -> existing.finishedAt == null).count();
+                if (active >= maxActiveJobs) {
+                    source.close();
+                    return Optional.empty();
+                }
+                job = new Job(UUID.randomUUID().toString(), creatorId, sendDate, source, totalRecords,
+                        (totalRecords + chunkSize - 1) / chunkSize);
+                jobs.put(job.id, job);
+            }
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+        logger.info("Queued goods import {} with {} records in {} chunks", job.id, job.totalRecords,
+                job.totalChunks);
+        scheduleNextChunk(job);
+        return Optional.of(job.toResponse());
+    }
+
+    /**
+     * Status of a job submitted by the given user, if it is still kept.
+     */
+    public Optional<GoodsImportJobResponse> getStatus(String jobId, Long userId) {
+        purgeExpired();
+        Job job = jobs.get(jobId);
+        if (job == null || !job.creatorId.equals(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(job.toResponse());
+    }
+
+    private void scheduleNextChunk(Job job) {
+        try {
+            workers.execute(() -> runChunk(job));
+        } catch (RuntimeException e) {
+            // Only on shutdown; the queue itself is unbounded and jobs are capped
+            job.addError("Job stopped: " + e.getMessage());
+            finish(job, "FAILED");
+        }
+    }
+
+    private void runChunk(Job job) {
+        if (job.startedAt == null) {
+            job.start();
+        }
+        List<OptimizedBulkGoodsRequest.UserGoodsRecord> chunk;
+        try {
+            chunk = job.source.next(chunkSize);
+        } catch (IOException e) {
+            job.addError("Could not read the upload: " + e.getMessage());
+            finish(job, "FAILED");
+            return;
+        }
+        if (chunk.isEmpty()) {
+            finish(job, "COMPLETED");
+            return;
+        }
+        int offset = job.readRecords;
+        MarketingGoodsShipmentService.ChunkResult result;
+        try {
+            result = shipmentService.recordChunk(chunk, offset, job.sendDate, job.creatorId);
+        } catch (Exception e) {
+            logger.warn("Goods import {} chunk at records {}-{} failed: {}", job.id, offset + 1,
+                    offset + chunk.size(), e.getMessage());
+            result = MarketingGoodsShipmentService.failedChunk(offset, chunk.size(), e);
+        }
+        job.completeChunk(chunk.size(), result);
+        scheduleNextChunk(job);
+    }
+
+    private void finish(Job job, String status) {
+        job.finish(status);
+        try {
+            job.source.close();
+        } catch (IOException e) {
+            logger.warn("Could not clean up goods import {}: {}", job.id, e.getMessage());
+        }
+        // Finished jobs are kept for their result; the records are no longer needed
+        job.source = null;
+        logger.info("Goods import {} {}: {} successful, {} failed", job.id, status.toLowerCase(Locale.ROOT),
+                job.successfulRecords, job.failedRecords);
+    }
+
+    private void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(resultRetentionMinutes);
+        for (Iterator<Job> it = jobs.values().iterator(); it.hasNext(); ) {
+            Job job = it.next();
+            if (job.finishedAt != null && job.finishedAt.isBefore(cutoff)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Mutable job state. Chunks of one job run one at a time, so updates
+     * never race with each other; readers take a consistent copy through
+     * {@link #toResponse()}.
+     */
+    private static final class Job {
+
+        private final String id;
+        private final Long creatorId;
+        private final LocalDate sendDate;
+        private GoodsRecordSource source;
+        private final int totalRecords;
+        private final int totalChunks;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final List<String> errors = new ArrayList<>();
+
+        private volatile String status = "QUEUED";
+        private volatile int completedChunks;
+        private volatile int readRecords;
+        private int successfulRecords;
+        private int failedRecords;
+        private long startedNanos;
+        private long finishedNanos;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        Job(String id, Long creatorId, LocalDate sendDate, GoodsRecordSource source, int totalRecords,
+                int totalChunks) {
+            this.id = id;
+            this.creatorId = creatorId;
+            this.sendDate = sendDate;
+            this.source = source;
+            this.totalRecords = totalRecords;
+            this.totalChunks = totalChunks;
+        }
+
+        synchronized void start() {
+            startedNanos = System.nanoTime();
+            startedAt = LocalDateTime.now();
+            status = "RUNNING";
+        }
+
+        synchronized void completeChunk(int records, MarketingGoodsShipmentService.ChunkResult result) {
+            readRecords += records;
+            successfulRecords += result.successfulRecords();
+            failedRecords += result.failedRecords();
+            for (String error : result.errors()) {
+                addError(error);
+            }
+            completedChunks++;
+        }
+
+        synchronized void addError(String error) {
+            if (errors.size() < MAX_ERRORS_KEPT) {
+                errors.add(error);
+            }
+        }
+
+        synchronized void finish(String finalStatus) {
+            status = finalStatus;
+            finishedNanos = System.nanoTime();
+            finishedAt = LocalDateTime.now();
+        }
+
+        synchronized GoodsImportJobResponse toResponse() {
+            GoodsImportJobResponse response = new GoodsImportJobResponse();
+            response.setJobId(id);
+            response.setStatus(status);
+            response.setTotalRecords(totalRecords);
+            int processed = successfulRecords + failedRecords;
+            response.setProcessedRecords(processed);
+            response.setSuccessfulRecords(successfulRecords);
+            response.setFailedRecords(failedRecords);
+            response.setTotalChunks(totalChunks);
+            response.setCompletedChunks(completedChunks);
+            response.setErrors(new ArrayList<>(errors));
+            response.setSubmittedAt(submittedAt);
+            response.setStartedAt(startedAt);
+            response.setFinishedAt(finishedAt);
+            if (startedAt != null) {
+                long endNanos = finishedAt != null ? finishedNanos : System.nanoTime();
+                double seconds = Math.max(endNanos - startedNanos, 1L) / 1_000_000_000.0;
+                double recordsPerSecond = processed / seconds;
+                response.setRecordsPerSecond(Math.round(recordsPerSecond * 10) / 10.0);
+                if (finishedAt == null && processed > 0) {
+                    response.setEtaSeconds(Math.round(Math.max(totalRecords - processed, 0) / recordsPerSecond));
+                }
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.marketingservice.service.goods;
+
+import com.example.marketingservice.dto.goods.OptimizedBulkGoodsRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Records of a goods import, read a chunk at a time so that an uploaded
+ * file never has to be held in memory as a whole.
+ */
+public interface GoodsRecordSource extends Closeable {
+
+    /**
+     * Number of records. File sources count them in a separate pass.
+     */
+    int size() throws IOException;
+
+    /**
+     * Up to {@code max} further records; empty once all have been read.
+     */
+    List<OptimizedBulkGoodsRequest.UserGoodsRecord> next(int max) throws IOException;
+
+    static GoodsRecordSource of(List<OptimizedBulkGoodsRequest.UserGoodsRecord> records) {
+        return new GoodsRecordSource() {
+            private int position;
+
+            @Override
+            public int size() {
+                return records.size();
+            }
+
+            @Override
+            public List<OptimizedBulkGoodsRequest.UserGoodsRecord> next(int max) {
+                int end = Math.min(position + max, records.size());
+                List<OptimizedBulkGoodsRequest.UserGoodsRecord> chunk = records.subList(position, end);
+                position = end;
+                return chunk;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
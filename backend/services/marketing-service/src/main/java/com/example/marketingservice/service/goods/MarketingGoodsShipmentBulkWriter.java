@@ -0,0 +1,111 @@
+package com.example.marketingservice.service.goods;
+
+import com.example.marketingservice.entity.goods.MarketingGoodsShipment;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes goods shipments in bulk, one multi-row
+ * {@code INSERT ... ON CONFLICT (member_id, send_date) DO UPDATE} per chunk,
+ * instead of a lookup and an IDENTITY insert per record.
+ *
+ * On conflict the row keeps its id, {@code created_at} and
+ * {@code created_by}, and takes the new {@code total_goods}, as the
+ * per-record path did ({@code created_by} is not updatable on the entity).
+ *
+ * The conflict target is the unique key declared on
+ * {@link com.example.marketingservice.entity.goods.MarketingGoodsShipment}.
+ * Hibernate creates it on a fresh database; on an existing one it cannot
+ * while duplicate rows remain, and they are never removed here. Startup
+ * only reports a missing key and the number of duplicate pairs; the one-off
+ * migration {@code devops/docker/scripts/sql/marketing-goods-shipment-unique-key.sql}
+ * lists them and adds the key once they are resolved.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class MarketingGoodsShipmentBulkWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketingGoodsShipmentBulkWriter.class);
+
+    // 5 parameters per row, well under the driver's 32767 bind limit
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MarketingGoodsShipmentBulkWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void checkUniqueKey() {
+        Integer existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pg_constraint WHERE conname = ?",
+                Integer.class, MarketingGoodsShipment.MEMBER_DATE_KEY);
+        if (existing != null && existing > 0) {
+            return;
+        }
+        Integer duplicates = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM (
+                    SELECT 1 FROM marketing_goods_shipments
+                    GROUP BY member_id, send_date
+                    HAVING COUNT(*) > 1
+                ) d
+                """, Integer.class);
+        logger.error("Unique key {} is missing on marketing_goods_shipments ({} duplicate member/date pairs);"
+                        + " bulk goods uploads fail until the goods shipment unique-key migration is run",
+                MarketingGoodsShipment.MEMBER_DATE_KEY, duplicates);
+    }
+
+    /**
+     * Inserts or updates the given shipments in the caller's transaction.
+     * Members must exist. When the same member and date appear more than
+     * once, the last one wins.
+     *
+     * @return Number of distinct (member, date) rows written
+     */
+    public int upsert(Collection<ShipmentRow> rows, Long creatorId) {
+        Map<String, ShipmentRow> distinct = new LinkedHashMap<>();
+        for (ShipmentRow row : rows) {
+            // A statement may not touch the same row twice
+            distinct.put(row.memberId() + "|" + row.sendDate(), row);
+        }
+        List<ShipmentRow> pending = new ArrayList<>(distinct.values());
+        // Same lock order in every statement, so concurrent imports touching the same rows cannot deadlock
+        pending.sort(Comparator.comparing(ShipmentRow::memberId).thenComparing(ShipmentRow::sendDate));
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        for (int i = 0; i < pending.size(); i += MAX_ROWS_PER_STATEMENT) {
+            List<ShipmentRow> chunk = pending.subList(i, Math.min(i + MAX_ROWS_PER_STATEMENT, pending.size()));
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO marketing_goods_shipments (member_id, send_date, total_goods, created_at, created_by) VALUES ");
+            List<Object> args = new ArrayList<>(chunk.size() * 5);
+            for (int j = 0; j < chunk.size(); j++) {
+                ShipmentRow row = chunk.get(j);
+                sql.append(j == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+                args.add(row.memberId());
+                args.add(row.sendDate());
+                args.add(row.totalGoods());
+                args.add(createdAt);
+                args.add(creatorId);
+            }
+            sql.append(" ON CONFLICT (member_id, send_date) DO UPDATE SET total_goods = EXCLUDED.total_goods");
+            jdbcTemplate.update(sql.toString(), args.toArray());
+        }
+        return pending.size();
+    }
+
+    public record ShipmentRow(Long memberId, LocalDate sendDate, Integer totalGoods) {
+    }
+}
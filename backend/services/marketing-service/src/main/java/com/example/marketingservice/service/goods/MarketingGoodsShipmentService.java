@@ -32,11 +32,14 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -46,46 +49,36 @@ public class MarketingGoodsShipmentService {
     private final MarketingGoodsShipmentRepository shipmentRepository;
     private final VipMemberRepository vipMemberRepository;
     private final EntityManager entityManager;
+    private final MarketingGoodsShipmentBulkWriter bulkWriter;
 
     public MarketingGoodsShipmentService(MarketingGoodsShipmentRepository shipmentRepository,
-            VipMemberRepository vipMemberRepository, EntityManager entityManager) {
+            VipMemberRepository vipMemberRepository, EntityManager entityManager,
+            MarketingGoodsShipmentBulkWriter bulkWriter) {
         this.shipmentRepository = shipmentRepository;
         this.vipMemberRepository = vipMemberRepository;
         this.entityManager = entityManager;
+        this.bulkWriter = bulkWriter;
     }
 
     @Transactional
     public int recordBatch(List<UserGoodsRecordRequest.GoodsRecord> records, Long creatorId) {
-        List<MarketingGoodsShipment> shipmentsToSave = new ArrayList<>();
+        Set<Long> existingMembers = findExistingMembers(records.stream()
+                .map(UserGoodsRecordRequest.GoodsRecord::getUserId)
+                .collect(Collectors.toList()));
 
+        List<MarketingGoodsShipmentBulkWriter.ShipmentRow> rows = new ArrayList<>(records.size());
         for (UserGoodsRecordRequest.GoodsRecord record : records) {
-            VipMember member = vipMemberRepository.findById(Long.valueOf(record.getUserId()))
-                    .orElseThrow(
-                            () -> new ResourceNotFoundException("VIP member not found: " + record.getUserId()));
-
-            // Check if a record already exists for this member and date
-            Optional<MarketingGoodsShipment> existingRecord = shipmentRepository
-                    .findByMemberIdAndSendDate(member.getId(), record.getSendDate());
-
-            if (existingRecord.isPresent()) {
-                // Update existing record with new data
-                MarketingGoodsShipment shipment = existingRecord.get();
-                shipment.setTotalGoods(record.getTotalGoods());
-                shipment.setCreatedBy(creatorId); // Update creator to latest person who modified
-                shipmentsToSave.add(shipment);
-            } else {
-                // Create new record
-                MarketingGoodsShipment shipment = new MarketingGoodsShipment();
-                shipment.setMember(member);
-                shipment.setSendDate(record.getSendDate());
-                shipment.setTotalGoods(record.getTotalGoods());
-                shipment.setCreatedBy(creatorId);
-                shipmentsToSave.add(shipment);
+            Long memberId = parseMemberId(record.getUserId());
+            if (memberId == null || !existingMembers.contains(memberId)) {
+                throw new ResourceNotFoundException("VIP member not found: " + record.getUserId());
             }
+            rows.add(new MarketingGoodsShipmentBulkWriter.ShipmentRow(memberId, record.getSendDate(),
+                    record.getTotalGoods()));
         }
 
-        List<MarketingGoodsShipment> savedShipments = shipmentRepository.saveAll(shipmentsToSave);
-        return savedShipments.size();
+        // Inserts new records and updates existing ones for the same member and date
+        bulkWriter.upsert(rows, creatorId);
+        return rows.size();
     }
 
     @Transactional
@@ -99,76 +92,22 @@ public class MarketingGoodsShipmentService {
         int successfulRecords = 0;
         int failedRecords = 0;
 
-        // For very large datasets (>5000 records), use async processing
-        if (records.size() > 5000) {
-            return recordOptimizedBatchAsync(request, creatorId, batchId, startTime);
-        }
-
         // Batch size for processing
         final int BATCH_SIZE = 500;
 
-        // Pre-validate all user IDs to fail fast
-        Map<String, VipMember> memberCache = preloadMembers(records);
-
-        // Process records in chunks to avoid memory issues
+        // Each chunk is one member lookup and one upsert statement
         for (int i = 0; i < records.size(); i += BATCH_SIZE) {
             int endIndex = Math.min(i + BATCH_SIZE, records.size());
             List<OptimizedBulkGoodsRequest.UserGoodsRecord> chunk = records.subList(i, endIndex);
-
+            ChunkResult result;
             try {
-                // Process chunk
-                List<MarketingGoodsShipment> shipmentsToSave = new ArrayList<>();
-
-                for (OptimizedBulkGoodsRequest.UserGoodsRecord record : chunk) {
-                    try {
-                        VipMember member = memberCache.get(record.getUserId());
-                        if (member == null) {
-                            errors.add("Record " + (i + chunk.indexOf(record) + 1) +
-                                    ": VIP member not found: " + record.getUserId());
-                            failedRecords++;
-                            continue;
-                        }
-
-                        // Check if a record already exists for this member and date
-                        Optional<MarketingGoodsShipment> existingRecord = shipmentRepository
-                                .findByMemberIdAndSendDate(member.getId(), sendDate);
-
-                        if (existingRecord.isPresent()) {
-                            // Update existing record
-                            MarketingGoodsShipment shipment = existingRecord.get();
-                            shipment.setTotalGoods(record.getTotalGoods());
-                            shipment.setCreatedBy(creatorId);
-                            shipmentsToSave.add(shipment);
-                        } else {
-                            // Create new record
-                            MarketingGoodsShipment shipment = new MarketingGoodsShipment();
-                            shipment.setMember(member);
-                            shipment.setSendDate(sendDate);
-                            shipment.setTotalGoods(record.getTotalGoods());
-                            shipment.setCreatedBy(creatorId);
-                            shipmentsToSave.add(shipment);
-                        }
-
-                        successfulRecords++;
-                    } catch (Exception e) {
-                        errors.add("Record " + (i + chunk.indexOf(record) + 1) +
-                                ": Error processing userId " + record.getUserId() + " - " + e.getMessage());
-                        failedRecords++;
-                    }
-                }
-
-                // Save chunk
-                if (!shipmentsToSave.isEmpty()) {
-                    shipmentRepository.saveAll(shipmentsToSave);
-                    // Clear entity manager to prevent memory buildup
-                    entityManager.flush();
-                    entityManager.clear();
-                }
-
+                result = recordChunk(chunk, i, sendDate, creatorId);
             } catch (Exception e) {
-                errors.add("Chunk processing error at records " + (i + 1) + "-" + endIndex + ": " + e.getMessage());
-                failedRecords += chunk.size();
+                result = failedChunk(i, chunk.size(), e);
             }
+            successfulRecords += result.successfulRecords();
+            failedRecords += result.failedRecords();
+            errors.addAll(result.errors());
         }
 
         long processingTime = System.currentTimeMillis() - startTime;
@@ -182,113 +121,74 @@ public class MarketingGoodsShipmentService {
                 processingTime);
     }
 
+    /**
+     * Records one chunk of a bulk upload. Records whose member does not
+     * exist or whose total is missing or negative are reported and skipped;
+     * a write error fails the whole chunk.
+     * Background import jobs call this once per chunk, each in its own
+     * transaction.
+     *
+     * @param offset Position of the chunk's first record in the upload, for error messages
+     */
     @Transactional
-    public BulkGoodsResponse recordOptimizedBatchAsync(OptimizedBulkGoodsRequest request, Long creatorId,
-            String batchId, long startTime) {
+    public ChunkResult recordChunk(List<OptimizedBulkGoodsRequest.UserGoodsRecord> chunk, int offset,
+            LocalDate sendDate, Long creatorId) {
         List<String> errors = new ArrayList<>();
-        int successfulRecords = 0;
-        int failedRecords = 0;
-        LocalDate sendDate = request.getSendDate();
-        List<OptimizedBulkGoodsRequest.UserGoodsRecord> records = request.getRecords();
-
-        // For async processing, use larger batch sizes and more aggressive memory
-        // management
-        final int BATCH_SIZE = 1000;
-
-        // Pre-validate all user IDs to fail fast
-        Map<String, VipMember> memberCache = preloadMembers(records);
-
-        errors.add("Processing " + records.size() + " records with optimized batch size " + BATCH_SIZE);
-
-        // Process records in larger chunks for better performance
-        for (int i = 0; i < records.size(); i += BATCH_SIZE) {
-            int endIndex = Math.min(i + BATCH_SIZE, records.size());
-            List<OptimizedBulkGoodsRequest.UserGoodsRecord> chunk = records.subList(i, endIndex);
-
-            try {
-                // Process chunk with optimized memory usage
-                List<MarketingGoodsShipment> shipmentsToSave = new ArrayList<>();
-
-                for (OptimizedBulkGoodsRequest.UserGoodsRecord record : chunk) {
-                    try {
-                        VipMember member = memberCache.get(record.getUserId());
-                        if (member == null) {
-                            failedRecords++;
-                            continue;
-                        }
-
-                        // Use existing record check for better performance
-                        Optional<MarketingGoodsShipment> existingRecord = shipmentRepository
-                                .findByMemberIdAndSendDate(member.getId(), sendDate);
-
-                        if (existingRecord.isPresent()) {
-                            MarketingGoodsShipment shipment = existingRecord.get();
-                            shipment.setTotalGoods(record.getTotalGoods());
-                            shipment.setCreatedBy(creatorId);
-                            shipmentsToSave.add(shipment);
-                        } else {
-                            MarketingGoodsShipment shipment = new MarketingGoodsShipment();
-                            shipment.setMember(member);
-                            shipment.setSendDate(sendDate);
-                            shipment.setTotalGoods(record.getTotalGoods());
-                            shipment.setCreatedBy(creatorId);
-                            shipmentsToSave.add(shipment);
-                        }
-
-                        successfulRecords++;
-                    } catch (Exception e) {
-                        failedRecords++;
-                    }
-                }
-
-                // Save chunk with immediate memory cleanup
-                if (!shipmentsToSave.isEmpty()) {
-                    shipmentRepository.saveAll(shipmentsToSave);
-                    entityManager.flush();
-                    entityManager.clear();
-                }
-
-                // Log progress for large datasets
-                if (i % 5000 == 0) {
-                    System.out.println("Processed " + Math.min(endIndex, records.size()) + " of " + records.size()
-                            + " records...");
-                }
-
-            } catch (Exception e) {
-                errors.add(
-                        "Large batch processing error at records " + (i + 1) + "-" + endIndex + ": " + e.getMessage());
-                failedRecords += chunk.size();
+        Set<Long> existingMembers = findExistingMembers(chunk.stream()
+                .map(OptimizedBulkGoodsRequest.UserGoodsRecord::getUserId)
+                .collect(Collectors.toList()));
+
+        List<MarketingGoodsShipmentBulkWriter.ShipmentRow> rows = new ArrayList<>(chunk.size());
+        for (int j = 0; j < chunk.size(); j++) {
+            OptimizedBulkGoodsRequest.UserGoodsRecord record = chunk.get(j);
+            Long memberId = parseMemberId(record.getUserId());
+            if (memberId == null || !existingMembers.contains(memberId)) {
+                errors.add("Record " + (offset + j + 1) + ": VIP member not found: " + record.getUserId());
+                continue;
             }
+            if (record.getTotalGoods() == null || record.getTotalGoods() < 0) {
+                errors.add("Record " + (offset + j + 1) + ": invalid total goods for userId " + record.getUserId());
+                continue;
+            }
+            rows.add(new MarketingGoodsShipmentBulkWriter.ShipmentRow(memberId, sendDate, record.getTotalGoods()));
         }
 
-        long processingTime = System.currentTimeMillis() - startTime;
+        bulkWriter.upsert(rows, creatorId);
+        return new ChunkResult(rows.size(), chunk.size() - rows.size(), errors);
+    }
 
-        return new BulkGoodsResponse(
-                records.size(),
-                successfulRecords,
-                failedRecords,
-                errors,
-                batchId,
-                processingTime);
+    /**
+     * Result for a chunk whose write failed: every record counts as failed.
+     */
+    public static ChunkResult failedChunk(int offset, int size, Exception e) {
+        return new ChunkResult(0, size, List.of("Chunk processing error at records " + (offset + 1) + "-"
+                + (offset + size) + ": " + e.getMessage()));
     }
 
-    private Map<String, VipMember> preloadMembers(List<OptimizedBulkGoodsRequest.UserGoodsRecord> records) {
-        // Extract all unique user IDs
-        List<Long> userIds = records.stream()
-                .map(record -> Long.valueOf(record.getUserId()))
-                .distinct()
-                .collect(Collectors.toList());
+    public record ChunkResult(int successfulRecords, int failedRecords, List<String> errors) {
+    }
 
-        // Batch load all members at once
-        List<VipMember> members = vipMemberRepository.findAllById(userIds);
+    /**
+     * IDs of the given members that exist, in one query. Unparseable IDs are
+     * left out.
+     */
+    private Set<Long> findExistingMembers(List<String> userIds) {
+        Set<Long> ids = userIds.stream()
+                .map(this::parseMemberId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(vipMemberRepository.findExistingIds(ids));
+    }
 
-        // Create map for fast lookup
-        Map<String, VipMember> memberMap = new HashMap<>();
-        for (VipMember member : members) {
-            memberMap.put(member.getId().toString(), member);
+    private Long parseMemberId(String userId) {
+        try {
+            return userId != null ? Long.valueOf(userId.trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
         }
-
-        return memberMap;
     }
 
     @Transactional(readOnly = true)
@@ -579,376 +479,178 @@ public class MarketingGoodsShipmentService {
             whereClause.append(" AND vm.id = :memberId");
         }
 
-        // Get status metrics (simulated - you may need to add status field to
-        // shipments)
-        List<GoodsDashboardStatsResponse.StatusMetric> statusMetrics = getStatusMetrics(whereClause.toString(),
-                areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds, areaIds);
-
-        // Get hierarchy totals
-        List<GoodsDashboardStatsResponse.HierarchyTotal> hierarchyTotals = getHierarchyTotals(whereClause.toString(),
-                areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds, areaIds);
-
-        // Get trend data
-        List<GoodsDashboardStatsResponse.DailyTrend> dailyTrends = getDailyTrends(whereClause.toString(),
-                areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds, areaIds);
-
-        List<GoodsDashboardStatsResponse.WeeklyTrend> weeklyTrends = getWeeklyTrends(whereClause.toString(),
-                areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds, areaIds);
-
-        List<GoodsDashboardStatsResponse.MonthlyTrend> monthlyTrends = getMonthlyTrends(whereClause.toString(),
-                areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds, areaIds);
-
-        // Get summary statistics
-        GoodsDashboardStatsResponse.SummaryStats summaryStats = getSummaryStats(whereClause.toString(),
-                areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds, areaIds);
-
-        return new GoodsDashboardStatsResponse(statusMetrics, hierarchyTotals, dailyTrends, weeklyTrends,
-                monthlyTrends, summaryStats);
-    }
-
-    private List<GoodsDashboardStatsResponse.StatusMetric> getStatusMetrics(String whereClause,
-            Long areaId, Long subAreaId, Long branchId, Long memberId, LocalDate startDate, LocalDate endDate,
-            List<Long> branchIds, List<Long> subAreaIds, List<Long> areaIds) {
-
-        // Since the current system doesn't have status tracking, we'll return total
-        // goods as "completed"
-        String sql = "SELECT 'TOTAL' as metric, SUM(gs.total_goods) as total " +
-                "FROM marketing_goods_shipments gs " +
-                "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                whereClause;
-
-        Query query = entityManager.createNativeQuery(sql);
-        setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds,
+        return computeDashboardStats(whereClause.toString(), dashboardHierarchyLevel(areaId, subAreaId, branchId,
+                branchIds, areaIds), areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds,
                 areaIds);
-
-        Object[] result = (Object[]) query.getSingleResult();
-
-        List<GoodsDashboardStatsResponse.StatusMetric> metrics = new ArrayList<>();
-        int total = result[1] != null ? ((Number) result[1]).intValue() : 0;
-
-        // For now, all goods are considered "completed" since there's no status
-        // tracking
-        metrics.add(new GoodsDashboardStatsResponse.StatusMetric("TOTAL", 0, 0, total, total));
-
-        return metrics;
     }
 
-    private List<GoodsDashboardStatsResponse.HierarchyTotal> getHierarchyTotals(String whereClause,
-            Long areaId, Long subAreaId, Long branchId, Long memberId, LocalDate startDate, LocalDate endDate,
-            List<Long> branchIds, List<Long> subAreaIds, List<Long> areaIds) {
-
-        List<GoodsDashboardStatsResponse.HierarchyTotal> totals = new ArrayList<>();
-
-        // Handle sub-area specific case (when subAreaId is provided but areaId is null)
+    /**
+     * Which level the hierarchy totals break down into for the given filters:
+     * areas when none is selected, then sub-areas (or branches when the area
+     * has no sub-areas), then branches, then members of the selected branch.
+     */
+    private String dashboardHierarchyLevel(Long areaId, Long subAreaId, Long branchId, List<Long> branchIds,
+            List<Long> areaIds) {
         if (subAreaId != null && (areaId == null || areaId == 0)) {
-            // Sub-area is selected - show branches in this sub-area
-            String sql = "SELECT b.id, b.name, SUM(gs.total_goods) as total " +
-                    "FROM marketing_goods_shipments gs " +
-                    "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                    "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                    whereClause + " GROUP BY b.id, b.name ORDER BY total DESC";
-
-            Query query = entityManager.createNativeQuery(sql);
-            setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds,
-                    subAreaIds, areaIds);
-
-            @SuppressWarnings("unchecked")
-            List<Object[]> results = query.getResultList();
-
-            for (Object[] row : results) {
-                totals.add(new GoodsDashboardStatsResponse.HierarchyTotal(
-                        "branch-" + row[0],
-                        (String) row[1],
-                        ((Number) row[2]).intValue(),
-                        "branch",
-                        ((Number) row[0]).longValue(),
-                        false));
-            }
-        } else if (areaId == null && (areaIds == null || areaIds.isEmpty())) {
-            // No area selected - show all areas
-            String sql = "SELECT a.id, a.name, SUM(gs.total_goods) as total " +
-                    "FROM marketing_goods_shipments gs " +
-                    "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                    "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                    "JOIN marketing_areas a ON b.area_id = a.id " +
-                    whereClause + " GROUP BY a.id, a.name ORDER BY total DESC";
-
-            Query query = entityManager.createNativeQuery(sql);
-            setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds,
-                    subAreaIds, areaIds);
-
-            @SuppressWarnings("unchecked")
-            List<Object[]> results = query.getResultList();
-
-            for (Object[] row : results) {
-                totals.add(new GoodsDashboardStatsResponse.HierarchyTotal(
-                        "area-" + row[0],
-                        (String) row[1],
-                        ((Number) row[2]).intValue(),
-                        "area",
-                        ((Number) row[0]).longValue(),
-                        false));
-            }
-        } else if (branchId == null && (branchIds == null || branchIds.isEmpty())) {
-            // Area is selected - show sub-areas or branches based on selection
+            return "branch";
+        }
+        if (areaId == null && (areaIds == null || areaIds.isEmpty())) {
+            return "area";
+        }
+        if (branchId == null && (branchIds == null || branchIds.isEmpty())) {
             if (subAreaId != null) {
-                // Sub-area is selected - show branches in this sub-area
-                String sql = "SELECT b.id, b.name, SUM(gs.total_goods) as total " +
-                        "FROM marketing_goods_shipments gs " +
-                        "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                        "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                        whereClause + " GROUP BY b.id, b.name ORDER BY total DESC";
-
-                Query query = entityManager.createNativeQuery(sql);
-                setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds,
-                        subAreaIds, areaIds);
-
-                @SuppressWarnings("unchecked")
-                List<Object[]> results = query.getResultList();
-
-                for (Object[] row : results) {
-                    totals.add(new GoodsDashboardStatsResponse.HierarchyTotal(
-                            "branch-" + row[0],
-                            (String) row[1],
-                            ((Number) row[2]).intValue(),
-                            "branch",
-                            ((Number) row[0]).longValue(),
-                            false));
-                }
-            } else if (areaId != null) {
-                // Area is selected but no sub-area - check if area has sub-areas
-                String sql = "SELECT COUNT(*) FROM marketing_sub_areas WHERE area_id = :areaId";
-                Query countQuery = entityManager.createNativeQuery(sql);
-                countQuery.setParameter("areaId", areaId);
-                Number subAreaCount = (Number) countQuery.getSingleResult();
-
-                if (subAreaCount.intValue() > 0) {
-                    // Area has sub-areas - show sub-areas
-                    String subAreaSql = "SELECT sa.id, sa.name, SUM(gs.total_goods) as total " +
-                            "FROM marketing_goods_shipments gs " +
-                            "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                            "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                            "JOIN marketing_sub_areas sa ON b.sub_area_id = sa.id " +
-                            whereClause + " GROUP BY sa.id, sa.name ORDER BY total DESC";
-
-                    Query query = entityManager.createNativeQuery(subAreaSql);
-                    setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds,
-                            subAreaIds, areaIds);
-
-                    @SuppressWarnings("unchecked")
-                    List<Object[]> results = query.getResultList();
-
-                    for (Object[] row : results) {
-                        totals.add(new GoodsDashboardStatsResponse.HierarchyTotal(
-                                "subarea-" + row[0],
-                                (String) row[1],
-                                ((Number) row[2]).intValue(),
-                                "subArea",
-                                ((Number) row[0]).longValue(),
-                                false));
-                    }
-                } else {
-                    // Area has no sub-areas - show branches directly
-                    String branchSql = "SELECT b.id, b.name, SUM(gs.total_goods) as total " +
-                            "FROM marketing_goods_shipments gs " +
-                            "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                            "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                            whereClause + " GROUP BY b.id, b.name ORDER BY total DESC";
-
-                    Query query = entityManager.createNativeQuery(branchSql);
-                    setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds,
-                            subAreaIds, areaIds);
-
-                    @SuppressWarnings("unchecked")
-                    List<Object[]> results = query.getResultList();
-
-                    for (Object[] row : results) {
-                        totals.add(new GoodsDashboardStatsResponse.HierarchyTotal(
-                                "branch-" + row[0],
-                                (String) row[1],
-                                ((Number) row[2]).intValue(),
-                                "branch",
-                                ((Number) row[0]).longValue(),
-                                false));
-                    }
-                }
-            } else {
-                // No area selected - show all areas
-                String sql = "SELECT a.id, a.name, SUM(gs.total_goods) as total " +
-                        "FROM marketing_goods_shipments gs " +
-                        "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                        "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                        "JOIN marketing_areas a ON b.area_id = a.id " +
-                        whereClause + " GROUP BY a.id, a.name ORDER BY total DESC";
-
-                Query query = entityManager.createNativeQuery(sql);
-                setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds,
-                        subAreaIds, areaIds);
-
-                @SuppressWarnings("unchecked")
-                List<Object[]> results = query.getResultList();
-
-                for (Object[] row : results) {
-                    totals.add(new GoodsDashboardStatsResponse.HierarchyTotal(
-                            "area-" + row[0],
-                            (String) row[1],
-                            ((Number) row[2]).intValue(),
-                            "area",
-                            ((Number) row[0]).longValue(),
-                            false));
-                }
-            }
-        } else {
-            // Show members in selected branch
-            String sql = "SELECT vm.id, vm.name, SUM(gs.total_goods) as total " +
-                    "FROM marketing_goods_shipments gs " +
-                    "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                    "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                    whereClause + " GROUP BY vm.id, vm.name ORDER BY total DESC";
-
-            Query query = entityManager.createNativeQuery(sql);
-            setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds,
-                    areaIds);
-
-            @SuppressWarnings("unchecked")
-            List<Object[]> results = query.getResultList();
-
-            for (Object[] row : results) {
-                totals.add(new GoodsDashboardStatsResponse.HierarchyTotal(
-                        "member-" + row[0],
-                        (String) row[1],
-                        ((Number) row[2]).intValue(),
-                        "member",
-                        ((Number) row[0]).longValue(),
-                        memberId != null && memberId.equals(((Number) row[0]).longValue())));
+                return "branch";
             }
+            return areaId != null ? "subAreaOrBranch" : "area";
         }
-
-        return totals;
+        return "member";
     }
 
-    private List<GoodsDashboardStatsResponse.DailyTrend> getDailyTrends(String whereClause,
+    /**
+     * Every dashboard figure from one scan of the filtered shipments: a
+     * single GROUPING SETS query yields the grand total and distinct
+     * member/branch counts, the daily, weekly and monthly buckets and the
+     * hierarchy totals, told apart by GROUPING().
+     */
+    private GoodsDashboardStatsResponse computeDashboardStats(String whereClause, String hierarchyLevel,
             Long areaId, Long subAreaId, Long branchId, Long memberId, LocalDate startDate, LocalDate endDate,
             List<Long> branchIds, List<Long> subAreaIds, List<Long> areaIds) {
 
-        String sql = "SELECT gs.send_date, SUM(gs.total_goods) as total " +
-                "FROM marketing_goods_shipments gs " +
-                "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                whereClause + " GROUP BY gs.send_date ORDER BY gs.send_date";
-
-        Query query = entityManager.createNativeQuery(sql);
-        setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds,
-                areaIds);
-
-        @SuppressWarnings("unchecked")
-        List<Object[]> results = query.getResultList();
-
-        return results.stream()
-                .map(row -> new GoodsDashboardStatsResponse.DailyTrend(
-                        row[0] instanceof java.sql.Date ? ((java.sql.Date) row[0]).toLocalDate() : (LocalDate) row[0],
-                        ((Number) row[1]).intValue()))
-                .collect(Collectors.toList());
-    }
-
-    private List<GoodsDashboardStatsResponse.WeeklyTrend> getWeeklyTrends(String whereClause,
-            Long areaId, Long subAreaId, Long branchId, Long memberId, LocalDate startDate, LocalDate endDate,
-            List<Long> branchIds, List<Long> subAreaIds, List<Long> areaIds) {
+        // Hierarchy id/name columns; a selected area gets both its sub-areas and its branches,
+        // and the branches are only used when the area has no sub-areas
+        String hierarchyId;
+        String hierarchyName;
+        boolean branchFallback = "subAreaOrBranch".equals(hierarchyLevel);
+        switch (hierarchyLevel) {
+            case "area":
+                hierarchyId = "a.id";
+                hierarchyName = "a.name";
+                break;
+            case "subAreaOrBranch":
+                hierarchyId = "sa.id";
+                hierarchyName = "sa.name";
+                break;
+            case "member":
+                hierarchyId = "vm.id";
+                hierarchyName = "vm.name";
+                break;
+            default:
+                hierarchyId = "b.id";
+                hierarchyName = "b.name";
+                break;
+        }
 
-        String sql = "SELECT EXTRACT(WEEK FROM gs.send_date) as week, " +
-                "EXTRACT(YEAR FROM gs.send_date) as year, " +
-                "SUM(gs.total_goods) as total " +
+        String week = "EXTRACT(WEEK FROM gs.send_date)";
+        String month = "EXTRACT(MONTH FROM gs.send_date)";
+        String year = "EXTRACT(YEAR FROM gs.send_date)";
+
+        String sql = "SELECT " +
+                "GROUPING(gs.send_date) AS no_day, " +
+                "GROUPING(" + week + ", " + year + ") AS no_week, " +
+                "GROUPING(" + month + ", " + year + ") AS no_month, " +
+                "GROUPING(" + hierarchyId + ", " + hierarchyName + ") AS no_hierarchy, " +
+                (branchFallback ? "GROUPING(b.id, b.name)" : "1") + " AS no_branch, " +
+                "gs.send_date, " + week + ", " + month + ", " + year + ", " +
+                hierarchyId + ", " + hierarchyName + ", " +
+                (branchFallback ? "b.id, b.name, " : "NULL, NULL, ") +
+                "SUM(gs.total_goods) AS total, " +
+                "COUNT(DISTINCT vm.id), " +
+                "COUNT(DISTINCT b.id), " +
+                (branchFallback ? "EXISTS (SELECT 1 FROM marketing_sub_areas WHERE area_id = :areaId)" : "FALSE") +
+                " " +
                 "FROM marketing_goods_shipments gs " +
                 "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
                 "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                whereClause + " GROUP BY week, year ORDER BY year, week";
+                ("area".equals(hierarchyLevel) ? "JOIN marketing_areas a ON b.area_id = a.id " : "") +
+                (branchFallback ? "LEFT JOIN marketing_sub_areas sa ON b.sub_area_id = sa.id " : "") +
+                whereClause + " " +
+                "GROUP BY GROUPING SETS ((), (gs.send_date), " +
+                "(" + week + ", " + year + "), " +
+                "(" + month + ", " + year + "), " +
+                "(" + hierarchyId + ", " + hierarchyName + ")" +
+                (branchFallback ? ", (b.id, b.name)" : "") + ")";
 
         Query query = entityManager.createNativeQuery(sql);
         setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds,
                 areaIds);
 
         @SuppressWarnings("unchecked")
-        List<Object[]> results = query.getResultList();
-
-        return results.stream()
-                .map(row -> new GoodsDashboardStatsResponse.WeeklyTrend(
-                        ((Number) row[0]).intValue(),
-                        ((Number) row[1]).intValue(),
-                        "W" + row[0] + " " + row[1],
-                        ((Number) row[2]).intValue()))
-                .collect(Collectors.toList());
-    }
+        List<Object[]> rows = query.getResultList();
+
+        int totalGoods = 0;
+        int totalMembers = 0;
+        int totalBranches = 0;
+        boolean areaHasSubAreas = false;
+        List<GoodsDashboardStatsResponse.DailyTrend> dailyTrends = new ArrayList<>();
+        List<GoodsDashboardStatsResponse.WeeklyTrend> weeklyTrends = new ArrayList<>();
+        List<GoodsDashboardStatsResponse.MonthlyTrend> monthlyTrends = new ArrayList<>();
+        List<GoodsDashboardStatsResponse.HierarchyTotal> hierarchyTotals = new ArrayList<>();
+        List<GoodsDashboardStatsResponse.HierarchyTotal> branchTotals = new ArrayList<>();
+
+        for (Object[] row : rows) {
+            int total = row[13] != null ? ((Number) row[13]).intValue() : 0;
+            if (((Number) row[0]).intValue() == 0) {
+                dailyTrends.add(new GoodsDashboardStatsResponse.DailyTrend(toLocalDate(row[5]), total));
+            } else if (((Number) row[1]).intValue() == 0) {
+                int weekValue = ((Number) row[6]).intValue();
+                int yearValue = ((Number) row[8]).intValue();
+                weeklyTrends.add(new GoodsDashboardStatsResponse.WeeklyTrend(weekValue, yearValue,
+                        "W" + weekValue + " " + yearValue, total));
+            } else if (((Number) row[2]).intValue() == 0) {
+                int monthValue = ((Number) row[7]).intValue();
+                int yearValue = ((Number) row[8]).intValue();
+                monthlyTrends.add(new GoodsDashboardStatsResponse.MonthlyTrend(monthValue, yearValue,
+                        LocalDate.of(yearValue, monthValue, 1).getMonth().toString().substring(0, 3) + " "
+                                + yearValue,
+                        total));
+            } else if (((Number) row[3]).intValue() == 0) {
+                // Branches without a sub-area form a null group, which is not a sub-area
+                if (row[9] != null) {
+                    hierarchyTotals.add(hierarchyTotal(hierarchyLevel, row[9], row[10], total, memberId));
+                }
+            } else if (((Number) row[4]).intValue() == 0) {
+                branchTotals.add(hierarchyTotal("branch", row[11], row[12], total, memberId));
+            } else {
+                totalGoods = total;
+                totalMembers = ((Number) row[14]).intValue();
+                totalBranches = ((Number) row[15]).intValue();
+                areaHasSubAreas = Boolean.TRUE.equals(row[16]);
+            }
+        }
 
-    private List<GoodsDashboardStatsResponse.MonthlyTrend> getMonthlyTrends(String whereClause,
-            Long areaId, Long subAreaId, Long branchId, Long memberId, LocalDate startDate, LocalDate endDate,
-            List<Long> branchIds, List<Long> subAreaIds, List<Long> areaIds) {
+        if (branchFallback && !areaHasSubAreas) {
+            hierarchyTotals = branchTotals;
+        }
+        hierarchyTotals.sort((a, b) -> Integer.compare(b.getTotal(), a.getTotal()));
+        dailyTrends.sort(Comparator.comparing(GoodsDashboardStatsResponse.DailyTrend::getDate));
+        weeklyTrends.sort(Comparator.comparingInt(GoodsDashboardStatsResponse.WeeklyTrend::getYear)
+                .thenComparingInt(GoodsDashboardStatsResponse.WeeklyTrend::getWeek));
+        monthlyTrends.sort(Comparator.comparingInt(GoodsDashboardStatsResponse.MonthlyTrend::getYear)
+                .thenComparingInt(GoodsDashboardStatsResponse.MonthlyTrend::getMonth));
 
-        String sql = "SELECT EXTRACT(MONTH FROM gs.send_date) as month, " +
-                "EXTRACT(YEAR FROM gs.send_date) as year, " +
-                "SUM(gs.total_goods) as total " +
-                "FROM marketing_goods_shipments gs " +
-                "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                "JOIN marketing_branches b ON vm.branch_id = b.id " +
-                whereClause + " GROUP BY month, year ORDER BY year, month";
+        // Since the current system doesn't have status tracking, all goods count as "completed"
+        List<GoodsDashboardStatsResponse.StatusMetric> statusMetrics = new ArrayList<>();
+        statusMetrics.add(new GoodsDashboardStatsResponse.StatusMetric("TOTAL", 0, 0, totalGoods, totalGoods));
 
-        Query query = entityManager.createNativeQuery(sql);
-        setQueryParameters(query, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds,
-                areaIds);
+        GoodsDashboardStatsResponse.SummaryStats summaryStats = new GoodsDashboardStatsResponse.SummaryStats(
+                totalGoods, totalMembers, totalBranches, 0, 0);
 
-        @SuppressWarnings("unchecked")
-        List<Object[]> results = query.getResultList();
-
-        return results.stream()
-                .map(row -> new GoodsDashboardStatsResponse.MonthlyTrend(
-                        ((Number) row[0]).intValue(),
-                        ((Number) row[1]).intValue(),
-                        LocalDate.of(((Number) row[1]).intValue(), ((Number) row[0]).intValue(), 1)
-                                .getMonth().toString().substring(0, 3) + " " + row[1],
-                        ((Number) row[2]).intValue()))
-                .collect(Collectors.toList());
+        return new GoodsDashboardStatsResponse(statusMetrics, hierarchyTotals, dailyTrends, weeklyTrends,
+                monthlyTrends, summaryStats);
     }
 
-    private GoodsDashboardStatsResponse.SummaryStats getSummaryStats(String whereClause,
-            Long areaId, Long subAreaId, Long branchId, Long memberId, LocalDate startDate, LocalDate endDate,
-            List<Long> branchIds, List<Long> subAreaIds, List<Long> areaIds) {
-
-        // Get total goods
-        String goodsSql = "SELECT SUM(gs.total_goods) FROM marketing_goods_shipments gs " +
-                "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                "JOIN marketing_branches b ON vm.branch_id = b.id " + whereClause;
-
-        Query goodsQuery = entityManager.createNativeQuery(goodsSql);
-        setQueryParameters(goodsQuery, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds, subAreaIds,
-                areaIds);
-
-        Number totalGoodsResult = (Number) goodsQuery.getSingleResult();
-        int totalGoods = totalGoodsResult != null ? totalGoodsResult.intValue() : 0;
-
-        // Get unique counts
-        String membersSql = "SELECT COUNT(DISTINCT vm.id) FROM marketing_goods_shipments gs " +
-                "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                "JOIN marketing_branches b ON vm.branch_id = b.id " + whereClause;
-
-        Query membersQuery = entityManager.createNativeQuery(membersSql);
-        setQueryParameters(membersQuery, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds,
-                subAreaIds, areaIds);
-
-        Number totalMembersResult = (Number) membersQuery.getSingleResult();
-        int totalMembers = totalMembersResult != null ? totalMembersResult.intValue() : 0;
-
-        String branchesSql = "SELECT COUNT(DISTINCT b.id) FROM marketing_goods_shipments gs " +
-                "JOIN marketing_vip_members vm ON gs.member_id = vm.id " +
-                "JOIN marketing_branches b ON vm.branch_id = b.id " + whereClause;
-
-        Query branchesQuery = entityManager.createNativeQuery(branchesSql);
-        setQueryParameters(branchesQuery, areaId, subAreaId, branchId, memberId, startDate, endDate, branchIds,
-                subAreaIds, areaIds);
-
-        Number totalBranchesResult = (Number) branchesQuery.getSingleResult();
-        int totalBranches = totalBranchesResult != null ? totalBranchesResult.intValue() : 0;
-
-        return new GoodsDashboardStatsResponse.SummaryStats(totalGoods, totalMembers, totalBranches, 0, 0);
+    private GoodsDashboardStatsResponse.HierarchyTotal hierarchyTotal(String level, Object id, Object name,
+            int total, Long memberId) {
+        long idValue = ((Number) id).longValue();
+        String type = "subAreaOrBranch".equals(level) ? "subArea" : level;
+        String keyPrefix = "subArea".equals(type) ? "subarea" : type;
+        return new GoodsDashboardStatsResponse.HierarchyTotal(
+                keyPrefix + "-" + idValue,
+                (String) name,
+                total,
+                type,
+                idValue,
+                "member".equals(type) && memberId != null && memberId.equals(idValue));
     }
 
     private void setQueryParameters(Query query, Long areaId, Long subAreaId, Long branchId, Long memberId,
@@ -999,121 +701,10 @@ public class MarketingGoodsShipmentService {
         // If no limit specified, use a large number to fetch all records
         int sanitizedLimit = limit != null ? Math.min(Math.max(limit, 1), 10000) : 10000;
 
-        // Build the JPQL query to fetch shipments grouped by member
-        String jpql = "SELECT DISTINCT s FROM MarketingGoodsShipment s " +
-                "LEFT JOIN FETCH s.member m " +
-                "LEFT JOIN FETCH m.branch b " +
-                "LEFT JOIN FETCH b.area " +
-                "LEFT JOIN FETCH b.subArea " +
-                "WHERE " + buildWhereClause(memberId, branchId, subAreaId, areaId, createdBy, memberQuery, startDate,
-                        endDate, branchIds, subAreaIds, areaIds)
-                +
-                " ORDER BY m.id, s.sendDate DESC";
-
-        Query query = entityManager.createQuery(jpql, MarketingGoodsShipment.class);
-        query.setMaxResults(sanitizedLimit * 2); // Fetch more to account for grouping
-        setQueryParameters(query, memberId, branchId, subAreaId, areaId, createdBy, memberQuery, startDate,
-                endDate, branchIds, subAreaIds, areaIds);
-
-        @SuppressWarnings("unchecked")
-        List<MarketingGoodsShipment> shipments = query.getResultList();
-
-        // Group shipments by member
-        Map<Long, GroupedGoodsShipmentResponse> groupedMap = new HashMap<>();
-
-        for (MarketingGoodsShipment shipment : shipments) {
-            Long memberIdKey = shipment.getMember().getId();
-
-            GroupedGoodsShipmentResponse grouped = groupedMap.computeIfAbsent(memberIdKey, id -> {
-                GroupedGoodsShipmentResponse response = new GroupedGoodsShipmentResponse();
-                response.setMemberId(shipment.getMember().getId());
-                response.setMemberName(shipment.getMember().getName());
-                response.setMemberPhone(shipment.getMember().getPhone());
-                response.setBranchId(shipment.getMember().getBranch().getId());
-                response.setBranchName(shipment.getMember().getBranch().getName());
-                response.setRecords(new ArrayList<>());
-                response.setTotalGoods(0);
-                return response;
-            });
-
-            // Add shipment record
-            GoodsShipmentRecord record = new GoodsShipmentRecord(
-                    shipment.getSendDate(),
-                    shipment.getTotalGoods());
-            grouped.getRecords().add(record);
-
-            // Update total goods
-            grouped.setTotalGoods(grouped.getTotalGoods() + shipment.getTotalGoods());
-        }
-
-        // Convert to list and sort by total goods descending for ranking
-        List<GroupedGoodsShipmentResponse> result = new ArrayList<>(groupedMap.values());
-
-        // Apply sorting based on parameters
-        boolean ascending = "asc".equalsIgnoreCase(sortOrder);
-        switch (sortBy.toLowerCase()) {
-            case "totalgoods":
-                result.sort((a, b) -> {
-                    Integer aTotal = a.getTotalGoods() != null ? a.getTotalGoods() : 0;
-                    Integer bTotal = b.getTotalGoods() != null ? b.getTotalGoods() : 0;
-                    return ascending ? aTotal.compareTo(bTotal) : bTotal.compareTo(aTotal);
-                });
-                break;
-            case "membername":
-                result.sort((a, b) -> {
-                    String aName = a.getMemberName() != null ? a.getMemberName() : "";
-                    String bName = b.getMemberName() != null ? b.getMemberName() : "";
-                    return ascending ? aName.compareToIgnoreCase(bName) : bName.compareToIgnoreCase(aName);
-                });
-                break;
-            case "branchname":
-                result.sort((a, b) -> {
-                    String aBranch = a.getBranchName() != null ? a.getBranchName() : "";
-                    String bBranch = b.getBranchName() != null ? b.getBranchName() : "";
-                    return ascending ? aBranch.compareToIgnoreCase(bBranch) : bBranch.compareToIgnoreCase(aBranch);
-                });
-                break;
-            case "rank":
-            default:
-                // Sort by total goods descending for ranking
-                result.sort((a, b) -> {
-                    Integer aTotal = a.getTotalGoods() != null ? a.getTotalGoods() : 0;
-                    Integer bTotal = b.getTotalGoods() != null ? b.getTotalGoods() : 0;
-                    return bTotal.compareTo(aTotal);
-                });
-                break;
-        }
-
-        // Assign ranks (always based on total goods descending)
-        List<GroupedGoodsShipmentResponse> sortedForRanking = new ArrayList<>(result);
-        sortedForRanking.sort((a, b) -> {
-            Integer aTotal = a.getTotalGoods() != null ? a.getTotalGoods() : 0;
-            Integer bTotal = b.getTotalGoods() != null ? b.getTotalGoods() : 0;
-            return bTotal.compareTo(aTotal);
-        });
-
-        // Handle ties: same total goods should get same rank
-        Map<Long, Integer> rankMap = new HashMap<>();
-        int currentRank = 1;
-        for (int i = 0; i < sortedForRanking.size(); i++) {
-            GroupedGoodsShipmentResponse currentItem = sortedForRanking.get(i);
-            Integer currentTotal = currentItem.getTotalGoods() != null ? currentItem.getTotalGoods() : 0;
-
-            // If this is the first item or has different total goods than previous, assign
-            // new rank
-            if (i == 0 || !currentTotal.equals(
-                    sortedForRanking.get(i - 1).getTotalGoods() != null ? sortedForRanking.get(i - 1).getTotalGoods()
-                            : 0)) {
-                currentRank = i + 1;
-            }
-            // If same total goods as previous, use same rank
-            rankMap.put(currentItem.getMemberId(), currentRank);
-        }
-        for (GroupedGoodsShipmentResponse item : result) {
-            item.setRank(rankMap.get(item.getMemberId()));
-        }
-
-        return result;
+        String whereClause = buildNativeWhereClause(memberId, branchId, subAreaId, areaId, createdBy, memberQuery,
+                startDate, endDate, branchIds, subAreaIds, areaIds);
+        return findGroupedPage(whereClause, memberId, branchId, subAreaId, areaId, createdBy, memberQuery, startDate,
+                endDate, branchIds, subAreaIds, areaIds, 0, sanitizedLimit, sortBy, sortOrder).data();
     }
 
     @Transactional(readOnly = true)
@@ -1134,127 +725,170 @@ public class MarketingGoodsShipmentService {
             String sortBy,
             String sortOrder) {
 
-        // Build the JPQL query to fetch all shipments grouped by member
-        String jpql = "SELECT DISTINCT s FROM MarketingGoodsShipment s " +
-                "LEFT JOIN FETCH s.member m " +
-                "LEFT JOIN FETCH m.branch b " +
-                "LEFT JOIN FETCH b.area " +
-                "LEFT JOIN FETCH b.subArea " +
-                "WHERE " + buildWhereClause(memberId, branchId, subAreaId, areaId, createdBy, memberQuery, startDate,
-                        endDate, branchIds, subAreaIds, areaIds)
-                +
-                " ORDER BY m.id, s.sendDate DESC";
+        int offset = (Math.max(currentPage, 1) - 1) * pageSize;
+        String whereClause = buildNativeWhereClause(memberId, branchId, subAreaId, areaId, createdBy, memberQuery,
+                startDate, endDate, branchIds, subAreaIds, areaIds);
+        GroupedPage page = findGroupedPage(whereClause, memberId, branchId, subAreaId, areaId, createdBy, memberQuery,
+                startDate, endDate, branchIds, subAreaIds, areaIds, offset, pageSize, sortBy, sortOrder);
 
-        Query query = entityManager.createQuery(jpql, MarketingGoodsShipment.class);
-        setQueryParameters(query, memberId, branchId, subAreaId, areaId, createdBy, memberQuery, startDate,
-                endDate, branchIds, subAreaIds, areaIds);
+        return new PaginatedGroupedGoodsShipmentResponse(page.data(), page.totalCount(), currentPage, pageSize);
+    }
+
+    /**
+     * One page of per-member totals. Grouping, ranking (ties share a rank,
+     * always by total goods descending), sorting and LIMIT/OFFSET run in a
+     * single query; the daily records are then loaded only for the members
+     * on the page.
+     */
+    private GroupedPage findGroupedPage(String whereClause, Long memberId, Long branchId, Long subAreaId,
+            Long areaId, Long createdBy, String memberQuery, LocalDate startDate, LocalDate endDate,
+            List<Long> branchIds, List<Long> subAreaIds, List<Long> areaIds, int offset, int limit, String sortBy,
+            String sortOrder) {
+        String fromClause = "FROM marketing_goods_shipments s " +
+                "JOIN marketing_vip_members m ON m.id = s.member_id " +
+                "JOIN marketing_branches b ON b.id = m.branch_id " +
+                "WHERE " + whereClause;
+
+        String sql = "WITH totals AS (" +
+                "SELECT s.member_id, SUM(s.total_goods) AS total_goods " + fromClause +
+                " GROUP BY s.member_id), " +
+                "ranked AS (" +
+                "SELECT t.member_id, t.total_goods, " +
+                "RANK() OVER (ORDER BY t.total_goods DESC) AS member_rank, " +
+                "COUNT(*) OVER () AS total_count " +
+                "FROM totals t) " +
+                "SELECT r.member_id, m.name, m.phone, b.id, b.name, r.total_goods, r.member_rank, r.total_count " +
+                "FROM ranked r " +
+                "JOIN marketing_vip_members m ON m.id = r.member_id " +
+                "JOIN marketing_branches b ON b.id = m.branch_id " +
+                "ORDER BY " + groupedOrderBy(sortBy, sortOrder) + ", r.member_id " +
+                "LIMIT :limit OFFSET :offset";
+
+        Query query = entityManager.createNativeQuery(sql);
+        setQueryParameters(query, memberId, branchId, subAreaId, areaId, createdBy, memberQuery, startDate, endDate,
+                branchIds, subAreaIds, areaIds);
+        query.setParameter("limit", limit);
+        query.setParameter("offset", offset);
 
         @SuppressWarnings("unchecked")
-        List<MarketingGoodsShipment> shipments = query.getResultList();
-
-        // Group shipments by member
-        Map<Long, GroupedGoodsShipmentResponse> groupedMap = new HashMap<>();
-
-        for (MarketingGoodsShipment shipment : shipments) {
-            Long memberIdKey = shipment.getMember().getId();
-
-            GroupedGoodsShipmentResponse grouped = groupedMap.computeIfAbsent(memberIdKey, id -> {
-                GroupedGoodsShipmentResponse response = new GroupedGoodsShipmentResponse();
-                response.setMemberId(shipment.getMember().getId());
-                response.setMemberName(shipment.getMember().getName());
-                response.setMemberPhone(shipment.getMember().getPhone());
-                response.setBranchId(shipment.getMember().getBranch().getId());
-                response.setBranchName(shipment.getMember().getBranch().getName());
-                response.setRecords(new ArrayList<>());
-                response.setTotalGoods(0);
-                return response;
-            });
+        List<Object[]> rows = query.getResultList();
 
-            // Add shipment record
-            GoodsShipmentRecord record = new GoodsShipmentRecord(
-                    shipment.getSendDate(),
-                    shipment.getTotalGoods());
-            grouped.getRecords().add(record);
+        long totalCount;
+        if (!rows.isEmpty()) {
+            totalCount = ((Number) rows.get(0)[7]).longValue();
+        } else if (offset == 0) {
+            totalCount = 0;
+        } else {
+            // Past the last page: the window count is not available
+            Query countQuery = entityManager.createNativeQuery("SELECT COUNT(DISTINCT s.member_id) " + fromClause);
+            setQueryParameters(countQuery, memberId, branchId, subAreaId, areaId, createdBy, memberQuery, startDate,
+                    endDate, branchIds, subAreaIds, areaIds);
+            totalCount = ((Number) countQuery.getSingleResult()).longValue();
+        }
+
+        Map<Long, GroupedGoodsShipmentResponse> pageMembers = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            GroupedGoodsShipmentResponse response = new GroupedGoodsShipmentResponse();
+            response.setMemberId(((Number) row[0]).longValue());
+            response.setMemberName((String) row[1]);
+            response.setMemberPhone((String) row[2]);
+            response.setBranchId(((Number) row[3]).longValue());
+            response.setBranchName((String) row[4]);
+            response.setTotalGoods(((Number) row[5]).intValue());
+            response.setRank(((Number) row[6]).intValue());
+            response.setRecords(new ArrayList<>());
+            pageMembers.put(response.getMemberId(), response);
+        }
+
+        if (!pageMembers.isEmpty()) {
+            Query recordsQuery = entityManager.createNativeQuery(
+                    "SELECT s.member_id, s.send_date, s.total_goods " + fromClause +
+                            " AND s.member_id IN :pageMemberIds ORDER BY s.member_id, s.send_date DESC");
+            setQueryParameters(recordsQuery, memberId, branchId, subAreaId, areaId, createdBy, memberQuery,
+                    startDate, endDate, branchIds, subAreaIds, areaIds);
+            recordsQuery.setParameter("pageMemberIds", pageMembers.keySet());
 
-            // Update total goods
-            grouped.setTotalGoods(grouped.getTotalGoods() + shipment.getTotalGoods());
+            @SuppressWarnings("unchecked")
+            List<Object[]> records = recordsQuery.getResultList();
+            for (Object[] record : records) {
+                pageMembers.get(((Number) record[0]).longValue()).getRecords().add(new GoodsShipmentRecord(
+                        toLocalDate(record[1]), ((Number) record[2]).intValue()));
+            }
         }
 
-        // Convert to list and apply global sorting
-        List<GroupedGoodsShipmentResponse> allData = new ArrayList<>(groupedMap.values());
+        return new GroupedPage(new ArrayList<>(pageMembers.values()), totalCount);
+    }
 
-        // Apply sorting based on parameters
-        System.out.println("DEBUG PAGINATED: sortBy=" + sortBy + ", sortOrder=" + sortOrder);
-        boolean ascending = "asc".equalsIgnoreCase(sortOrder);
-        switch (sortBy.toLowerCase()) {
+    /**
+     * ORDER BY for the grouped query. Column names are fixed here, never
+     * taken from the request.
+     */
+    private String groupedOrderBy(String sortBy, String sortOrder) {
+        String direction = "asc".equalsIgnoreCase(sortOrder) ? "ASC" : "DESC";
+        switch (sortBy != null ? sortBy.toLowerCase(Locale.ROOT) : "rank") {
             case "totalgoods":
-                allData.sort((a, b) -> {
-                    Integer aTotal = a.getTotalGoods() != null ? a.getTotalGoods() : 0;
-                    Integer bTotal = b.getTotalGoods() != null ? b.getTotalGoods() : 0;
-                    return ascending ? aTotal.compareTo(bTotal) : bTotal.compareTo(aTotal);
-                });
-                break;
+                return "r.total_goods " + direction;
             case "membername":
-                allData.sort((a, b) -> {
-                    String aName = a.getMemberName() != null ? a.getMemberName() : "";
-                    String bName = b.getMemberName() != null ? b.getMemberName() : "";
-                    return ascending ? aName.compareToIgnoreCase(bName) : bName.compareToIgnoreCase(aName);
-                });
-                break;
+                return "LOWER(m.name) " + direction;
             case "branchname":
-                allData.sort((a, b) -> {
-                    String aBranch = a.getBranchName() != null ? a.getBranchName() : "";
-                    String bBranch = b.getBranchName() != null ? b.getBranchName() : "";
-                    return ascending ? aBranch.compareToIgnoreCase(bBranch) : bBranch.compareToIgnoreCase(aBranch);
-                });
-                break;
+                return "LOWER(b.name) " + direction;
+            case "rank":
             default:
                 // Sort by total goods descending for ranking
-                allData.sort((a, b) -> {
-                    Integer aTotal = a.getTotalGoods() != null ? a.getTotalGoods() : 0;
-                    Integer bTotal = b.getTotalGoods() != null ? b.getTotalGoods() : 0;
-                    return bTotal.compareTo(aTotal);
-                });
-                break;
+                return "r.total_goods DESC";
         }
+    }
 
-        // Calculate ranks (always based on total goods descending)
-        List<GroupedGoodsShipmentResponse> sortedForRanking = new ArrayList<>(allData);
-        sortedForRanking.sort((a, b) -> {
-            Integer aTotal = a.getTotalGoods() != null ? a.getTotalGoods() : 0;
-            Integer bTotal = b.getTotalGoods() != null ? b.getTotalGoods() : 0;
-            return bTotal.compareTo(aTotal);
-        });
-
-        // Handle ties: same total goods should get same rank
-        Map<Long, Integer> rankMap = new HashMap<>();
-        int currentRank = 1;
-        for (int i = 0; i < sortedForRanking.size(); i++) {
-            GroupedGoodsShipmentResponse currentItem = sortedForRanking.get(i);
-            Integer currentTotal = currentItem.getTotalGoods() != null ? currentItem.getTotalGoods() : 0;
-
-            // If this is the first item or has different total goods than previous, assign
-            // new rank
-            if (i == 0 || !currentTotal.equals(
-                    sortedForRanking.get(i - 1).getTotalGoods() != null ? sortedForRanking.get(i - 1).getTotalGoods()
-                            : 0)) {
-                currentRank = i + 1;
-            }
-            // If same total goods as previous, use same rank
-            rankMap.put(currentItem.getMemberId(), currentRank);
+    /**
+     * Native SQL form of {@link #buildWhereClause}, over the aliases s
+     * (shipment), m (member) and b (branch), with the same parameters.
+     */
+    private String buildNativeWhereClause(Long memberId, Long branchId, Long subAreaId, Long areaId, Long createdBy,
+            String memberQuery, LocalDate startDate, LocalDate endDate,
+            List<Long> branchIds, List<Long> subAreaIds, List<Long> areaIds) {
+        List<String> conditions = new ArrayList<>();
+
+        if (memberId != null) {
+            conditions.add("m.id = :memberId");
+        }
+        if (branchId != null) {
+            conditions.add("b.id = :branchId");
+        } else if (branchIds != null && !branchIds.isEmpty()) {
+            conditions.add("b.id IN :branchIds");
+        }
+        if (subAreaId != null) {
+            conditions.add("b.sub_area_id = :subAreaId");
+        } else if (subAreaIds != null && !subAreaIds.isEmpty()) {
+            conditions.add("b.sub_area_id IN :subAreaIds");
         }
-        for (GroupedGoodsShipmentResponse item : allData) {
-            item.setRank(rankMap.get(item.getMemberId()));
+        if (areaId != null) {
+            conditions.add("b.area_id = :areaId");
+        } else if (areaIds != null && !areaIds.isEmpty()) {
+            conditions.add("b.area_id IN :areaIds");
+        }
+        if (createdBy != null) {
+            conditions.add("s.created_by = :createdBy");
+        }
+        if (memberQuery != null && !memberQuery.trim().isEmpty()) {
+            conditions.add("(LOWER(m.name) LIKE :memberQuery OR LOWER(m.phone) LIKE :memberQuery)");
+        }
+        if (startDate != null) {
+            conditions.add("s.send_date >= :startDate");
+        }
+        if (endDate != null) {
+            conditions.add("s.send_date <= :endDate");
         }
 
-        // Apply pagination to the globally sorted data
-        int totalCount = allData.size();
-        int startIndex = (currentPage - 1) * pageSize;
-        int endIndex = Math.min(startIndex + pageSize, totalCount);
+        return conditions.isEmpty() ? "1 = 1" : String.join(" AND ", conditions);
+    }
 
-        List<GroupedGoodsShipmentResponse> pageData = startIndex < totalCount ? allData.subList(startIndex, endIndex)
-                : new ArrayList<>();
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate localDate) {
+            return localDate;
+        }
+        return ((java.sql.Date) value).toLocalDate();
+    }
 
-        return new PaginatedGroupedGoodsShipmentResponse(pageData, totalCount, currentPage, pageSize);
+    private record GroupedPage(List<GroupedGoodsShipmentResponse> data, long totalCount) {
     }
 }
@@ -0,0 +1,238 @@
+package com.example.marketingservice.service.goods;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Goods records from the first worksheet of an XLSX workbook.
+ *
+ * The worksheet XML is read with StAX straight out of the zip, one row at
+ * a time, so memory does not grow with the number of rows. Only the shared
+ * string table (distinct text cells) is held in memory.
+ */
+class XlsxGoodsRecordSource extends FileGoodsRecordSource {
+
+    private static final String RELATIONSHIP_NS =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private static final XMLInputFactory XML = createXmlInputFactory();
+
+    private List<String> sharedStrings;
+
+    XlsxGoodsRecordSource(Path file) {
+        super(file);
+    }
+
+    @Override
+    protected RowReader openRows() throws IOException {
+        ZipFile zip = new ZipFile(file.toFile());
+        try {
+            if (sharedStrings == null) {
+                sharedStrings = readSharedStrings(zip);
+            }
+            ZipEntry sheet = zip.getEntry(firstSheetPath(zip));
+            if (sheet == null) {
+                throw new IOException("Workbook has no worksheet");
+            }
+            return new SheetRows(zip, XML.createXMLStreamReader(zip.getInputStream(sheet)), sharedStrings);
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            zip.close();
+            throw e instanceof IOException io ? io : new IOException("Unreadable XLSX file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Path of the first sheet listed in the workbook, falling back to the
+     * conventional name.
+     */
+    private static String firstSheetPath(ZipFile zip) throws IOException, XMLStreamException {
+        String relationId = null;
+        try (InputStream in = open(zip, "xl/workbook.xml")) {
+            if (in != null) {
+                XMLStreamReader xml = XML.createXMLStreamReader(in);
+                while (xml.hasNext() && relationId == null) {
+                    if (xml.next() == XMLStreamConstants.START_ELEMENT && "sheet".equals(xml.getLocalName())) {
+                        relationId = xml.getAttributeValue(RELATIONSHIP_NS, "id");
+                    }
+                }
+                xml.close();
+            }
+        }
+        if (relationId != null) {
+            try (InputStream in = open(zip, "xl/_rels/workbook.xml.rels")) {
+                if (in != null) {
+                    XMLStreamReader xml = XML.createXMLStreamReader(in);
+                    while (xml.hasNext()) {
+                        if (xml.next() == XMLStreamConstants.START_ELEMENT
+                                && "Relationship".equals(xml.getLocalName())
+                                && relationId.equals(xml.getAttributeValue(null, "Id"))) {
+                            String target = xml.getAttributeValue(null, "Target");
+                            xml.close();
+                            return target.startsWith("/") ? target.substring(1) : "xl/" + target;
+                        }
+                    }
+                    xml.close();
+                }
+            }
+        }
+        return "xl/worksheets/sheet1.xml";
+    }
+
+    private static List<String> readSharedStrings(ZipFile zip) throws IOException, XMLStreamException {
+        List<String> strings = new ArrayList<>();
+        try (InputStream in = open(zip, "xl/sharedStrings.xml")) {
+            if (in == null) {
+                return strings;
+            }
+            XMLStreamReader xml = XML.createXMLStreamReader(in);
+            StringBuilder current = null;
+            int phoneticDepth = 0;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                        case "si" -> current = new StringBuilder();
+                        // Phonetic hints are not part of the value
+                        case "rPh" -> phoneticDepth++;
+                        case "t" -> {
+                            if (current != null && phoneticDepth == 0) {
+                                current.append(xml.getElementText());
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if ("si".equals(xml.getLocalName()) && current != null) {
+                        strings.add(current.toString());
+                        current = null;
+                    } else if ("rPh".equals(xml.getLocalName())) {
+                        phoneticDepth--;
+                    }
+                }
+            }
+            xml.close();
+        }
+        return strings;
+    }
+
+    private static InputStream open(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        return entry != null ? zip.getInputStream(entry) : null;
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Cells A and B of each {@code <row>} of a worksheet.
+     */
+    private static final class SheetRows implements RowReader {
+
+        private final ZipFile zip;
+        private final XMLStreamReader xml;
+        private final List<String> sharedStrings;
+
+        SheetRows(ZipFile zip, XMLStreamReader xml, List<String> sharedStrings) {
+            this.zip = zip;
+            this.xml = xml;
+            this.sharedStrings = sharedStrings;
+        }
+
+        @Override
+        public String[] nextRow() throws IOException {
+            try {
+                while (xml.hasNext()) {
+                    if (xml.next() == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+                        return readRow();
+                    }
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                throw new IOException("Unreadable XLSX worksheet: " + e.getMessage(), e);
+            }
+        }
+
+        private String[] readRow() throws XMLStreamException {
+            String[] cells = new String[2];
+            int position = 0;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+                    break;
+                }
+                if (event == XMLStreamConstants.START_ELEMENT && "c".equals(xml.getLocalName())) {
+                    String reference = xml.getAttributeValue(null, "r");
+                    int column = reference != null ? columnIndex(reference) : position;
+                    position = column + 1;
+                    String value = readCell(xml.getAttributeValue(null, "t"));
+                    if (column >= 0 && column < cells.length) {
+                        cells[column] = value;
+                    }
+                }
+            }
+            return cells;
+        }
+
+        /**
+         * Value of the current {@code <c>} element, which is consumed.
+         */
+        private String readCell(String type) throws XMLStreamException {
+            StringBuilder value = new StringBuilder();
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "c".equals(xml.getLocalName())) {
+                    break;
+                }
+                if (event == XMLStreamConstants.START_ELEMENT
+                        && ("v".equals(xml.getLocalName()) || "t".equals(xml.getLocalName()))) {
+                    value.append(xml.getElementText());
+                }
+            }
+            if ("s".equals(type)) {
+                try {
+                    int index = Integer.parseInt(value.toString().trim());
+                    return index >= 0 && index < sharedStrings.size() ? sharedStrings.get(index) : null;
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            return value.toString();
+        }
+
+        /**
+         * Zero-based column of a cell reference such as {@code B12}.
+         */
+        private static int columnIndex(String reference) {
+            int column = 0;
+            for (int i = 0; i < reference.length() && Character.isLetter(reference.charAt(i)); i++) {
+                column = column * 26 + (Character.toUpperCase(reference.charAt(i)) - 'A' + 1);
+            }
+            return column - 1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                xml.close();
+            } catch (XMLStreamException e) {
+                // The zip is closed below either way
+            } finally {
+                zip.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.marketingservice.service.shared;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Verifies the signed {@code X-Identity} envelope the gateway attaches to
+ * every authenticated request, so root and service-access checks can be
+ * answered locally instead of calling the auth-server.
+ *
+ * Rejected envelopes are logged at debug only, since anyone can send a
+ * forged header, and counted in {@code identity.envelope.rejected}
+ * (tag {@code reason}: signature, expired, malformed).
+ *
+ * Documented copy: call-service and marketing-service each hold this
+ * class, identical except for the package line, because the services
+ * share no library module. Change both together; the Jenkins pipeline
+ * fails when they differ.
+ */
+@Service
+public class GatewayIdentityVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(GatewayIdentityVerifier.class);
+    private static final String IDENTITY_HEADER = "X-Identity";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String REQUEST_ATTRIBUTE = GatewayIdentityVerifier.class.getName() + ".identity";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${security.identity.secret}")
+    private String identitySecret;
+
+    @Value("${security.jwt.secret}")
+    private String jwtSecret;
+
+    private SecretKeySpec signingKey;
+
+    private final Counter badSignature;
+    private final Counter expired;
+    private final Counter malformed;
+
+    public GatewayIdentityVerifier(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.badSignature = rejectedCounter(meterRegistry, "signature");
+        this.expired = rejectedCounter(meterRegistry, "expired");
+        this.malformed = rejectedCounter(meterRegistry, "malformed");
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("identity.envelope.rejected")
+                .description("X-Identity envelopes rejected by this service")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        // Same rules as the gateway's IdentityEnvelopeSigner
+        if (identitySecret.length() < 32) {
+            throw new IllegalStateException("IDENTITY_SECRET must be at least 32 characters");
+        }
+        if (identitySecret.equals(jwtSecret)) {
+            throw new IllegalStateException("IDENTITY_SECRET must differ from JWT_SECRET");
+        }
+        this.signingKey = new SecretKeySpec(identitySecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    }
+
+    /**
+     * Identity of the current request, if the gateway attached a valid envelope.
+     */
+    public Optional<GatewayIdentity> current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletRequestAttributes)) {
+            return Optional.empty();
+        }
+        return fromRequest(servletRequestAttributes.getRequest());
+    }
+
+    /**
+     * Identity of the current request, only if it belongs to the given user.
+     */
+    public Optional<GatewayIdentity> currentFor(Long userId) {
+        return current().filter(identity -> identity.userId() != null && identity.userId().equals(userId));
+    }
+
+    public Optional<GatewayIdentity> fromRequest(HttpServletRequest request) {
+        if (request == null) {
+            return Optional.empty();
+        }
+
+        // Verify at most once per request
+        Object cached = request.getAttribute(REQUEST_ATTRIBUTE);
+        if (cached instanceof GatewayIdentity identity) {
+            return Optional.of(identity);
+        }
+
+        String envelope = request.getHeader(IDENTITY_HEADER);
+        if (envelope == null || envelope.isBlank()) {
+            return Optional.empty();
+        }
+
+        GatewayIdentity identity = verify(envelope);
+        if (identity != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE, identity);
+        }
+        return Optional.ofNullable(identity);
+    }
+
+    private GatewayIdentity verify(String envelope) {
+        try {
+            int separator = envelope.indexOf('.');
+            if (separator <= 0) {
+                malformed.increment();
+                return null;
+            }
+
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payload = decoder.decode(envelope.substring(0, separator));
+            byte[] signature = decoder.decode(envelope.substring(separator + 1));
+
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            if (!MessageDigest.isEqual(mac.doFinal(payload), signature)) {
+                badSignature.increment();
+                logger.debug("Rejected identity envelope with invalid signature");
+                return null;
+            }
+
+            JsonNode json = objectMapper.readTree(payload);
+            long expiresAt = json.path("exp").asLong(0);
+            if (expiresAt < System.currentTimeMillis() / 1000) {
+                expired.increment();
+                logger.debug("Rejected expired identity envelope");
+                return null;
+            }
+
+            List<String> services = new ArrayList<>();
+            json.path("svc").forEach(node -> services.add(node.asText()));
+            return new GatewayIdentity(
+                    json.hasNonNull("uid") ? json.get("uid").asLong() : null,
+                    json.path("sub").asText(null),
+                    json.path("root").asBoolean(false),
+                    json.hasNonNull("ver") ? json.get("ver").asLong() : null,
+                    List.copyOf(services));
+        } catch (Exception e) {
+            malformed.increment();
+            logger.debug("Failed to verify identity envelope: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public record GatewayIdentity(Long userId, String username, boolean root, Long tokenVersion,
+                                  List<String> services) {
+        public boolean hasService(String serviceKey) {
+            return services.contains(serviceKey);
+        }
+    }
+}
@@ -27,6 +27,9 @@ public class MarketingAuthorizationService {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private GatewayIdentityVerifier gatewayIdentityVerifier;
+
     @Value("${user.service.url:http://localhost:8081}")
     private String userServiceUrl;
 
@@ -37,6 +40,11 @@ public class MarketingAuthorizationService {
             return false;
         }
 
+        Optional<GatewayIdentityVerifier.GatewayIdentity> identity = gatewayIdentityVerifier.currentFor(userId);
+        if (identity.isPresent()) {
+            return identity.get().root();
+        }
+
         try {
             String url = userServiceUrl + "/api/users/" + userId + "/username";
             String username = restTemplate.getForObject(url, String.class);
@@ -0,0 +1,147 @@
+package com.example.marketingservice.service.goods;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rows/sec of {@link MarketingGoodsShipmentBulkWriter} against PostgreSQL 16
+ * at 1k, 10k and 100k rows: a first upload (all inserts), the same upload
+ * again (all conflicts) and, for comparison, the old per-record path (one
+ * lookup and one insert per row).
+ *
+ * Opt-in, needs Docker:
+ * {@code mvn test -Dtest=MarketingGoodsShipmentBulkWriterBenchmark -Dbenchmark=true}
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MarketingGoodsShipmentBulkWriterBenchmark {
+
+    private static final int MEMBERS = 10_000;
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final LocalDate FIRST_DAY = LocalDate.of(2026, 1, 1);
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+    private static MarketingGoodsShipmentBulkWriter writer;
+
+    @BeforeAll
+    static void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        writer = new MarketingGoodsShipmentBulkWriter(jdbcTemplate);
+
+        // The tables as Hibernate creates them, with the indexes declared on the entities
+        jdbcTemplate.execute("CREATE TABLE marketing_vip_members (id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY)");
+        jdbcTemplate.execute("INSERT INTO marketing_vip_members SELECT FROM generate_series(1, " + MEMBERS + ")");
+        jdbcTemplate.execute("CREATE TABLE marketing_goods_shipments ("
+                + " id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                + " member_id bigint NOT NULL REFERENCES marketing_vip_members (id),"
+                + " send_date date NOT NULL,"
+                + " total_goods integer NOT NULL,"
+                + " created_at timestamp(6) NOT NULL,"
+                + " created_by bigint NOT NULL,"
+                + " CONSTRAINT uk_goods_shipment_member_date UNIQUE (member_id, send_date))");
+        jdbcTemplate.execute("CREATE INDEX idx_goods_shipment_member_date ON marketing_goods_shipments (member_id, send_date)");
+        jdbcTemplate.execute("CREATE INDEX idx_goods_shipment_member ON marketing_goods_shipments (member_id)");
+        jdbcTemplate.execute("CREATE INDEX idx_goods_shipment_date ON marketing_goods_shipments (send_date)");
+        jdbcTemplate.execute("CREATE INDEX idx_goods_shipment_created_by ON marketing_goods_shipments (created_by)");
+        jdbcTemplate.execute("CREATE INDEX idx_goods_shipment_created_at ON marketing_goods_shipments (created_at)");
+    }
+
+    @Test
+    void rowsPerSecond() {
+        // Warm up the JIT, the connection and the plan cache
+        measureBulk(rows(1_000));
+        measurePerRecord(rows(1_000));
+
+        System.out.printf("%n%-8s %16s %16s %16s%n", "rows", "bulk insert/s", "bulk reupload/s", "per-record/s");
+        for (int size : SIZES) {
+            List<MarketingGoodsShipmentBulkWriter.ShipmentRow> rows = rows(size);
+
+            truncate();
+            double insert = measureBulk(rows);
+            assertThat(count()).isEqualTo(size);
+            double reupload = measureBulk(rows);
+            assertThat(count()).isEqualTo(size);
+
+            truncate();
+            double perRecord = measurePerRecord(rows);
+            assertThat(count()).isEqualTo(size);
+
+            System.out.printf("%-8d %16.0f %16.0f %16.0f%n", size, insert, reupload, perRecord);
+        }
+    }
+
+    private double measureBulk(List<MarketingGoodsShipmentBulkWriter.ShipmentRow> rows) {
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> writer.upsert(rows, 1L));
+        return rowsPerSecond(rows.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * The path the bulk writer replaced: look each row up, then insert or update it.
+     */
+    private double measurePerRecord(List<MarketingGoodsShipmentBulkWriter.ShipmentRow> rows) {
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+            for (MarketingGoodsShipmentBulkWriter.ShipmentRow row : rows) {
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT id FROM marketing_goods_shipments WHERE member_id = ? AND send_date = ?",
+                        Long.class, row.memberId(), row.sendDate());
+                if (ids.isEmpty()) {
+                    jdbcTemplate.update("INSERT INTO marketing_goods_shipments"
+                                    + " (member_id, send_date, total_goods, created_at, created_by) VALUES (?, ?, ?, ?, ?)",
+                            row.memberId(), row.sendDate(), row.totalGoods(), createdAt, 1L);
+                } else {
+                    jdbcTemplate.update("UPDATE marketing_goods_shipments SET total_goods = ? WHERE id = ?",
+                            row.totalGoods(), ids.get(0));
+                }
+            }
+        });
+        return rowsPerSecond(rows.size(), System.nanoTime() - start);
+    }
+
+    private static List<MarketingGoodsShipmentBulkWriter.ShipmentRow> rows(int size) {
+        List<MarketingGoodsShipmentBulkWriter.ShipmentRow> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(new MarketingGoodsShipmentBulkWriter.ShipmentRow(
+                    (long) (i % MEMBERS) + 1, FIRST_DAY.plusDays(i / MEMBERS), i % 500));
+        }
+        return rows;
+    }
+
+    private static void truncate() {
+        jdbcTemplate.execute("TRUNCATE marketing_goods_shipments");
+        jdbcTemplate.execute("VACUUM ANALYZE marketing_goods_shipments");
+    }
+
+    private static long count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM marketing_goods_shipments", Long.class);
+    }
+
+    private static double rowsPerSecond(int rows, long nanos) {
+        return rows / (nanos / 1_000_000_000.0);
+    }
+}
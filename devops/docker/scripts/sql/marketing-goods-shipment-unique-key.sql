@@ -0,0 +1,48 @@
+-- ============================================================================
+-- One-off migration: unique key on marketing_goods_shipments (member_id, send_date)
+-- ============================================================================
+-- The bulk goods upload upserts with ON CONFLICT (member_id, send_date), which
+-- needs this key. Older data may hold several rows for the same member and
+-- day. This script never deletes them: it lists them and stops. Resolve each
+-- pair by hand (keep the correct total_goods), then run it again to add the key.
+--
+-- Usage:
+--   docker exec -i demo-postgres psql -U postgres -d marketing_service_db \
+--     -v ON_ERROR_STOP=1 < marketing-goods-shipment-unique-key.sql
+-- ============================================================================
+
+-- Report: every member/day with more than one row
+SELECT member_id,
+       send_date,
+       COUNT(*)                            AS row_count,
+       array_agg(id ORDER BY id)           AS ids,
+       array_agg(total_goods ORDER BY id)  AS total_goods,
+       array_agg(created_by ORDER BY id)   AS created_by
+FROM marketing_goods_shipments
+GROUP BY member_id, send_date
+HAVING COUNT(*) > 1
+ORDER BY member_id, send_date;
+
+DO $$
+DECLARE
+    duplicates bigint;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_goods_shipment_member_date') THEN
+        RAISE NOTICE 'uk_goods_shipment_member_date already exists, nothing to do';
+        RETURN;
+    END IF;
+
+    SELECT COUNT(*) INTO duplicates FROM (
+        SELECT 1 FROM marketing_goods_shipments
+        GROUP BY member_id, send_date
+        HAVING COUNT(*) > 1
+    ) d;
+    IF duplicates > 0 THEN
+        RAISE EXCEPTION '% duplicate member/date pairs (listed above); resolve them and run again', duplicates;
+    END IF;
+
+    ALTER TABLE marketing_goods_shipments
+        ADD CONSTRAINT uk_goods_shipment_member_date UNIQUE (member_id, send_date);
+    RAISE NOTICE 'Added uk_goods_shipment_member_date';
+END
+$$;
@@ -25,6 +25,7 @@ REQUIRED_VARS=(
     "CLOUDFLARE_DOMAIN"
     "POSTGRES_USER"
     "POSTGRES_PASSWORD"
+    "IDENTITY_SECRET"
 )
 
 MISSING_VARS=()
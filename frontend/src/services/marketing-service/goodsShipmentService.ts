@@ -65,6 +65,25 @@ export type BulkGoodsResponse = {
   processingTimeMs: number;
 };
 
+export type GoodsImportJob = {
+  jobId: string;
+  status: "QUEUED" | "RUNNING" | "COMPLETED" | "FAILED";
+  totalRecords: number;
+  processedRecords: number;
+  successfulRecords: number;
+  failedRecords: number;
+  totalChunks: number;
+  completedChunks: number;
+  recordsPerSecond: number;
+  etaSeconds?: number;
+  errors: string[];
+  submittedAt: string;
+  startedAt?: string;
+  finishedAt?: string;
+};
+
+const IMPORT_JOB_POLL_MS = 2000;
+
 export type MarketingGoodsShipmentRecord = {
   id: number;
   memberId: number;
@@ -143,11 +162,33 @@ export const goodsShipmentService = {
     });
   },
 
-  createOptimizedBulk(payload: OptimizedBulkGoodsRequest): Promise<BulkGoodsResponse> {
-    return request("/goods-shipments/bulk", {
+  // Large uploads are queued as a background job; wait for it and report it like a direct upload
+  async createOptimizedBulk(payload: OptimizedBulkGoodsRequest): Promise<BulkGoodsResponse> {
+    const response = await request<BulkGoodsResponse | GoodsImportJob>("/goods-shipments/bulk", {
       method: "POST",
       body: payload,
     });
+    if (!("jobId" in response)) {
+      return response;
+    }
+    let job = response;
+    while (job.status === "QUEUED" || job.status === "RUNNING") {
+      await new Promise(resolve => setTimeout(resolve, IMPORT_JOB_POLL_MS));
+      job = await goodsShipmentService.getImportJob(job.jobId);
+    }
+    return {
+      totalRecords: job.totalRecords,
+      successfulRecords: job.successfulRecords,
+      failedRecords: job.totalRecords - job.successfulRecords,
+      errors: job.errors,
+      processedAt: job.finishedAt ?? new Date().toISOString(),
+      batchId: job.jobId,
+      processingTimeMs: new Date(job.finishedAt ?? Date.now()).getTime() - new Date(job.submittedAt).getTime(),
+    };
+  },
+
+  getImportJob(jobId: string): Promise<GoodsImportJob> {
+    return request(`/goods-shipments/bulk/jobs/${encodeURIComponent(jobId)}`);
   },
 
   listRecent: async (params: {